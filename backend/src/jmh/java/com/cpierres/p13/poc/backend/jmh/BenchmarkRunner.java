@@ -0,0 +1,125 @@
+package com.cpierres.p13.poc.backend.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Lancement des benchmarks JMH et suivi des régressions entre commits
+ * Chaque exécution est enregistrée dans jmh-results/{date}-{commit}.json (format JSON de JMH),
+ * puis comparée à l'exécution précédente : écart de score et d'allocation par benchmark.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec [-Djmh.args=getTicketHistory]
+ */
+public class BenchmarkRunner {
+
+    private static final Path RESULTS_DIR = Path.of("jmh-results");
+    /** Écart de score au-delà duquel un benchmark est signalé en régression (hors marge d'erreur des deux mesures) */
+    private static final double REGRESSION_THRESHOLD = 0.10;
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 && !args[0].isBlank() ? args[0] : ChatHotPathBenchmark.class.getSimpleName();
+        Files.createDirectories(RESULTS_DIR);
+        Optional<Path> previous = latestResult();
+        Path result = RESULTS_DIR.resolve(
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + "-" + gitRevision() + ".json");
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build();
+        new Runner(options).run();
+
+        System.out.println("Résultats enregistrés : " + result);
+        if (previous.isPresent()) {
+            compare(previous.get(), result);
+        } else {
+            System.out.println("Aucune exécution précédente dans " + RESULTS_DIR + " : pas de comparaison");
+        }
+    }
+
+    private static void compare(Path previous, Path current) throws IOException {
+        Map<String, JsonNode> before = index(previous);
+        Map<String, JsonNode> after = index(current);
+        System.out.println();
+        System.out.println("Comparaison avec " + previous.getFileName());
+        System.out.printf("%-70s %14s %14s %9s %12s%n", "Benchmark", "Avant", "Après", "Écart", "Alloc. (o/op)");
+        after.forEach((key, run) -> {
+            JsonNode old = before.get(key);
+            double score = run.path("primaryMetric").path("score").asDouble();
+            String unit = run.path("primaryMetric").path("scoreUnit").asText();
+            double allocation = run.path("secondaryMetrics").path(ALLOCATION_METRIC).path("score").asDouble(Double.NaN);
+            if (old == null) {
+                System.out.printf("%-70s %14s %14.3f %9s %12.0f  (nouveau, %s)%n", key, "-", score, "-", allocation, unit);
+                return;
+            }
+            double oldScore = old.path("primaryMetric").path("score").asDouble();
+            double delta = oldScore == 0 ? 0 : (score - oldScore) / oldScore;
+            // En débit un score plus élevé est meilleur ; en temps, un score plus faible
+            boolean higherIsBetter = "thrpt".equals(run.path("mode").asText());
+            double degradation = higherIsBetter ? -delta : delta;
+            double errors = errorOf(run) + errorOf(old);
+            boolean regression = degradation > REGRESSION_THRESHOLD && Math.abs(score - oldScore) > errors;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %12.0f%s%n", key, oldScore, score, delta * 100, allocation,
+                    regression ? "  RÉGRESSION" : "");
+        });
+    }
+
+    private static double errorOf(JsonNode run) {
+        double error = run.path("primaryMetric").path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * Indexer les résultats par benchmark, mode et paramètres
+     */
+    private static Map<String, JsonNode> index(Path file) throws IOException {
+        Map<String, JsonNode> runs = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            String benchmark = run.path("benchmark").asText();
+            String key = benchmark.substring(benchmark.lastIndexOf('.') + 1) + " [" + run.path("mode").asText() + "]"
+                    + (run.has("params") ? " " + run.path("params") : "");
+            runs.put(key, run);
+        }
+        return runs;
+    }
+
+    private static Optional<Path> latestResult() throws IOException {
+        try (Stream<Path> files = Files.list(RESULTS_DIR)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                    .max(Path::compareTo);
+        }
+    }
+
+    private static String gitRevision() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            List<String> output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            return process.waitFor() == 0 && !output.isEmpty() ? output.get(0).trim() : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.cpierres.p13.poc.backend.jmh;
+
+import com.cpierres.p13.poc.backend.BackendApplication;
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.service.ChatMessageService;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import com.cpierres.p13.poc.backend.service.mock.MockUserService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+
+/**
+ * Backend complet démarré une fois par essai JMH sur la base embarquée (profil "embedded" : H2, sans Redis)
+ * Un ticket d'historique est pré-rempli avec historySize messages ; les envois visent un ticket distinct.
+ */
+@State(Scope.Benchmark)
+public class ChatBackendState {
+
+    /** Client et agent de démonstration (MockAuthService) */
+    static final UUID CLIENT_ID = UUID.fromString("822d37e8-812f-4059-81ac-357cb3b45b50");
+
+    @Param({"50", "500"})
+    public int historySize;
+
+    ConfigurableApplicationContext context;
+    ChatMessageService chatMessageService;
+    SupportTicketService ticketService;
+    MockUserService mockUserService;
+
+    UUID historyTicketId;
+    UUID sendTicketId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("embedded")
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                     "--logging.level.root=WARN");
+        chatMessageService = context.getBean(ChatMessageService.class);
+        ticketService = context.getBean(SupportTicketService.class);
+        mockUserService = context.getBean(MockUserService.class);
+
+        historyTicketId = createTicket("Historique");
+        for (int i = 0; i < historySize; i++) {
+            chatMessageService.sendMessage(new SendMessageRequest(historyTicketId, CLIENT_ID, "Message d'historique " + i));
+        }
+        sendTicketId = createTicket("Envoi");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    private UUID createTicket(String subject) {
+        SupportTicket ticket = new SupportTicket();
+        ticket.setUserId(CLIENT_ID);
+        ticket.setSubject(subject);
+        ticket.setDescription("Ticket de benchmark");
+        return ticketService.createTicket(ticket).getId();
+    }
+}
@@ -0,0 +1,55 @@
+package com.cpierres.p13.poc.backend.jmh;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.service.ChatMessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemins chauds du chat : envoi de message, historique, statistiques, lecture de ticket et profil utilisateur
+ * Débit (ops/ms) et latence échantillonnée (percentiles) ; le taux d'allocation est fourni par le profileur GC.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ChatHotPathBenchmark {
+
+    @Benchmark
+    public ChatMessage sendMessage(ChatBackendState state) {
+        return state.chatMessageService.sendMessage(
+                new SendMessageRequest(state.sendTicketId, ChatBackendState.CLIENT_ID, "Message de benchmark"));
+    }
+
+    @Benchmark
+    public List<ChatMessage> getTicketHistory(ChatBackendState state) {
+        return state.chatMessageService.getTicketHistory(state.historyTicketId);
+    }
+
+    @Benchmark
+    public ChatMessageService.MessageStats getTicketMessageStats(ChatBackendState state) {
+        return state.chatMessageService.getTicketMessageStats(state.historyTicketId);
+    }
+
+    @Benchmark
+    public SupportTicket getTicketById(ChatBackendState state) {
+        return state.ticketService.getTicketById(state.historyTicketId);
+    }
+
+    @Benchmark
+    public MockUserInfo getUserProfile(ChatBackendState state) {
+        return state.mockUserService.getUserProfile(ChatBackendState.CLIENT_ID);
+    }
+}
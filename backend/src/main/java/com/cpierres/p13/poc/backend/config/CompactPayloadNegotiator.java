@@ -0,0 +1,117 @@
+package com.cpierres.p13.poc.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Négociation du format des messages de chat par abonnement : JSON (défaut) ou CBOR compact
+ * Un client WebSocket natif (/ws-native, ou /ws/websocket) qui s'abonne à /topic/messages/{ticketId} avec l'en-tête "accept: application/cbor"
+ * est abonné à la déclinaison binaire /topic/messages.cbor/{ticketId} (voir CborMessageFanOut).
+ * Les événements d'abonnement gardent la destination demandée (présence, métriques) : seul le message
+ * transmis au broker est réécrit.
+ * Les sessions SockJS ne transportent que du texte : elles restent en JSON quel que soit l'en-tête.
+ */
+@Component
+public class CompactPayloadNegotiator implements ChannelInterceptor, HandshakeInterceptor {
+
+    public static final MimeType CBOR = MimeType.valueOf("application/cbor");
+    /**
+     * Type des trames CBOR envoyées : Spring n'émet une trame WebSocket binaire que pour application/octet-stream,
+     * le paramètre format indique l'encodage au client
+     */
+    public static final MimeType CBOR_FRAME = new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM, Map.of("format", "cbor"));
+    public static final String MESSAGES_TOPIC_PREFIX = "/topic/messages/";
+    public static final String CBOR_MESSAGES_TOPIC_PREFIX = "/topic/messages.cbor/";
+
+    /** Attribut de session : la connexion accepte les trames WebSocket binaires */
+    static final String BINARY_FRAMES_ATTRIBUTE = "chat.binaryFrames";
+    /** Chemins des connexions WebSocket natives (sans SockJS) */
+    private static final List<String> NATIVE_WEBSOCKET_PATHS = List.of(
+            WebSocketConfig.NATIVE_ENDPOINT, WebSocketConfig.SOCKJS_ENDPOINT + "/websocket");
+
+    /**
+     * Copie CBOR du mapper JSON de l'application (mêmes modules) ; dates en tableaux numériques plutôt qu'en texte ISO,
+     * les UUID sont écrits nativement sur 16 octets par le générateur binaire
+     */
+    public static ObjectMapper cborMapper(ObjectMapper jsonMapper) {
+        return jsonMapper.copyWith(new CBORFactory()).enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Convertisseur des trames SEND en CBOR : content-type application/cbor, ou application/octet-stream;format=cbor
+     * (seul type pour lequel les clients STOMP de Spring émettent une trame WebSocket binaire)
+     */
+    public static MessageConverter cborMessageConverter(ObjectMapper jsonMapper) {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(CBOR, CBOR_FRAME) {
+            @Override
+            protected boolean supportsMimeType(MessageHeaders headers) {
+                MimeType mimeType = getMimeType(headers);
+                return mimeType != null && (CBOR.equalsTypeAndSubtype(mimeType)
+                        || (CBOR_FRAME.equalsTypeAndSubtype(mimeType) && "cbor".equals(mimeType.getParameter("format"))));
+            }
+        };
+        converter.setObjectMapper(cborMapper(jsonMapper));
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String path = request.getURI().getPath();
+        attributes.put(BINARY_FRAMES_ATTRIBUTE, NATIVE_WEBSOCKET_PATHS.stream().anyMatch(path::endsWith));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (!StompCommand.SUBSCRIBE.equals(accessor.getCommand()) || destination == null
+                || !destination.startsWith(MESSAGES_TOPIC_PREFIX) || !acceptsCbor(accessor)) {
+            return message;
+        }
+        // Nouveau message : l'original, repris par l'événement d'abonnement, garde sa destination
+        accessor.setDestination(CBOR_MESSAGES_TOPIC_PREFIX + destination.substring(MESSAGES_TOPIC_PREFIX.length()));
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private static boolean acceptsCbor(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        String accept = accessor.getFirstNativeHeader("accept");
+        if (accept == null || attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE))) {
+            return false;
+        }
+        try {
+            return MimeTypeUtils.parseMimeTypes(accept).stream().anyMatch(CBOR::equalsTypeAndSubtype);
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+    }
+}
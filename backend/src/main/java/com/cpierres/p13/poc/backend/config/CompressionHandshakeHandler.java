@@ -0,0 +1,148 @@
+package com.cpierres.p13.poc.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.server.ServerEndpointConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.server.standard.TomcatRequestUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Négociation de la compression permessage-deflate (RFC 7692) des connexions WebSocket
+ * Tomcat compresse toutes les trames d'une session compressée, avec un compresseur zlib propre à la session
+ * (environ 300 Ko de mémoire native) : le seuil porte donc sur le nombre de sessions compressées simultanées.
+ * Au-delà de max-sessions, les nouvelles connexions sont acceptées sans compression.
+ * Le transport websocket de SockJS (trames texte a["..."]) peut être exclu de la compression.
+ * Tomcat négocie les extensions à partir de l'en-tête Sec-WebSocket-Extensions de la requête, et non de la liste
+ * retenue par Spring : l'en-tête est masqué lorsque la compression est refusée.
+ */
+@Component
+@Slf4j
+public class CompressionHandshakeHandler extends DefaultHandshakeHandler implements WebSocketHandlerDecoratorFactory {
+
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean enabled;
+    private final boolean sockJsEnabled;
+    private final int maxSessions;
+    private final AtomicInteger compressedSessions = new AtomicInteger();
+
+    public CompressionHandshakeHandler(@Value("${chat.websocket.compression.enabled:true}") boolean enabled,
+                                       @Value("${chat.websocket.compression.sockjs:true}") boolean sockJsEnabled,
+                                       @Value("${chat.websocket.compression.max-sessions:2000}") int maxSessions,
+                                       MeterRegistry meterRegistry) {
+        super(new ExtensionFilteringUpgradeStrategy());
+        this.enabled = enabled;
+        this.sockJsEnabled = sockJsEnabled;
+        this.maxSessions = maxSessions;
+        Gauge.builder("chat.websocket.compressed.sessions", compressedSessions, AtomicInteger::get)
+                .description("Sessions WebSocket ouvertes avec permessage-deflate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                 List<WebSocketExtension> requested,
+                                                                 List<WebSocketExtension> supported) {
+        List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requested, supported);
+        if (compress(request)) {
+            return extensions;
+        }
+        return extensions.stream().filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName())).toList();
+    }
+
+    private boolean compress(ServerHttpRequest request) {
+        if (!enabled || (!sockJsEnabled && isSockJs(request.getURI().getPath()))) {
+            return false;
+        }
+        // Seuil approximatif : des poignées de main simultanées peuvent le dépasser de quelques sessions
+        if (compressedSessions.get() >= maxSessions) {
+            log.debug("Seuil de {} sessions compressées atteint : connexion sans compression", maxSessions);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Transport websocket de SockJS : /ws/{serveur}/{session}/websocket (le WebSocket brut /ws/websocket n'en est pas)
+     */
+    private static boolean isSockJs(String path) {
+        return path.endsWith("/websocket") && !path.endsWith(WebSocketConfig.SOCKJS_ENDPOINT + "/websocket");
+    }
+
+    public int getCompressedSessions() {
+        return compressedSessions.get();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (isCompressed(session)) {
+                    compressedSessions.incrementAndGet();
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                if (isCompressed(session)) {
+                    compressedSessions.decrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private static boolean isCompressed(WebSocketSession session) {
+        return session.getExtensions().stream().anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+    }
+
+    /**
+     * Mise à niveau Tomcat limitée aux extensions retenues par filterRequestedExtensions
+     */
+    private static class ExtensionFilteringUpgradeStrategy extends TomcatRequestUpgradeStrategy {
+
+        @Override
+        protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                              ServerEndpointConfig endpointConfig, Map<String, String> pathParams) throws Exception {
+            boolean deflate = endpointConfig.getExtensions().stream().anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+            super.upgradeHttpToWebSocket(deflate ? request : withoutExtensions(request), response, endpointConfig, pathParams);
+        }
+
+        private static HttpServletRequest withoutExtensions(HttpServletRequest request) {
+            return new HttpServletRequestWrapper(request) {
+                @Override
+                public String getHeader(String name) {
+                    return WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name) ? null : super.getHeader(name);
+                }
+
+                @Override
+                public Enumeration<String> getHeaders(String name) {
+                    return WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name)
+                            ? Collections.emptyEnumeration() : super.getHeaders(name);
+                }
+            };
+        }
+    }
+}
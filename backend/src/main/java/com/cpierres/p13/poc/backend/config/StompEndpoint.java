@@ -0,0 +1,73 @@
+package com.cpierres.p13.poc.backend.config;
+
+import com.cpierres.p13.poc.backend.service.StompSubscriptionTracker;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Endpoint Actuator /actuator/stomp : abonnés par destination et statistiques du broker STOMP
+ */
+@Component
+@Endpoint(id = "stomp")
+public class StompEndpoint {
+
+    private final StompSubscriptionTracker subscriptionTracker;
+    private final ObjectProvider<WebSocketMessageBrokerStats> brokerStats;
+    private final CompressionHandshakeHandler compressionHandshakeHandler;
+
+    public StompEndpoint(StompSubscriptionTracker subscriptionTracker,
+                         ObjectProvider<WebSocketMessageBrokerStats> brokerStats,
+                         CompressionHandshakeHandler compressionHandshakeHandler) {
+        this.subscriptionTracker = subscriptionTracker;
+        this.brokerStats = brokerStats;
+        this.compressionHandshakeHandler = compressionHandshakeHandler;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stomp() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscriptionsByTopic", subscriptionTracker.getSubscribersByFamily());
+        result.put("subscriptionsByDestination", subscriptionTracker.getSubscribersByDestination());
+        result.put("compressedSessions", compressionHandshakeHandler.getCompressedSessions());
+        WebSocketMessageBrokerStats stats = brokerStats.getIfAvailable();
+        if (stats != null) {
+            result.put("sessions", sessions(stats.getWebSocketSessionStats()));
+            result.put("stomp", frames(stats.getStompSubProtocolStats()));
+            result.put("inboundChannel", stats.getClientInboundExecutorStatsInfo());
+            result.put("outboundChannel", stats.getClientOutboundExecutorStatsInfo());
+        }
+        return result;
+    }
+
+    private static Map<String, Object> sessions(SubProtocolWebSocketHandler.Stats stats) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (stats != null) {
+            result.put("total", stats.getTotalSessions());
+            result.put("webSocket", stats.getWebSocketSessions());
+            result.put("httpStreaming", stats.getHttpStreamingSessions());
+            result.put("httpPolling", stats.getHttpPollingSessions());
+            result.put("limitExceeded", stats.getLimitExceededSessions());
+            result.put("noMessagesReceived", stats.getNoMessagesReceivedSessions());
+            result.put("transportError", stats.getTransportErrorSessions());
+        }
+        return result;
+    }
+
+    private static Map<String, Object> frames(StompSubProtocolHandler.Stats stats) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (stats != null) {
+            result.put("connect", stats.getTotalConnect());
+            result.put("connected", stats.getTotalConnected());
+            result.put("disconnect", stats.getTotalDisconnect());
+        }
+        return result;
+    }
+}
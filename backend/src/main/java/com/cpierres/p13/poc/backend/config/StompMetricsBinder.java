@@ -0,0 +1,93 @@
+package com.cpierres.p13.poc.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import javax.sql.DataSource;
+import java.util.function.ToIntFunction;
+
+/**
+ * Jauges de l'infrastructure STOMP : profondeur des files des canaux entrant/sortant, threads actifs,
+ * sessions WebSocket par transport, et attente du sémaphore JDBC en mode threads virtuels.
+ * Les beans STOMP sont résolus à la lecture des jauges (ObjectProvider) : le registre de métriques
+ * est créé avant eux et ne doit pas forcer leur initialisation.
+ * Les métriques du pool Hikari (hikaricp.connections.acquire, .pending...) sont liées par Spring Boot.
+ */
+@Component
+public class StompMetricsBinder implements MeterBinder {
+
+    private final ObjectProvider<TaskExecutor> inboundExecutor;
+    private final ObjectProvider<TaskExecutor> outboundExecutor;
+    private final ObjectProvider<WebSocketMessageBrokerStats> brokerStats;
+    private final ObjectProvider<DataSource> dataSource;
+
+    public StompMetricsBinder(@Qualifier("clientInboundChannelExecutor") ObjectProvider<TaskExecutor> inboundExecutor,
+                              @Qualifier("clientOutboundChannelExecutor") ObjectProvider<TaskExecutor> outboundExecutor,
+                              ObjectProvider<WebSocketMessageBrokerStats> brokerStats,
+                              ObjectProvider<DataSource> dataSource) {
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.brokerStats = brokerStats;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindChannel(registry, "inbound", inboundExecutor);
+        bindChannel(registry, "outbound", outboundExecutor);
+
+        bindSessions(registry, "all", SubProtocolWebSocketHandler.Stats::getTotalSessions);
+        bindSessions(registry, "websocket", SubProtocolWebSocketHandler.Stats::getWebSocketSessions);
+        bindSessions(registry, "streaming", SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions);
+        bindSessions(registry, "polling", SubProtocolWebSocketHandler.Stats::getHttpPollingSessions);
+
+        // Sémaphore d'accès à la base (présent uniquement en mode threads virtuels)
+        Gauge.builder("chat.db.gate.waiting", dataSource, provider -> gate(provider, ConcurrencyLimitedDataSource::getWaitingCount))
+                .description("Threads en attente d'un permis de connexion JDBC")
+                .register(registry);
+        Gauge.builder("chat.db.gate.available", dataSource, provider -> gate(provider, ConcurrencyLimitedDataSource::getAvailablePermits))
+                .description("Permis de connexion JDBC disponibles")
+                .register(registry);
+    }
+
+    private void bindChannel(MeterRegistry registry, String channel, ObjectProvider<TaskExecutor> executor) {
+        Gauge.builder("stomp.channel.queue", executor, provider -> pool(provider, pool -> pool.getThreadPoolExecutor().getQueue().size()))
+                .description("Messages en attente de traitement sur le canal STOMP")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("stomp.channel.active", executor, provider -> pool(provider, ThreadPoolTaskExecutor::getActiveCount))
+                .description("Threads occupés à traiter le canal STOMP")
+                .tag("channel", channel)
+                .register(registry);
+    }
+
+    private void bindSessions(MeterRegistry registry, String transport, ToIntFunction<SubProtocolWebSocketHandler.Stats> count) {
+        Gauge.builder("stomp.sessions", brokerStats, provider -> {
+                    WebSocketMessageBrokerStats stats = provider.getIfAvailable();
+                    SubProtocolWebSocketHandler.Stats sessions = stats != null ? stats.getWebSocketSessionStats() : null;
+                    return sessions != null ? count.applyAsInt(sessions) : Double.NaN;
+                })
+                .description("Sessions WebSocket/SockJS ouvertes")
+                .tag("transport", transport)
+                .register(registry);
+    }
+
+    /**
+     * Les exécuteurs à threads virtuels n'ont pas de file : la jauge vaut alors NaN
+     */
+    private static double pool(ObjectProvider<TaskExecutor> provider, ToIntFunction<ThreadPoolTaskExecutor> value) {
+        return provider.getIfAvailable() instanceof ThreadPoolTaskExecutor pool ? value.applyAsInt(pool) : Double.NaN;
+    }
+
+    private static double gate(ObjectProvider<DataSource> provider, ToIntFunction<ConcurrencyLimitedDataSource> value) {
+        return provider.getIfAvailable() instanceof ConcurrencyLimitedDataSource gate ? value.applyAsInt(gate) : Double.NaN;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cpierres.p13.poc.backend.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * Associer la session STOMP à l'utilisateur déclaré dans l'en-tête natif "userId" du CONNECT
+ * (authentification simulée du POC) afin de pouvoir cibler ses destinations /user/queue/...
+ */
+@Component
+public class StompUserInterceptor implements ChannelInterceptor {
+
+    public static final String USER_ID_HEADER = "userId";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand()) && accessor.getUser() == null) {
+            String userId = accessor.getFirstNativeHeader(USER_ID_HEADER);
+            if (userId != null && isUuid(userId)) {
+                accessor.setUser(new ChatUserPrincipal(userId));
+            }
+        }
+        return message;
+    }
+
+    private static boolean isUuid(String value) {
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Principal STOMP : le nom est l'ID de l'utilisateur
+     */
+    public record ChatUserPrincipal(String name) implements Principal {
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cpierres.p13.poc.backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mode d'exécution sur threads virtuels (spring.threads.virtual.enabled=true, JRE 21+)
+ * Spring Boot bascule alors Tomcat et les exécuteurs applicatifs ; cette configuration y ajoute
+ * les canaux STOMP (voir WebSocketConfig) et borne l'accès concurrent à la base.
+ * Sur un JRE antérieur à 21, le mode est ignoré et les pools de threads classiques sont conservés.
+ */
+@Configuration
+@Slf4j
+public class VirtualThreadsConfig {
+
+    private static final AtomicBoolean UNSUPPORTED_WARNED = new AtomicBoolean();
+
+    /**
+     * Le mode threads virtuels est-il effectif (propriété activée et JRE compatible) ?
+     */
+    public static boolean isActive(Environment environment) {
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (requested && !Threading.VIRTUAL.isActive(environment) && UNSUPPORTED_WARNED.compareAndSet(false, true)) {
+            log.warn("Threads virtuels demandés mais JRE {} < 21 : pools de threads classiques conservés",
+                    JavaVersion.getJavaVersion());
+        }
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * Exécuteur d'un canal STOMP : un thread virtuel par message, concurrence éventuellement bornée
+     */
+    public static Executor channelExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
+
+    /**
+     * En mode threads virtuels, borner le nombre de connexions empruntées à la taille du pool
+     */
+    @Bean
+    public static BeanPostProcessor databaseConcurrencyLimiter() {
+        return new DatabaseConcurrencyLimiter();
+    }
+
+    static class DatabaseConcurrencyLimiter implements BeanPostProcessor, EnvironmentAware {
+
+        private Environment environment;
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource
+                    || !isActive(environment)) {
+                return bean;
+            }
+            int permits = environment.getProperty("chat.threads.db-permits", Integer.class, 10);
+            long timeoutMs = environment.getProperty("chat.threads.db-acquire-timeout-ms", Long.class, 30_000L);
+            log.info("Accès base borné à {} connexions simultanées (DataSource '{}')", permits, beanName);
+            return new ConcurrencyLimitedDataSource(dataSource, permits, timeoutMs);
+        }
+    }
+}
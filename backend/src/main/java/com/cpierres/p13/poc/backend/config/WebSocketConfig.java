@@ -1,30 +1,119 @@
 package com.cpierres.p13.poc.backend.config;
 
+import com.cpierres.p13.poc.backend.service.CborMessageFanOut;
+import com.cpierres.p13.poc.backend.service.broker.BrokerRelay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    public static final String SOCKJS_ENDPOINT = "/ws";
+    public static final String NATIVE_ENDPOINT = "/ws-native";
+    
+    // Présent uniquement en mode chat.broker.mode=redis-relay
+    @Autowired(required = false)
+    private BrokerRelay brokerRelay;
+    
+    @Autowired
+    private StompUserInterceptor stompUserInterceptor;
+    
+    @Autowired
+    private CompactPayloadNegotiator compactPayloadNegotiator;
+    
+    @Autowired
+    private CborMessageFanOut cborMessageFanOut;
+    
+    @Autowired
+    private CompressionHandshakeHandler compressionHandshakeHandler;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private Environment environment;
+    
+    // Nombre maximal de messages traités simultanément par canal STOMP en mode threads virtuels (-1 : illimité)
+    @Value("${chat.threads.stomp-concurrency-limit:-1}")
+    private int stompConcurrencyLimit;
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Activer le broker simple en mémoire pour les topics
-        config.enableSimpleBroker("/topic", "/user");
+        // Activer le broker simple en mémoire pour les topics et les files personnelles (/user/queue/... résolues en /queue/...)
+        config.enableSimpleBroker("/topic", "/queue");
+        // Conserver l'ordre de publication par session (le canal sortant est servi par un pool de threads)
+        config.setPreservePublishOrder(true);
         // Préfixe de destination d'application pour le mapping des messages
         config.setApplicationDestinationPrefixes("/app");
         // Préfixe de destination utilisateur pour les messages personnels
         config.setUserDestinationPrefix("/user");
+        // Déclinaison CBOR des messages pour les abonnés binaires de ce nœud
+        config.configureBrokerChannel().interceptors(cborMessageFanOut);
+        // Relais des topics de chat et des messages adressés aux utilisateurs vers les autres nœuds backend
+        if (brokerRelay != null) {
+            config.configureBrokerChannel().interceptors(brokerRelay);
+        }
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Identifier l'utilisateur de la session pour les destinations /user/..., puis négocier le format des messages
+        registration.interceptors(stompUserInterceptor, compactPayloadNegotiator);
+        // Traitement des trames entrantes sur threads virtuels si le mode est actif
+        if (VirtualThreadsConfig.isActive(environment)) {
+            registration.executor(VirtualThreadsConfig.channelExecutor("stomp-inbound-", stompConcurrencyLimit));
+        }
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Remise des trames aux sessions sur threads virtuels si le mode est actif
+        if (VirtualThreadsConfig.isActive(environment)) {
+            registration.executor(VirtualThreadsConfig.channelExecutor("stomp-outbound-", stompConcurrencyLimit));
+        }
+    }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Décompte des sessions compressées (seuil de compression)
+        registration.addDecoratorFactory(compressionHandshakeHandler);
+    }
+    
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Trames SEND en CBOR ; les convertisseurs par défaut (JSON, texte) suivent
+        messageConverters.add(CompactPayloadNegotiator.cborMessageConverter(objectMapper));
+        return true;
     }
     
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // Point de terminaison WebSocket avec SockJS fallback
-        registry.addEndpoint("/ws")
+        // Trames d'une session traitées dans leur ordre de réception : les envois en rafale (sans attendre
+        // les acquittements) sont enregistrés et numérotés dans l'ordre d'émission
+        registry.setPreserveReceiveOrder(true);
+        // Point de terminaison WebSocket natif, sans le protocole SockJS
+        registry.addEndpoint(NATIVE_ENDPOINT)
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(compressionHandshakeHandler)
+                .addInterceptors(compactPayloadNegotiator);
+        // Point de terminaison WebSocket avec SockJS fallback (WebSocket brut également servi sur SOCKJS_ENDPOINT + "/websocket")
+        registry.addEndpoint(SOCKJS_ENDPOINT)
                 .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(compressionHandshakeHandler)
+                .addInterceptors(compactPayloadNegotiator)
                 .withSockJS();
     }
 }
\ No newline at end of file
@@ -1,39 +1,76 @@
 package com.cpierres.p13.poc.backend.controller;
 
+import com.cpierres.p13.poc.backend.dto.MessageListPage;
+import com.cpierres.p13.poc.backend.dto.MessagePage;
+import com.cpierres.p13.poc.backend.dto.MessageResumePage;
+import com.cpierres.p13.poc.backend.dto.SearchResultPage;
 import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.dto.TicketListPage;
 import com.cpierres.p13.poc.backend.entity.ChatMessage;
 import com.cpierres.p13.poc.backend.entity.SupportTicket;
 import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.service.ChatMessageExporter;
 import com.cpierres.p13.poc.backend.service.ChatMessageService;
 import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import com.cpierres.p13.poc.backend.service.TicketNotFoundException;
+import com.cpierres.p13.poc.backend.service.TicketPresenceRegistry;
+import com.cpierres.p13.poc.backend.service.search.ChatSearchService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = ChatRestController.TRUNCATED_HEADER)
 @Slf4j
 public class ChatRestController {
     
+    /** En-tête des listes historiques non paginées : true si des tickets au-delà de la première page sont omis */
+    public static final String TRUNCATED_HEADER = "X-Result-Truncated";
+    
     @Autowired
     private SupportTicketService supportTicketService;
     
     @Autowired
     private ChatMessageService chatMessageService;
     
+    @Autowired
+    private TicketPresenceRegistry presenceRegistry;
+    
+    @Autowired
+    private ChatMessageExporter chatMessageExporter;
+    
+    @Autowired
+    private ChatSearchService chatSearchService;
+    
     // Support Ticket endpoints
     @GetMapping("/tickets")
-    public ResponseEntity<List<SupportTicket>> getAllTickets() {
+    public ResponseEntity<TicketListPage> getTickets(@RequestParam(required = false) TicketStatus status,
+                                                     @RequestParam(required = false) String assignedAgent,
+                                                     @RequestParam(required = false) UUID userId,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+                                                     @RequestParam(required = false) Integer page,
+                                                     @RequestParam(required = false) Integer size,
+                                                     @RequestParam(required = false) String sort) {
         try {
-            log.debug("Récupération de tous les tickets");
-            List<SupportTicket> tickets = supportTicketService.getAllTickets();
+            log.debug("Récupération page de tickets (page: {}, taille: {})", page, size);
+            TicketListPage tickets = supportTicketService.searchTickets(status, assignedAgent, userId, updatedSince, page, size, sort);
             return ResponseEntity.ok(tickets);
+        } catch (IllegalArgumentException e) {
+            log.warn("Paramètres de liste invalides : {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des tickets", e);
             return ResponseEntity.internalServerError().build();
@@ -55,12 +92,15 @@ public class ChatRestController {
         }
     }
     
+    /**
+     * @deprecated remplacé par GET /api/tickets?userId=... (paginé)
+     */
+    @Deprecated
     @GetMapping("/tickets/user/{userId}")
     public ResponseEntity<List<SupportTicket>> getTicketsByUserId(@PathVariable UUID userId) {
         try {
             log.debug("Récupération tickets pour utilisateur : {}", userId);
-            List<SupportTicket> tickets = supportTicketService.getTicketsByUserId(userId);
-            return ResponseEntity.ok(tickets);
+            return legacyTicketList(supportTicketService.getTicketsByUserId(userId));
         } catch (IllegalArgumentException e) {
             log.warn("Utilisateur non trouvé : {}", userId);
             return ResponseEntity.badRequest().build();
@@ -70,24 +110,30 @@ public class ChatRestController {
         }
     }
     
+    /**
+     * @deprecated remplacé par GET /api/tickets?assignedAgent=... (paginé)
+     */
+    @Deprecated
     @GetMapping("/tickets/agent/{assignedAgent}")
     public ResponseEntity<List<SupportTicket>> getTicketsByAssignedAgent(@PathVariable String assignedAgent) {
         try {
             log.debug("Récupération tickets pour agent : {}", assignedAgent);
-            List<SupportTicket> tickets = supportTicketService.getTicketsByAssignedAgent(assignedAgent);
-            return ResponseEntity.ok(tickets);
+            return legacyTicketList(supportTicketService.getTicketsByAssignedAgent(assignedAgent));
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des tickets pour l'agent {}", assignedAgent, e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * @deprecated remplacé par GET /api/tickets?status=... (paginé)
+     */
+    @Deprecated
     @GetMapping("/tickets/status/{status}")
     public ResponseEntity<List<SupportTicket>> getTicketsByStatus(@PathVariable TicketStatus status) {
         try {
             log.debug("Récupération tickets par statut : {}", status);
-            List<SupportTicket> tickets = supportTicketService.getTicketsByStatus(status);
-            return ResponseEntity.ok(tickets);
+            return legacyTicketList(supportTicketService.getTicketsByStatus(status));
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des tickets par statut {}", status, e);
             return ResponseEntity.internalServerError().build();
@@ -129,11 +175,19 @@ public class ChatRestController {
     
     // Chat Message endpoints
     @GetMapping("/messages")
-    public ResponseEntity<List<ChatMessage>> getAllMessages() {
+    public ResponseEntity<MessageListPage> getMessages(@RequestParam(required = false) UUID ticketId,
+                                                       @RequestParam(required = false) UUID senderId,
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+                                                       @RequestParam(required = false) Integer page,
+                                                       @RequestParam(required = false) Integer size,
+                                                       @RequestParam(required = false) String sort) {
         try {
-            log.debug("Récupération de tous les messages");
-            List<ChatMessage> messages = chatMessageService.getAllMessages();
+            log.debug("Récupération page de messages (page: {}, taille: {})", page, size);
+            MessageListPage messages = chatMessageService.searchMessages(ticketId, senderId, since, page, size, sort);
             return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            log.warn("Paramètres de liste invalides : {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des messages", e);
             return ResponseEntity.internalServerError().build();
@@ -170,6 +224,44 @@ public class ChatRestController {
         }
     }
     
+    @GetMapping(value = "/messages/ticket/{ticketId}", params = "limit")
+    public ResponseEntity<MessagePage> getMessagePageByTicketId(@PathVariable UUID ticketId,
+                                                                @RequestParam(required = false) UUID before,
+                                                                @RequestParam(required = false) UUID after,
+                                                                @RequestParam int limit) {
+        try {
+            log.debug("Récupération page de messages pour ticket : {} (before: {}, after: {}, limit: {})", ticketId, before, after, limit);
+            MessagePage page = chatMessageService.getTicketHistoryPage(ticketId, before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (TicketNotFoundException e) {
+            log.warn("Ticket non trouvé : {}", ticketId);
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Pagination invalide pour le ticket {} : {}", ticketId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erreur lors de la récupération de la page de messages pour le ticket {}", ticketId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/messages/ticket/{ticketId}/resume")
+    public ResponseEntity<MessageResumePage> resumeMessagesByTicketId(@PathVariable UUID ticketId,
+                                                                      @RequestParam long afterSequence,
+                                                                      @RequestParam(defaultValue = "100") int limit) {
+        try {
+            log.debug("Reprise des messages du ticket {} après la séquence {} (limit: {})", ticketId, afterSequence, limit);
+            MessageResumePage page = chatMessageService.resumeTicketHistory(ticketId, afterSequence, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Reprise invalide pour le ticket {} : {}", ticketId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erreur lors de la reprise des messages du ticket {}", ticketId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     @GetMapping("/messages/sender/{senderId}")
     public ResponseEntity<List<ChatMessage>> getMessagesBySenderId(@PathVariable UUID senderId) {
         try {
@@ -185,12 +277,54 @@ public class ChatRestController {
         }
     }
     
+    // Exports NDJSON en flux (mémoire constante quel que soit le nombre de messages)
+    @GetMapping(value = "/messages/ticket/{ticketId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMessagesByTicketId(@PathVariable UUID ticketId) {
+        try {
+            log.info("Export des messages du ticket : {}", ticketId);
+            chatMessageExporter.checkTicket(ticketId);
+            StreamingResponseBody body = out -> chatMessageExporter.exportTicket(ticketId, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ticket non trouvé : {}", ticketId);
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erreur lors de l'export des messages du ticket {}", ticketId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping(value = "/messages/sender/{senderId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMessagesBySenderId(@PathVariable UUID senderId) {
+        try {
+            log.info("Export des messages de l'expéditeur : {}", senderId);
+            chatMessageExporter.checkSender(senderId);
+            StreamingResponseBody body = out -> chatMessageExporter.exportSender(senderId, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Expéditeur non trouvé : {}", senderId);
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erreur lors de l'export des messages de l'expéditeur {}", senderId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     @PostMapping("/messages")
     public ResponseEntity<ChatMessage> createMessage(@RequestBody SendMessageRequest request) {
         try {
             log.info("Création d'un nouveau message pour le ticket : {}", request.getTicketId());
             ChatMessage savedMessage = chatMessageService.sendMessage(request);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedMessage);
+        } catch (DataIntegrityViolationException e) {
+            // Renvoi concurrent de la même clé d'idempotence : le premier envoi fait foi
+            return Optional.ofNullable(request.getClientMessageId())
+                    .flatMap(clientMessageId -> chatMessageService.findSentMessage(request.getSenderId(), clientMessageId))
+                    .map(existingMessage -> ResponseEntity.status(HttpStatus.CREATED).body(existingMessage))
+                    .orElseGet(() -> {
+                        log.error("Erreur lors de la création du message", e);
+                        return ResponseEntity.internalServerError().build();
+                    });
         } catch (IllegalArgumentException e) {
             log.warn("Données de message invalides : {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -217,4 +351,49 @@ public class ChatRestController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+    
+    // Search endpoints
+    @GetMapping("/search")
+    public ResponseEntity<SearchResultPage> search(@RequestParam String q,
+                                                   @RequestParam(required = false) UUID ticketId,
+                                                   @RequestParam(required = false) UUID senderId,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                   @RequestParam(required = false) Integer page,
+                                                   @RequestParam(required = false) Integer size) {
+        try {
+            log.debug("Recherche plein texte : {}", q);
+            SearchResultPage results = chatSearchService.search(q, ticketId, senderId, from, to, page, size);
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            log.warn("Recherche invalide : {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erreur lors de la recherche : {}", q, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    // Presence endpoints
+    @GetMapping("/tickets/{ticketId}/online-users")
+    public ResponseEntity<Set<UUID>> getOnlineUsers(@PathVariable UUID ticketId) {
+        log.debug("Récupération utilisateurs connectés au ticket : {}", ticketId);
+        return ResponseEntity.ok(presenceRegistry.getOnlineUsers(ticketId));
+    }
+    
+    @GetMapping("/users/{userId}/viewed-tickets")
+    public ResponseEntity<Set<UUID>> getViewedTickets(@PathVariable UUID userId) {
+        log.debug("Récupération tickets consultés par l'utilisateur : {}", userId);
+        return ResponseEntity.ok(presenceRegistry.getViewedTickets(userId));
+    }
+    
+    /**
+     * Réponse d'une liste historique : première page seule, troncature et dépréciation signalées par en-têtes
+     */
+    private static ResponseEntity<List<SupportTicket>> legacyTicketList(TicketListPage page) {
+        return ResponseEntity.ok()
+                .header(TRUNCATED_HEADER, String.valueOf(page.isHasNext()))
+                .header("Deprecation", "true")
+                .body(page.getTickets());
+    }
+}
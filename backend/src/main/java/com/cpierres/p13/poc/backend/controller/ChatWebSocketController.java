@@ -1,15 +1,24 @@
 package com.cpierres.p13.poc.backend.controller;
 
+import com.cpierres.p13.poc.backend.dto.MessageResumePage;
+import com.cpierres.p13.poc.backend.dto.ResumeRequest;
 import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.dto.TicketJoinRequest;
+import com.cpierres.p13.poc.backend.dto.TypingRequest;
 import com.cpierres.p13.poc.backend.entity.ChatMessage;
 import com.cpierres.p13.poc.backend.service.ChatMessageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Controller;
 
 import java.util.UUID;
@@ -24,12 +33,20 @@ public class ChatWebSocketController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+    
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+    
     /**
-     * Gérer les messages de chat entrants et les diffuser aux abonnés du ticket
+     * Gérer les messages de chat entrants ; la diffusion aux abonnés du ticket est assurée
+     * une seule fois par le service (pipeline ChatMessageBroadcaster)
+     * Trame SEND avec en-tête receipt : trame RECEIPT à la seule session émettrice une fois le message durable
+     * (en-têtes message-id, sequence, client-message-id), sans attendre l'écho de la diffusion.
      */
     @MessageMapping("/chat.send")
-    @SendTo("/topic/messages/{ticketId}")
-    public ChatMessage sendMessage(ChatMessage message) {
+    public void sendMessage(ChatMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
             log.info("Réception message WebSocket pour ticket {} de l'utilisateur {}", 
                     message.getTicketId(), message.getSenderId());
@@ -38,16 +55,27 @@ public class ChatWebSocketController {
             SendMessageRequest request = new SendMessageRequest(
                 message.getTicketId(),
                 message.getSenderId(),
-                message.getContent()
+                message.getContent(),
+                message.getClientMessageId()
             );
             
             // Utiliser le service pour envoyer le message avec toute la logique métier
-            ChatMessage savedMessage = chatMessageService.sendMessage(request);
+            ChatMessage savedMessage;
+            try {
+                savedMessage = chatMessageService.sendMessage(request);
+            } catch (DataIntegrityViolationException e) {
+                // Renvoi concurrent de la même clé (autre nœud) : le doublon a été refusé, le premier envoi fait foi
+                if (request.getClientMessageId() == null) {
+                    throw e;
+                }
+                savedMessage = chatMessageService.findSentMessage(request.getSenderId(), request.getClientMessageId())
+                        .orElseThrow(() -> e);
+            }
+            
+            sendReceipt(headerAccessor, savedMessage);
             
             log.info("Message WebSocket traité avec succès : {} (ID: {})", 
                     savedMessage.getContent(), savedMessage.getId());
-            
-            return savedMessage;
         } catch (IllegalArgumentException e) {
             log.error("Données de message WebSocket invalides : {}", e.getMessage());
             throw e;
@@ -60,48 +88,90 @@ public class ChatWebSocketController {
         }
     }
     
+    /**
+     * Acquitter un message enregistré par une trame RECEIPT, si la trame SEND en demandait une
+     */
+    private void sendReceipt(SimpMessageHeaderAccessor headerAccessor, ChatMessage savedMessage) {
+        String receiptId = headerAccessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_RECEIPT_HEADER);
+        if (receiptId == null) {
+            return;
+        }
+        StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+        receipt.setReceiptId(receiptId);
+        receipt.setSessionId(headerAccessor.getSessionId());
+        receipt.setNativeHeader("message-id", savedMessage.getId().toString());
+        if (savedMessage.getSequence() != null) {
+            receipt.setNativeHeader("sequence", savedMessage.getSequence().toString());
+        }
+        if (savedMessage.getClientMessageId() != null) {
+            receipt.setNativeHeader("client-message-id", savedMessage.getClientMessageId());
+        }
+        clientOutboundChannel.send(MessageBuilder.createMessage(EMPTY_PAYLOAD, receipt.getMessageHeaders()));
+    }
+    
+    /**
+     * Reprendre l'historique d'un ticket après reconnexion : messages postérieurs au dernier numéro de séquence reçu,
+     * envoyés à la seule session demandeuse sur /user/queue/resume
+     */
+    @MessageMapping("/chat.resume")
+    @SendToUser(destinations = "/queue/resume", broadcast = false)
+    public MessageResumePage resume(ResumeRequest request) {
+        if (!request.isValid()) {
+            log.warn("Reprise d'historique invalide ignorée");
+            return null;
+        }
+        return chatMessageService.resumeTicketHistory(request.getTicketId(), request.getAfterSequence(), request.getLimit());
+    }
+    
     /**
      * Gérer l'arrivée d'un utilisateur dans une conversation de ticket
      */
     @MessageMapping("/chat.join")
-    @SendTo("/topic/users/{ticketId}")
-    public String userJoined(@DestinationVariable String ticketId, 
-                           SimpMessageHeaderAccessor headerAccessor) {
+    public void userJoined(TicketJoinRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        if (!request.isValid()) {
+            log.warn("Arrivée dans un ticket ignorée : ticketId manquant");
+            return;
+        }
         String sessionId = headerAccessor.getSessionId();
-        log.info("Utilisateur connecté au ticket {} (session: {})", ticketId, sessionId);
+        log.info("Utilisateur connecté au ticket {} (session: {})", request.getTicketId(), sessionId);
         
         // Stocker les informations de session utilisateur si nécessaire
-        headerAccessor.getSessionAttributes().put("ticketId", ticketId);
+        headerAccessor.getSessionAttributes().put("ticketId", request.getTicketId().toString());
         
-        return "Utilisateur connecté au ticket " + ticketId;
+        messagingTemplate.convertAndSend("/topic/users/" + request.getTicketId(),
+                "Utilisateur connecté au ticket " + request.getTicketId());
     }
     
     /**
      * Gérer le départ d'un utilisateur d'une conversation de ticket
      */
     @MessageMapping("/chat.leave")
-    @SendTo("/topic/users/{ticketId}")
-    public String userLeft(@DestinationVariable String ticketId,
-                          SimpMessageHeaderAccessor headerAccessor) {
+    public void userLeft(TicketJoinRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        if (!request.isValid()) {
+            log.warn("Départ d'un ticket ignoré : ticketId manquant");
+            return;
+        }
         String sessionId = headerAccessor.getSessionId();
-        log.info("Utilisateur déconnecté du ticket {} (session: {})", ticketId, sessionId);
+        log.info("Utilisateur déconnecté du ticket {} (session: {})", request.getTicketId(), sessionId);
         
-        return "Utilisateur déconnecté du ticket " + ticketId;
+        messagingTemplate.convertAndSend("/topic/users/" + request.getTicketId(),
+                "Utilisateur déconnecté du ticket " + request.getTicketId());
     }
     
     /**
-     * Envoyer un indicateur de saisie
+     * Recevoir un indicateur de saisie ; la diffusion est regroupée par le service (au plus un événement par intervalle)
      */
     @MessageMapping("/chat.typing")
-    public void userTyping(@DestinationVariable String ticketId,
-                          SimpMessageHeaderAccessor headerAccessor) {
-        String sessionId = headerAccessor.getSessionId();
-        log.debug("Utilisateur en train d'écrire dans le ticket {} (session: {})", ticketId, sessionId);
+    public void userTyping(TypingRequest request) {
+        if (!request.isValid()) {
+            log.warn("Indicateur de saisie invalide ignoré");
+            return;
+        }
         
-        // Diffuser l'indicateur de saisie aux autres utilisateurs participant au ticket
-        messagingTemplate.convertAndSend(
-            "/topic/typing/" + ticketId, 
-            "Un utilisateur est en train d'écrire..."
-        );
+        if (request.isTyping()) {
+            chatMessageService.notifyUserTyping(request.getTicketId(), request.getUserId());
+        } else {
+            chatMessageService.notifyUserStoppedTyping(request.getTicketId(), request.getUserId());
+        }
     }
 }
\ No newline at end of file
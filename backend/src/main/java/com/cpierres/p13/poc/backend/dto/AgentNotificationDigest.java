@@ -0,0 +1,20 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Notification regroupée envoyée à un agent sur /user/queue/notifications
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentNotificationDigest {
+    private LocalDateTime generatedAt;
+    private long totalMessages;
+    private List<TicketActivity> tickets;
+}
@@ -0,0 +1,31 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pour une page de la liste des messages (pagination par numéro de page, filtres combinés)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageListPage {
+    
+    private List<ChatMessage> messages;
+    
+    private int page;
+    
+    private int size;
+    
+    /** Indique s'il existe une page suivante (déterminé sans comptage) */
+    private boolean hasNext;
+    
+    /** Nombre total de résultats : exact si totalExact, sinon estimation ou minimum */
+    private long totalEstimate;
+    
+    private boolean totalExact;
+}
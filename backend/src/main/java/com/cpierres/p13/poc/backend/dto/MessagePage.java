@@ -0,0 +1,30 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO pour une page d'historique de messages paginée par curseur (keyset)
+ * Les messages sont toujours triés du plus ancien au plus récent
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    
+    private List<ChatMessage> messages;
+    
+    /** Curseur pour charger les messages plus anciens (before), null si la page atteint le début de la conversation */
+    private UUID previousCursor;
+    
+    /** Curseur pour charger les messages plus récents (after), null si aucun message */
+    private UUID nextCursor;
+    
+    /** Indique s'il reste des messages au-delà de la page dans le sens de lecture */
+    private boolean hasMore;
+}
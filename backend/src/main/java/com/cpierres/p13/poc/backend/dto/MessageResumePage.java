@@ -0,0 +1,29 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO pour la reprise de l'historique d'un ticket après un numéro de séquence (reconnexion)
+ * Les messages sont triés par numéro de séquence croissant
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageResumePage {
+    
+    private UUID ticketId;
+    
+    private List<ChatMessage> messages;
+    
+    /** Numéro de séquence du dernier message de la page (numéro demandé si la page est vide), point de reprise suivant */
+    private long lastSequence;
+    
+    /** Indique s'il reste des messages après la page */
+    private boolean hasMore;
+}
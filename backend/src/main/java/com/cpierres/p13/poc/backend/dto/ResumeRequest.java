@@ -0,0 +1,30 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * DTO pour la reprise de l'historique d'un ticket envoyée par le client sur /app/chat.resume
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeRequest {
+    
+    private UUID ticketId;
+    
+    /** Dernier numéro de séquence reçu par le client (0 : depuis le début) */
+    private long afterSequence;
+    
+    private int limit = 100;
+    
+    /**
+     * Validation des données requises
+     */
+    public boolean isValid() {
+        return ticketId != null && afterSequence >= 0;
+    }
+}
@@ -0,0 +1,38 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * DTO pour un résultat de recherche plein texte : un message, ou un ticket (sujet/description)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    
+    public enum Type { MESSAGE, TICKET }
+    
+    private Type type;
+    
+    private UUID ticketId;
+    
+    /** null pour un résultat de type TICKET */
+    private UUID messageId;
+    
+    /** Expéditeur du message, ou créateur du ticket */
+    private UUID senderId;
+    
+    /** Contenu du message, ou sujet du ticket */
+    private String text;
+    
+    /** Date du message, ou date de création du ticket */
+    private LocalDateTime timestamp;
+    
+    /** Pertinence (plus élevée = plus pertinent), comparable uniquement au sein d'une même recherche */
+    private double score;
+}
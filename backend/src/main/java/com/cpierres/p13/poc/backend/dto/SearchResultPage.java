@@ -0,0 +1,24 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pour une page de résultats de recherche, triés par pertinence décroissante puis date décroissante
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResultPage {
+    
+    private List<SearchHit> hits;
+    
+    private int page;
+    
+    private int size;
+    
+    private boolean hasNext;
+}
@@ -1,5 +1,6 @@
 package com.cpierres.p13.poc.backend.dto;
 
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -18,6 +19,13 @@ public class SendMessageRequest {
     private UUID senderId;
     private String content;
     
+    // Clé d'idempotence générée par le client (facultative) : un renvoi avec la même clé retourne le message déjà enregistré
+    private String clientMessageId;
+    
+    public SendMessageRequest(UUID ticketId, UUID senderId, String content) {
+        this(ticketId, senderId, content, null);
+    }
+    
     /**
      * Validation des données requises
      */
@@ -25,6 +33,8 @@ public class SendMessageRequest {
         return ticketId != null && 
                senderId != null &&
                content != null && !content.trim().isEmpty() &&
-               content.length() <= 1000;
+               content.length() <= 1000 &&
+               (clientMessageId == null ||
+                (!clientMessageId.isBlank() && clientMessageId.length() <= ChatMessage.CLIENT_MESSAGE_ID_LENGTH));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Activité d'un ticket sur une fenêtre de notification ("ticket X : +5 messages")
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketActivity {
+    private UUID ticketId;
+    private String subject;
+    private long newMessages;
+    private LocalDateTime lastMessageAt;
+}
@@ -0,0 +1,25 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * DTO envoyé par le client sur /app/chat.join et /app/chat.leave
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketJoinRequest {
+    
+    private UUID ticketId;
+    
+    /**
+     * Validation des données requises
+     */
+    public boolean isValid() {
+        return ticketId != null;
+    }
+}
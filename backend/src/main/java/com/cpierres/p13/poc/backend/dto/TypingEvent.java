@@ -0,0 +1,20 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Événement diffusé sur /topic/typing/{ticketId} : début ou fin de saisie d'un utilisateur
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingEvent {
+    private UUID ticketId;
+    private UUID userId;
+    private String firstName;
+    private boolean typing;
+}
@@ -0,0 +1,29 @@
+package com.cpierres.p13.poc.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * DTO pour l'indicateur de saisie envoyé par le client sur /app/chat.typing
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingRequest {
+    
+    private UUID ticketId;
+    private UUID userId;
+    
+    /** false lorsque l'utilisateur a arrêté d'écrire (champ vidé, message envoyé) */
+    private boolean typing = true;
+    
+    /**
+     * Validation des données requises
+     */
+    public boolean isValid() {
+        return ticketId != null && userId != null;
+    }
+}
@@ -4,19 +4,33 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
+// Sur PostgreSQL, table partitionnée par mois sur timestamp (voir ChatMessagePartitionManager)
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Index composite pour la pagination par curseur (keyset) de l'historique d'un ticket
+        @Index(name = "idx_chat_messages_ticket_timestamp", columnList = "ticket_id, timestamp, id"),
+        // Index des listes filtrées par expéditeur, et de la liste globale triée par date
+        @Index(name = "idx_chat_messages_sender_timestamp", columnList = "sender_id, timestamp, id"),
+        @Index(name = "idx_chat_messages_timestamp", columnList = "timestamp, id"),
+        // Reprise après reconnexion : messages d'un ticket postérieurs à un numéro de séquence
+        @Index(name = "idx_chat_messages_ticket_sequence", columnList = "ticket_id, sequence_number")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ChatMessage {
     
+    /** Longueur maximale d'une clé d'idempotence fournie par le client */
+    public static final int CLIENT_MESSAGE_ID_LENGTH = 64;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
     private UUID id;
     
     @Column(name = "ticket_id", nullable = false)
@@ -31,10 +45,20 @@ public class ChatMessage {
     @Column(nullable = false)
     private LocalDateTime timestamp;
     
+    // Numéro d'ordre strictement croissant au sein du ticket, attribué à l'insertion (voir MessageSequencer)
+    // null : message antérieur à la numérotation, numéroté à la première utilisation du ticket
+    @Column(name = "sequence_number", updatable = false)
+    private Long sequence;
+    
+    // Clé d'idempotence fournie par le client à l'envoi (renvois dédupliqués, voir SendDeduplicator) ; null : non fournie
+    @Column(name = "client_message_id", length = CLIENT_MESSAGE_ID_LENGTH, updatable = false)
+    private String clientMessageId;
+    
     @PrePersist
     protected void onCreate() {
         if (timestamp == null) {
-            timestamp = LocalDateTime.now();
+            // Précision alignée sur PostgreSQL (microseconde) : les copies en mémoire restent identiques à la base
+            timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.cpierres.p13.poc.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Segment d'archive : messages consécutifs d'un ticket fermé, compressés (NDJSON gzip)
+ * Écrit une seule fois par l'archivage, jamais modifié ensuite (entité immuable).
+ * Les bornes (horodatage, identifiant) permettent de ne décompresser que les segments utiles.
+ */
+@Entity
+@Immutable
+@Table(name = "chat_message_archive_segments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_chat_message_archive_ticket_segment", columnNames = {"ticket_id", "segment_number"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageArchiveSegment {
+    
+    /** Taille maximale déclarée d'un segment compressé (varbinary sur H2, bytea sans limite sur PostgreSQL) */
+    public static final int MAX_PAYLOAD_LENGTH = 1_000_000;
+    
+    @Id
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
+    private UUID id;
+    
+    @Column(name = "ticket_id", nullable = false)
+    private UUID ticketId;
+    
+    // Ordre des segments d'un ticket (0, 1, 2...), chronologique
+    @Column(name = "segment_number", nullable = false)
+    private int segmentNumber;
+    
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+    
+    @Column(name = "first_message_at", nullable = false)
+    private LocalDateTime firstMessageAt;
+    
+    @Column(name = "first_message_id", nullable = false)
+    private UUID firstMessageId;
+    
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+    
+    @Column(name = "last_message_id", nullable = false)
+    private UUID lastMessageId;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+    
+    // Messages du segment, un JSON par ligne, compressés en gzip (bytea sur PostgreSQL)
+    @Column(nullable = false, length = MAX_PAYLOAD_LENGTH)
+    private byte[] payload;
+}
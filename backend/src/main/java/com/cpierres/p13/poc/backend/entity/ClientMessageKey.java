@@ -0,0 +1,69 @@
+package com.cpierres.p13.poc.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Clé d'idempotence d'un message envoyé par un client (clientMessageId), unique par expéditeur
+ * Table distincte de chat_messages : sur PostgreSQL, une contrainte d'unicité de la table partitionnée
+ * devrait inclure timestamp et ne dédupliquerait pas les renvois. Conservée pour une durée limitée (voir SendDeduplicator).
+ */
+@Entity
+@Table(name = "chat_message_client_keys", indexes = {
+        // Purge des clés expirées
+        @Index(name = "idx_chat_message_client_keys_created", columnList = "created_at")
+})
+@IdClass(ClientMessageKey.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientMessageKey implements Persistable<ClientMessageKey.Key> {
+    
+    @Id
+    @Column(name = "sender_id", nullable = false)
+    private UUID senderId;
+    
+    @Id
+    @Column(name = "client_message_id", nullable = false, length = ChatMessage.CLIENT_MESSAGE_ID_LENGTH)
+    private String clientMessageId;
+    
+    @Column(name = "ticket_id", nullable = false)
+    private UUID ticketId;
+    
+    @Column(name = "message_id", nullable = false)
+    private UUID messageId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Override
+    public Key getId() {
+        return new Key(senderId, clientMessageId);
+    }
+    
+    /**
+     * Insertion seule (jamais de fusion avec une clé existante) : un doublon est refusé par la clé primaire
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+    
+    /**
+     * Identifiant composite (expéditeur, clé client)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID senderId;
+        private String clientMessageId;
+    }
+}
@@ -4,19 +4,28 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "support_tickets")
+@Table(name = "support_tickets", indexes = {
+        // Index des listes filtrées, triées par date de mise à jour (voir TicketSpecifications)
+        @Index(name = "idx_support_tickets_status_updated", columnList = "status, updated_at"),
+        @Index(name = "idx_support_tickets_agent_updated", columnList = "assigned_agent, updated_at"),
+        @Index(name = "idx_support_tickets_user_updated", columnList = "user_id, updated_at"),
+        @Index(name = "idx_support_tickets_updated", columnList = "updated_at"),
+        // Sélection des tickets fermés à archiver
+        @Index(name = "idx_support_tickets_status_closed", columnList = "status, closed_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class SupportTicket {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
     private UUID id;
     
     @Column(name = "user_id", nullable = false)
@@ -41,6 +50,36 @@ public class SupportTicket {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Date de la dernière fermeture (null si le ticket n'est pas fermé)
+    @Column(name = "closed_at")
+    private LocalDateTime closedAt;
+    
+    // Date du dernier archivage des messages (requête UPDATE dédiée) ; non null : historique en partie archivé
+    @Column(name = "archived_at", updatable = false)
+    private LocalDateTime archivedAt;
+    
+    // Statistiques de messages maintenues à chaque insertion (requête UPDATE dédiée, jamais par l'entité)
+    // null : ticket antérieur aux compteurs, initialisé à la première consultation
+    @Column(name = "message_count", updatable = false)
+    private Long messageCount;
+    
+    @Column(name = "user_message_count", updatable = false)
+    private Long userMessageCount;
+    
+    @Column(name = "system_message_count", updatable = false)
+    private Long systemMessageCount;
+    
+    @Column(name = "first_message_at", updatable = false)
+    private LocalDateTime firstMessageAt;
+    
+    @Column(name = "last_message_at", updatable = false)
+    private LocalDateTime lastMessageAt;
+    
+    // Dernier numéro de séquence attribué à un message du ticket (requête UPDATE dédiée)
+    // null : ticket antérieur à la numérotation des messages
+    @Column(name = "last_sequence", updatable = false)
+    private Long lastSequence;
+    
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
@@ -50,6 +89,14 @@ public class SupportTicket {
         if (status == null) {
             status = TicketStatus.OPEN;
         }
+        if (messageCount == null) {
+            messageCount = 0L;
+            userMessageCount = 0L;
+            systemMessageCount = 0L;
+        }
+        if (lastSequence == null) {
+            lastSequence = 0L;
+        }
     }
     
     @PreUpdate
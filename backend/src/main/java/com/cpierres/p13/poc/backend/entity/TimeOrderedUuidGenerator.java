@@ -0,0 +1,55 @@
+package com.cpierres.p13.poc.backend.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Générateur d'identifiants UUID version 7 (RFC 9562), ordonnés dans le temps et monotones
+ * Branché sur Hibernate via @UuidGenerator(algorithm = ...) : les insertions restent en fin d'index
+ * et les identifiants sont générés côté application, ce qui autorise le batching JDBC.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    /** Horodatage en millisecondes (48 bits) suivi d'un compteur sur 12 bits (champ rand_a) */
+    private static final AtomicLong LAST_STATE = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    /**
+     * Générer un nouvel identifiant, strictement croissant au sein de la JVM
+     */
+    public static UUID next() {
+        long state = nextState(System.currentTimeMillis());
+        long millis = state >>> COUNTER_BITS;
+        long counter = state & ((1L << COUNTER_BITS) - 1);
+
+        long mostSigBits = (millis << 16) | (0x7L << 12) | counter;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() >>> 2) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Nouvelle milliseconde : compteur initialisé aléatoirement dans sa moitié basse pour garder de la marge.
+     * Même milliseconde ou horloge qui recule : incrément de l'état précédent (un débordement du compteur
+     * avance d'une milliseconde).
+     */
+    private static long nextState(long nowMillis) {
+        while (true) {
+            long previous = LAST_STATE.get();
+            long candidate = (nowMillis << COUNTER_BITS) | ThreadLocalRandom.current().nextInt(1 << (COUNTER_BITS - 1));
+            long next = candidate > previous ? candidate : previous + 1;
+            if (LAST_STATE.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.cpierres.p13.poc.backend.repository;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessageArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ChatMessageArchiveSegmentRepository extends JpaRepository<ChatMessageArchiveSegment, UUID> {
+    
+    /**
+     * Description des segments d'un ticket dans l'ordre chronologique, sans leur contenu compressé
+     */
+    @Query("SELECT s.id AS id, s.segmentNumber AS segmentNumber, s.messageCount AS messageCount, " +
+           "s.firstMessageAt AS firstMessageAt, s.firstMessageId AS firstMessageId, " +
+           "s.lastMessageAt AS lastMessageAt, s.lastMessageId AS lastMessageId " +
+           "FROM ChatMessageArchiveSegment s WHERE s.ticketId = :ticketId ORDER BY s.segmentNumber")
+    List<SegmentInfo> findSegments(UUID ticketId);
+    
+    /**
+     * Contenu compressé d'un segment, lu uniquement lorsque ses messages sont demandés
+     */
+    @Query("SELECT s.payload FROM ChatMessageArchiveSegment s WHERE s.id = :id")
+    byte[] findPayload(UUID id);
+    
+    @Query("SELECT COALESCE(SUM(s.messageCount), 0) FROM ChatMessageArchiveSegment s WHERE s.ticketId = :ticketId")
+    long countMessages(UUID ticketId);
+    
+    @Query("SELECT COALESCE(MAX(s.segmentNumber) + 1, 0) FROM ChatMessageArchiveSegment s WHERE s.ticketId = :ticketId")
+    int nextSegmentNumber(UUID ticketId);
+    
+    interface SegmentInfo {
+        UUID getId();
+        int getSegmentNumber();
+        int getMessageCount();
+        LocalDateTime getFirstMessageAt();
+        UUID getFirstMessageId();
+        LocalDateTime getLastMessageAt();
+        UUID getLastMessageId();
+    }
+}
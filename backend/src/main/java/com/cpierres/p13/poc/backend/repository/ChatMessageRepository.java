@@ -1,16 +1,29 @@
 package com.cpierres.p13.poc.backend.repository;
 
 import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>, JpaSpecificationExecutor<ChatMessage> {
+    
+    /** Lignes rapatriées par aller-retour JDBC lors des exports en flux */
+    String EXPORT_FETCH_SIZE = "500";
     
     List<ChatMessage> findByTicketId(UUID ticketId);
     
@@ -18,9 +31,84 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>
     
     List<ChatMessage> findBySenderId(UUID senderId);
     
+    /**
+     * Derniers messages d'un ticket (du plus récent au plus ancien), première page de l'historique
+     */
+    List<ChatMessage> findByTicketIdOrderByTimestampDescIdDesc(UUID ticketId, Limit limit);
+    
+    /**
+     * Messages strictement antérieurs au curseur (timestamp, id), du plus récent au plus ancien
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.ticketId = :ticketId " +
+           "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<ChatMessage> findPageBefore(UUID ticketId, LocalDateTime timestamp, UUID id, Limit limit);
+    
+    /**
+     * Messages strictement postérieurs au curseur (timestamp, id), du plus ancien au plus récent
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.ticketId = :ticketId " +
+           "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+           "ORDER BY m.timestamp ASC, m.id ASC")
+    List<ChatMessage> findPageAfter(UUID ticketId, LocalDateTime timestamp, UUID id, Limit limit);
+    
+    /**
+     * Lecture en flux (curseur avant uniquement) des messages d'un ticket pour l'export
+     * Entités en lecture seule (pas d'instantané de dirty checking), lignes rapatriées par lots de EXPORT_FETCH_SIZE.
+     * Le flux doit être consommé et fermé dans une transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT m FROM ChatMessage m WHERE m.ticketId = :ticketId ORDER BY m.timestamp ASC, m.id ASC")
+    Stream<ChatMessage> streamByTicketId(UUID ticketId);
+    
+    /**
+     * Lecture en flux des messages d'un expéditeur pour l'export (mêmes conditions que streamByTicketId)
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT m FROM ChatMessage m WHERE m.senderId = :senderId ORDER BY m.timestamp ASC, m.id ASC")
+    Stream<ChatMessage> streamBySenderId(UUID senderId);
+    
     @Query("SELECT m FROM ChatMessage m WHERE m.ticketId = :ticketId AND m.timestamp >= :since ORDER BY m.timestamp ASC")
     List<ChatMessage> findByTicketIdAndTimestampAfter(UUID ticketId, LocalDateTime since);
     
+    /**
+     * Messages d'un ticket de numéro de séquence strictement supérieur (reprise après reconnexion)
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.ticketId = :ticketId AND m.sequence > :afterSequence ORDER BY m.sequence ASC")
+    List<ChatMessage> findBySequenceAfter(UUID ticketId, long afterSequence, Limit limit);
+    
+    /**
+     * Supprimer les messages archivés d'un ticket : jusqu'au dernier message archivé (timestamp, id) inclus
+     */
+    @Modifying
+    @Query("DELETE FROM ChatMessage m WHERE m.ticketId = :ticketId " +
+           "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id <= :id))")
+    int deleteArchived(UUID ticketId, LocalDateTime timestamp, UUID id);
+    
     @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.ticketId = :ticketId")
     Long countByTicketId(UUID ticketId);
+    
+    /**
+     * Agrégat des messages d'un ticket, utilisé une seule fois pour initialiser ses compteurs
+     */
+    @Query("SELECT COUNT(m) AS totalMessages, " +
+           "COALESCE(SUM(CASE WHEN m.senderId IS NULL THEN 1 ELSE 0 END), 0) AS systemMessages, " +
+           "MIN(m.timestamp) AS firstMessageTime, MAX(m.timestamp) AS lastMessageTime " +
+           "FROM ChatMessage m WHERE m.ticketId = :ticketId")
+    TicketMessageAggregate aggregateByTicketId(UUID ticketId);
+    
+    interface TicketMessageAggregate {
+        long getTotalMessages();
+        long getSystemMessages();
+        LocalDateTime getFirstMessageTime();
+        LocalDateTime getLastMessageTime();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.cpierres.p13.poc.backend.repository;
+
+import com.cpierres.p13.poc.backend.entity.ClientMessageKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ClientMessageKeyRepository extends JpaRepository<ClientMessageKey, ClientMessageKey.Key> {
+    
+    @Modifying
+    @Query("DELETE FROM ClientMessageKey k WHERE k.createdAt < :createdBefore")
+    int deleteCreatedBefore(LocalDateTime createdBefore);
+}
@@ -0,0 +1,39 @@
+package com.cpierres.p13.poc.backend.repository;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Filtres combinables des listes de messages ; un filtre null n'ajoute aucun prédicat
+ */
+public final class MessageSpecifications {
+
+    private MessageSpecifications() {
+    }
+
+    public static Specification<ChatMessage> matching(UUID ticketId, UUID senderId, LocalDateTime since) {
+        return Specification.allOf(
+                inTicket(ticketId),
+                sentBy(senderId),
+                sentSince(since));
+    }
+
+    public static boolean isUnfiltered(UUID ticketId, UUID senderId, LocalDateTime since) {
+        return ticketId == null && senderId == null && since == null;
+    }
+
+    private static Specification<ChatMessage> inTicket(UUID ticketId) {
+        return ticketId == null ? null : (root, query, cb) -> cb.equal(root.get("ticketId"), ticketId);
+    }
+
+    private static Specification<ChatMessage> sentBy(UUID senderId) {
+        return senderId == null ? null : (root, query, cb) -> cb.equal(root.get("senderId"), senderId);
+    }
+
+    private static Specification<ChatMessage> sentSince(LocalDateTime since) {
+        return since == null ? null : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), since);
+    }
+}
@@ -2,14 +2,20 @@ package com.cpierres.p13.poc.backend.repository;
 
 import com.cpierres.p13.poc.backend.entity.SupportTicket;
 import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface SupportTicketRepository extends JpaRepository<SupportTicket, UUID> {
+public interface SupportTicketRepository extends JpaRepository<SupportTicket, UUID>, JpaSpecificationExecutor<SupportTicket> {
     
     List<SupportTicket> findByUserId(UUID userId);
     
@@ -18,4 +24,85 @@ public interface SupportTicketRepository extends JpaRepository<SupportTicket, UU
     List<SupportTicket> findByStatus(TicketStatus status);
     
     List<SupportTicket> findByUserIdAndStatus(UUID userId, TicketStatus status);
+    
+    /**
+     * Incrémenter atomiquement les statistiques de messages d'un ticket (sans effet si non initialisées)
+     */
+    @Modifying
+    @Query("UPDATE SupportTicket t SET " +
+           "t.messageCount = t.messageCount + :userMessages + :systemMessages, " +
+           "t.userMessageCount = t.userMessageCount + :userMessages, " +
+           "t.systemMessageCount = t.systemMessageCount + :systemMessages, " +
+           "t.firstMessageAt = CASE WHEN t.firstMessageAt IS NULL OR t.firstMessageAt > :firstMessageAt THEN :firstMessageAt ELSE t.firstMessageAt END, " +
+           "t.lastMessageAt = CASE WHEN t.lastMessageAt IS NULL OR t.lastMessageAt < :lastMessageAt THEN :lastMessageAt ELSE t.lastMessageAt END " +
+           "WHERE t.id = :ticketId AND t.messageCount IS NOT NULL")
+    int incrementMessageStats(UUID ticketId, long userMessages, long systemMessages,
+                              LocalDateTime firstMessageAt, LocalDateTime lastMessageAt);
+    
+    /**
+     * Tickets fermés avant la date limite et non archivés depuis leur fermeture
+     * (tickets fermés avant l'introduction de closed_at : date de dernière mise à jour)
+     */
+    @Query("SELECT t.id FROM SupportTicket t WHERE t.status = :status " +
+           "AND COALESCE(t.closedAt, t.updatedAt) < :closedBefore " +
+           "AND (t.archivedAt IS NULL OR t.archivedAt < COALESCE(t.closedAt, t.updatedAt)) " +
+           "ORDER BY COALESCE(t.closedAt, t.updatedAt)")
+    List<UUID> findArchivableTicketIds(TicketStatus status, LocalDateTime closedBefore, Limit limit);
+    
+    @Modifying
+    @Query("UPDATE SupportTicket t SET t.archivedAt = :archivedAt WHERE t.id = :ticketId")
+    int markArchived(UUID ticketId, LocalDateTime archivedAt);
+    
+    /**
+     * Réserver count numéros de séquence (sans effet si la numérotation du ticket n'est pas initialisée)
+     * Le verrou de ligne pris jusqu'au commit ordonne les insertions concurrentes d'un même ticket.
+     */
+    @Modifying
+    @Query("UPDATE SupportTicket t SET t.lastSequence = t.lastSequence + :count " +
+           "WHERE t.id = :ticketId AND t.lastSequence IS NOT NULL")
+    int incrementSequence(UUID ticketId, long count);
+    
+    @Query("SELECT t.lastSequence FROM SupportTicket t WHERE t.id = :ticketId")
+    Long findLastSequence(UUID ticketId);
+    
+    /**
+     * Fixer le dernier numéro de séquence d'un ticket antérieur à la numérotation (sans effet s'il est déjà fixé)
+     */
+    @Modifying
+    @Query("UPDATE SupportTicket t SET t.lastSequence = :lastSequence WHERE t.id = :ticketId AND t.lastSequence IS NULL")
+    int initializeSequence(UUID ticketId, long lastSequence);
+    
+    @Modifying
+    @Query("UPDATE SupportTicket t SET t.lastSequence = :lastSequence WHERE t.id = :ticketId")
+    int updateLastSequence(UUID ticketId, long lastSequence);
+    
+    /**
+     * Nombre de tickets par agent assigné parmi les statuts donnés (réconciliation des charges du routage)
+     */
+    @Query("SELECT t.assignedAgent AS agent, COUNT(t) AS tickets FROM SupportTicket t " +
+           "WHERE t.status IN :statuses AND t.assignedAgent IS NOT NULL GROUP BY t.assignedAgent")
+    List<AgentTicketCount> countTicketsByAgent(Collection<TicketStatus> statuses);
+    
+    /**
+     * Verrouiller la ligne du ticket jusqu'au commit et lire son nombre de messages
+     * @return null si les statistiques ne sont pas initialisées (ou ticket inexistant)
+     */
+    @Query(value = "SELECT message_count FROM support_tickets WHERE id = :ticketId FOR UPDATE", nativeQuery = true)
+    Long lockMessageCount(UUID ticketId);
+    
+    /**
+     * Initialiser les statistiques de messages d'un ticket antérieur aux compteurs
+     */
+    @Modifying
+    @Query("UPDATE SupportTicket t SET t.messageCount = :userMessages + :systemMessages, " +
+           "t.userMessageCount = :userMessages, t.systemMessageCount = :systemMessages, " +
+           "t.firstMessageAt = :firstMessageAt, t.lastMessageAt = :lastMessageAt " +
+           "WHERE t.id = :ticketId AND t.messageCount IS NULL")
+    int initializeMessageStats(UUID ticketId, long userMessages, long systemMessages,
+                               LocalDateTime firstMessageAt, LocalDateTime lastMessageAt);
+    
+    interface AgentTicketCount {
+        String getAgent();
+        long getTickets();
+    }
 }
\ No newline at end of file
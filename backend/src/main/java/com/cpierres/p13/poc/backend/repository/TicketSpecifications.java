@@ -0,0 +1,47 @@
+package com.cpierres.p13.poc.backend.repository;
+
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Filtres combinables des listes de tickets ; un filtre null n'ajoute aucun prédicat
+ * (la requête générée ne contient que les conditions utiles, ce qui permet d'utiliser l'index adapté)
+ */
+public final class TicketSpecifications {
+
+    private TicketSpecifications() {
+    }
+
+    public static Specification<SupportTicket> matching(TicketStatus status, String assignedAgent,
+                                                        UUID userId, LocalDateTime updatedSince) {
+        return Specification.allOf(
+                hasStatus(status),
+                assignedTo(assignedAgent),
+                ownedBy(userId),
+                updatedSince(updatedSince));
+    }
+
+    public static boolean isUnfiltered(TicketStatus status, String assignedAgent, UUID userId, LocalDateTime updatedSince) {
+        return status == null && assignedAgent == null && userId == null && updatedSince == null;
+    }
+
+    private static Specification<SupportTicket> hasStatus(TicketStatus status) {
+        return status == null ? null : (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    private static Specification<SupportTicket> assignedTo(String assignedAgent) {
+        return assignedAgent == null ? null : (root, query, cb) -> cb.equal(root.get("assignedAgent"), assignedAgent);
+    }
+
+    private static Specification<SupportTicket> ownedBy(UUID userId) {
+        return userId == null ? null : (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    private static Specification<SupportTicket> updatedSince(LocalDateTime since) {
+        return since == null ? null : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("updatedAt"), since);
+    }
+}
@@ -0,0 +1,147 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.dto.AgentNotificationDigest;
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.dto.TicketActivity;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifications des agents, ciblées et regroupées
+ * Chaque message est compté pour l'agent assigné au ticket ; une fois par fenêtre, chaque agent
+ * concerné reçoit une seule trame récapitulative sur /user/queue/notifications.
+ * Le trafic dépend ainsi du nombre d'agents et non du volume de messages.
+ */
+@Service
+@Slf4j
+public class AgentNotificationService {
+
+    public static final String NOTIFICATIONS_QUEUE = "/queue/notifications";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDirectory userDirectory;
+    private final long windowMs;
+
+    /** agent -> (ticket -> activité en attente) ; le contenu interne n'est modifié que dans compute */
+    private final Map<UUID, Map<UUID, PendingActivity>> pending = new ConcurrentHashMap<>();
+    private final Counter digests;
+    private final Counter unassigned;
+    private ScheduledExecutorService flusher;
+
+    public AgentNotificationService(SimpMessagingTemplate messagingTemplate,
+                                    UserDirectory userDirectory,
+                                    @Value("${chat.notifications.window-ms:1000}") long windowMs,
+                                    MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.userDirectory = userDirectory;
+        this.windowMs = windowMs;
+        this.digests = Counter.builder("chat.notifications.digests").register(meterRegistry);
+        this.unassigned = Counter.builder("chat.notifications.unassigned").register(meterRegistry);
+        meterRegistry.gaugeMapSize("chat.notifications.pending.agents", Tags.empty(), pending);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "agent-notification-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Compter un nouveau message pour l'agent assigné au ticket (aucune diffusion immédiate)
+     */
+    public void recordMessage(SupportTicket ticket, ChatMessage message) {
+        if (ticket.getAssignedAgent() == null) {
+            unassigned.increment();
+            return;
+        }
+        MockUserInfo agent = userDirectory.findByFullName(ticket.getAssignedAgent()).orElse(null);
+        if (agent == null) {
+            log.debug("Agent assigné inconnu de l'annuaire : {}", ticket.getAssignedAgent());
+            unassigned.increment();
+            return;
+        }
+        if (agent.getId().equals(message.getSenderId())) {
+            return; // Inutile de notifier l'agent de ses propres messages
+        }
+        pending.compute(agent.getId(), (id, tickets) -> {
+            Map<UUID, PendingActivity> result = tickets != null ? tickets : new HashMap<>();
+            result.computeIfAbsent(ticket.getId(), t -> new PendingActivity(ticket.getSubject()))
+                    .add(message.getTimestamp());
+            return result;
+        });
+    }
+
+    /**
+     * Envoyer à chaque agent concerné le récapitulatif de la fenêtre écoulée
+     */
+    void flush() {
+        for (UUID agentId : pending.keySet()) {
+            Map<UUID, PendingActivity> tickets = pending.remove(agentId);
+            if (tickets == null || tickets.isEmpty()) {
+                continue;
+            }
+            List<TicketActivity> activities = new ArrayList<>(tickets.size());
+            long total = 0;
+            for (Map.Entry<UUID, PendingActivity> entry : tickets.entrySet()) {
+                PendingActivity activity = entry.getValue();
+                activities.add(new TicketActivity(entry.getKey(), activity.subject, activity.count, activity.lastMessageAt));
+                total += activity.count;
+            }
+            try {
+                messagingTemplate.convertAndSendToUser(agentId.toString(), NOTIFICATIONS_QUEUE,
+                        new AgentNotificationDigest(LocalDateTime.now(), total, activities));
+                digests.increment();
+            } catch (Exception e) {
+                log.warn("Erreur lors de l'envoi des notifications à l'agent {} : {}", agentId, e.getMessage());
+            }
+        }
+    }
+
+    private static final class PendingActivity {
+        private final String subject;
+        private long count;
+        private LocalDateTime lastMessageAt;
+
+        PendingActivity(String subject) {
+            this.subject = subject;
+        }
+
+        void add(LocalDateTime timestamp) {
+            count++;
+            if (timestamp != null && (lastMessageAt == null || timestamp.isAfter(lastMessageAt))) {
+                lastMessageAt = timestamp;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.config.CompactPayloadNegotiator;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Déclinaison CBOR des trames de /topic/messages/{ticketId}, vers /topic/messages.cbor/{ticketId}
+ * Intercepteur du canal broker : après la livraison JSON locale (trame produite ici ou relayée depuis un autre nœud),
+ * la trame est transcodée une seule fois, et seulement si la déclinaison binaire du ticket a des abonnés sur ce nœud.
+ * Les déclinaisons ne sont pas relayées entre nœuds : chaque nœud les produit pour ses propres abonnés.
+ */
+@Component
+@Slf4j
+public class CborMessageFanOut implements ChannelInterceptor {
+
+    private static final TypeReference<List<ChatMessage>> MESSAGE_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final MessageChannel brokerChannel;
+    private final ObjectProvider<AbstractBrokerMessageHandler> broker;
+    private final Counter frames;
+    private final Counter bytes;
+
+    public CborMessageFanOut(ObjectMapper objectMapper,
+                             @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                             @Qualifier("simpleBrokerMessageHandler") ObjectProvider<AbstractBrokerMessageHandler> broker,
+                             MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = CompactPayloadNegotiator.cborMapper(objectMapper);
+        this.brokerChannel = brokerChannel;
+        this.broker = broker;
+        this.frames = Counter.builder("chat.broadcast.binary.frames")
+                .description("Trames de messages diffusées en CBOR")
+                .register(meterRegistry);
+        this.bytes = Counter.builder("chat.broadcast.binary.bytes")
+                .description("Octets CBOR diffusés au broker (avant distribution aux abonnés)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (!sent || accessor.getMessageType() != SimpMessageType.MESSAGE || destination == null
+                || !destination.startsWith(CompactPayloadNegotiator.MESSAGES_TOPIC_PREFIX)
+                || !(message.getPayload() instanceof byte[] json) || json.length == 0
+                || accessor.getContentType() == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return;
+        }
+        String binaryDestination = CompactPayloadNegotiator.CBOR_MESSAGES_TOPIC_PREFIX
+                + destination.substring(CompactPayloadNegotiator.MESSAGES_TOPIC_PREFIX.length());
+        if (!hasSubscribers(binaryDestination)) {
+            return;
+        }
+        try {
+            // Un message isolé est un objet JSON, une trame regroupée un tableau
+            Object messages = json[0] == '['
+                    ? objectMapper.readValue(json, MESSAGE_LIST)
+                    : objectMapper.readValue(json, ChatMessage.class);
+            byte[] payload = cborMapper.writeValueAsBytes(messages);
+            brokerChannel.send(toFrame(binaryDestination, payload));
+            frames.increment();
+            bytes.increment(payload.length);
+        } catch (IOException e) {
+            log.error("Erreur de transcodage CBOR vers {} : {}", binaryDestination, e.getMessage());
+        }
+    }
+
+    private boolean hasSubscribers(String destination) {
+        if (!(broker.getIfAvailable() instanceof SimpleBrokerMessageHandler handler)) {
+            return true;
+        }
+        return !handler.getSubscriptionRegistry().findSubscriptions(toFrame(destination, new byte[0])).isEmpty();
+    }
+
+    private static Message<byte[]> toFrame(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(CompactPayloadNegotiator.CBOR_FRAME);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
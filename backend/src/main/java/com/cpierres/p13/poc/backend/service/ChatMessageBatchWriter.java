@@ -0,0 +1,275 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Écriture différée (write-behind) des messages de chat avec commit groupé
+ * Les messages de tous les tickets sont mis en file puis insérés par lots JDBC dans une seule transaction.
+ * Un unique thread de vidage consomme la file FIFO : l'ordre d'insertion au sein d'un ticket est préservé.
+ */
+@Component
+@Slf4j
+public class ChatMessageBatchWriter {
+
+    private final ChatMessageRepository messageRepository;
+    private final SupportTicketService ticketService;
+    private final MessageSequencer messageSequencer;
+    private final SendDeduplicator sendDeduplicator;
+    private final RecentMessageCache recentMessageCache;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+
+    @Value("${chat.persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.persistence.write-behind.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${chat.persistence.write-behind.flush-window-ms:5}")
+    private long flushWindowMs;
+
+    @Value("${chat.persistence.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.persistence.write-behind.ack-timeout-ms:5000}")
+    private long ackTimeoutMs;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    public ChatMessageBatchWriter(ChatMessageRepository messageRepository,
+                                  SupportTicketService ticketService,
+                                  MessageSequencer messageSequencer,
+                                  SendDeduplicator sendDeduplicator,
+                                  RecentMessageCache recentMessageCache,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.ticketService = ticketService;
+        this.messageSequencer = messageSequencer;
+        this.sendDeduplicator = sendDeduplicator;
+        this.recentMessageCache = recentMessageCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizeSummary = DistributionSummary.builder("chat.messages.batch.size")
+                .description("Nombre de messages insérés par commit groupé")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.messages.batch.flush")
+                .description("Durée d'insertion et de commit d'un lot de messages")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.messages.batch.queue", this, writer -> writer.queue == null ? 0 : writer.queue.size());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "chat-message-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Écriture différée des messages activée (lot max: {}, fenêtre: {} ms)", maxBatchSize, flushWindowMs);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        // Vider ce qui reste dans la file avant l'arrêt
+        flushRemaining();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mettre un message en file ; le futur est complété après le commit du lot qui le contient,
+     * ou en erreur (TimeoutException) si le message est encore en file au-delà de ack-timeout-ms : il n'est alors
+     * jamais inséré. Un message déjà pris dans un lot n'expire plus : le futur porte l'issue réelle de l'écriture.
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message) {
+        if (!running) {
+            throw new IllegalStateException("L'écriture différée des messages n'est pas active");
+        }
+        PendingMessage pending = new PendingMessage(message);
+        if (!queue.offer(pending)) {
+            throw new IllegalStateException("File d'écriture des messages saturée");
+        }
+        CompletableFuture.delayedExecutor(ackTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (pending.expire()) {
+                pending.ack().completeExceptionally(
+                        new TimeoutException("Message en file depuis plus de " + ackTimeoutMs + " ms"));
+            }
+        });
+        return pending.ack();
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushWindowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushRemaining() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingMessage> queued) {
+        // Attente expirée avant le lot : l'expéditeur a reçu une erreur et peut renvoyer le message ;
+        // les messages pris ici n'expirent plus, leur expéditeur attend l'issue de l'écriture
+        List<PendingMessage> batch = queued.stream().filter(PendingMessage::claim).toList();
+        if (batch.size() < queued.size()) {
+            log.warn("{} messages abandonnés : délai d'acquittement dépassé avant l'écriture", queued.size() - batch.size());
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        List<ChatMessage> messages = batch.stream().map(PendingMessage::message).toList();
+        long start = System.nanoTime();
+        try {
+            List<ChatMessage> saved = transactionTemplate.execute(status -> {
+                // Numéros réservés par ticket, dans l'ordre de la file
+                messages.stream().collect(Collectors.groupingBy(ChatMessage::getTicketId, LinkedHashMap::new, Collectors.toList()))
+                        .forEach(messageSequencer::assign);
+                List<ChatMessage> inserted = messageRepository.saveAll(messages);
+                sendDeduplicator.record(inserted);
+                recordMessageStats(inserted);
+                return inserted;
+            });
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizeSummary.record(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).ack().complete(saved.get(i));
+            }
+            log.debug("Lot de {} messages inséré en {} µs", batch.size(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() == 1) {
+                log.warn("Message refusé par une contrainte d'intégrité : {}", e.getMessage());
+                batch.get(0).ack().completeExceptionally(e);
+                return;
+            }
+            // Renvoi concurrent d'une clé client déjà enregistrée : seul le doublon doit échouer, pas tout le lot
+            log.warn("Lot de {} messages refusé par une contrainte d'intégrité, insertion message par message", batch.size());
+            for (PendingMessage pending : batch) {
+                // Identifiant et numéro attribués par la transaction annulée
+                pending.message().setId(null);
+                pending.message().setSequence(null);
+                write(List.of(pending));
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de l'insertion d'un lot de {} messages : {}", batch.size(), e.getMessage());
+            // Issue du commit inconnue : des messages validés pourraient manquer aux tampons de leurs tickets
+            messages.stream().map(ChatMessage::getTicketId).distinct().forEach(recentMessageCache::invalidate);
+            batch.forEach(pending -> pending.ack().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Une seule mise à jour des compteurs par ticket présent dans le lot
+     */
+    private void recordMessageStats(List<ChatMessage> inserted) {
+        Map<UUID, List<ChatMessage>> byTicket = inserted.stream()
+                .collect(Collectors.groupingBy(ChatMessage::getTicketId));
+        byTicket.forEach((ticketId, ticketMessages) -> {
+            long systemMessages = ticketMessages.stream().filter(m -> m.getSenderId() == null).count();
+            ticketService.recordMessages(ticketId, ticketMessages.size() - systemMessages, systemMessages,
+                    ticketMessages.get(0).getTimestamp(), ticketMessages.get(ticketMessages.size() - 1).getTimestamp());
+        });
+    }
+
+    private enum State {
+        PENDING,
+        CLAIMED,
+        EXPIRED
+    }
+
+    /**
+     * Message en file ; son état passe une seule fois de PENDING à CLAIMED (pris dans un lot) ou EXPIRED (délai dépassé)
+     */
+    private static final class PendingMessage {
+        private final ChatMessage message;
+        private final CompletableFuture<ChatMessage> ack = new CompletableFuture<>();
+        private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+
+        PendingMessage(ChatMessage message) {
+            this.message = message;
+        }
+
+        ChatMessage message() {
+            return message;
+        }
+
+        CompletableFuture<ChatMessage> ack() {
+            return ack;
+        }
+
+        boolean claim() {
+            return state.compareAndSet(State.PENDING, State.CLAIMED);
+        }
+
+        boolean expire() {
+            return state.compareAndSet(State.PENDING, State.EXPIRED);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline unique de diffusion des messages de chat vers /topic/messages/{ticketId}
+ * Le contenu est sérialisé une seule fois en octets, puis la même trame est remise à tous les abonnés.
+ * Les messages d'un même ticket arrivant dans la fenêtre de regroupement partent dans une seule trame
+ * (tableau JSON) ; un message isolé reste un objet JSON.
+ */
+@Component
+@Slf4j
+public class ChatMessageBroadcaster {
+
+    public static final String MESSAGES_TOPIC_PREFIX = "/topic/messages/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final long coalesceMs;
+    private final int maxMessagesPerFrame;
+
+    /** ticket -> messages en attente, dans l'ordre d'arrivée ; la liste n'est modifiée que dans compute */
+    private final Map<UUID, List<ChatMessage>> pending = new ConcurrentHashMap<>();
+    private final Counter frames;
+    private final Counter bytes;
+    private final Counter messages;
+    private final DistributionSummary messagesPerFrame;
+    private ScheduledExecutorService flusher;
+
+    public ChatMessageBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                  ObjectMapper objectMapper,
+                                  @Value("${chat.broadcast.coalesce-ms:5}") long coalesceMs,
+                                  @Value("${chat.broadcast.max-messages-per-frame:50}") int maxMessagesPerFrame,
+                                  MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.coalesceMs = coalesceMs;
+        this.maxMessagesPerFrame = maxMessagesPerFrame;
+        this.frames = Counter.builder("chat.broadcast.frames")
+                .description("Trames de messages diffusées au broker")
+                .register(meterRegistry);
+        this.bytes = Counter.builder("chat.broadcast.bytes")
+                .description("Octets sérialisés diffusés au broker (avant distribution aux abonnés)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.messages = Counter.builder("chat.broadcast.messages")
+                .description("Messages de chat diffusés")
+                .register(meterRegistry);
+        this.messagesPerFrame = DistributionSummary.builder("chat.broadcast.frame.messages")
+                .description("Nombre de messages regroupés par trame")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (coalesceMs <= 0) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-broadcast-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            pending.keySet().forEach(this::flush);
+        }
+    }
+
+    /**
+     * Diffuser un message aux abonnés de son ticket (immédiatement, ou regroupé dans la fenêtre)
+     */
+    public void broadcast(ChatMessage message) {
+        if (flusher == null) {
+            send(message.getTicketId(), List.of(message));
+            return;
+        }
+        UUID ticketId = message.getTicketId();
+        boolean[] firstOfWindow = new boolean[1];
+        pending.compute(ticketId, (id, queued) -> {
+            List<ChatMessage> result = queued;
+            if (result == null) {
+                result = new ArrayList<>();
+                firstOfWindow[0] = true;
+            }
+            result.add(message);
+            return result;
+        });
+        if (firstOfWindow[0]) {
+            flusher.schedule(() -> flush(ticketId), coalesceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(UUID ticketId) {
+        List<ChatMessage> queued = pending.remove(ticketId);
+        if (queued == null) {
+            return;
+        }
+        for (int from = 0; from < queued.size(); from += maxMessagesPerFrame) {
+            send(ticketId, queued.subList(from, Math.min(queued.size(), from + maxMessagesPerFrame)));
+        }
+    }
+
+    private void send(UUID ticketId, List<ChatMessage> batch) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(batch.size() == 1 ? batch.get(0) : batch);
+            messagingTemplate.send(MESSAGES_TOPIC_PREFIX + ticketId, toFrame(payload));
+            frames.increment();
+            bytes.increment(payload.length);
+            messages.increment(batch.size());
+            messagesPerFrame.record(batch.size());
+        } catch (JsonProcessingException e) {
+            log.error("Erreur de sérialisation des messages du ticket {} : {}", ticketId, e.getMessage());
+        } catch (Exception e) {
+            log.error("Erreur lors de la diffusion des messages du ticket {} : {}", ticketId, e.getMessage());
+        }
+    }
+
+    private static Message<byte[]> toFrame(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
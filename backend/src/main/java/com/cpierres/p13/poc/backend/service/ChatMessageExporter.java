@@ -0,0 +1,119 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.service.storage.ChatMessageArchive;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Export des conversations au format NDJSON (un message JSON par ligne), écrit au fil de la lecture
+ * Les messages sont lus par curseur avant uniquement, écrits puis détachés du contexte de persistance :
+ * la mémoire consommée ne dépend pas du nombre de messages exportés.
+ */
+@Service
+@Slf4j
+public class ChatMessageExporter {
+
+    /** Vidage du flux HTTP toutes les FLUSH_EVERY lignes, pour que le client reçoive les données au fil de l'eau */
+    private static final int FLUSH_EVERY = 500;
+
+    private final ChatMessageRepository messageRepository;
+    private final ChatMessageArchive messageArchive;
+    private final SupportTicketService ticketService;
+    private final SupportUserService supportUserService;
+    private final EntityManager entityManager;
+    private final ObjectWriter messageWriter;
+    private final ObjectMapper objectMapper;
+
+    public ChatMessageExporter(ChatMessageRepository messageRepository,
+                               ChatMessageArchive messageArchive,
+                               SupportTicketService ticketService,
+                               SupportUserService supportUserService,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper) {
+        this.messageRepository = messageRepository;
+        this.messageArchive = messageArchive;
+        this.ticketService = ticketService;
+        this.supportUserService = supportUserService;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        // Pas de vidage après chaque valeur : le flux est vidé par lots
+        this.messageWriter = objectMapper.writerFor(ChatMessage.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Vérifier qu'un ticket existe avant d'engager la réponse (lève IllegalArgumentException sinon)
+     */
+    public void checkTicket(UUID ticketId) {
+        ticketService.getTicketById(ticketId);
+    }
+
+    /**
+     * Vérifier qu'un expéditeur existe avant d'engager la réponse (lève IllegalArgumentException sinon)
+     */
+    public void checkSender(UUID senderId) {
+        supportUserService.getChatUserInfo(senderId);
+    }
+
+    /**
+     * Écrire tous les messages d'un ticket, du plus ancien au plus récent (messages archivés en tête)
+     */
+    @Transactional(readOnly = true)
+    public long exportTicket(UUID ticketId, OutputStream out) throws IOException {
+        boolean archived = ticketService.getTicketById(ticketId).getArchivedAt() != null;
+        try (Stream<ChatMessage> messages = archived
+                ? Stream.concat(messageArchive.stream(ticketId), messageRepository.streamByTicketId(ticketId))
+                : messageRepository.streamByTicketId(ticketId)) {
+            long count = write(messages, out);
+            log.info("Export NDJSON du ticket {} : {} messages", ticketId, count);
+            return count;
+        }
+    }
+
+    /**
+     * Écrire tous les messages d'un expéditeur, du plus ancien au plus récent
+     */
+    @Transactional(readOnly = true)
+    public long exportSender(UUID senderId, OutputStream out) throws IOException {
+        try (Stream<ChatMessage> messages = messageRepository.streamBySenderId(senderId)) {
+            long count = write(messages, out);
+            log.info("Export NDJSON de l'expéditeur {} : {} messages", senderId, count);
+            return count;
+        }
+    }
+
+    private long write(Stream<ChatMessage> messages, OutputStream out) throws IOException {
+        long count = 0;
+        // Le générateur ne ferme pas le flux de la réponse : le conteneur s'en charge
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            // Séparateur de lignes écrit explicitement après chaque message (pas d'espace entre valeurs racines)
+            generator.setRootValueSeparator(null);
+            Iterator<ChatMessage> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                ChatMessage message = iterator.next();
+                messageWriter.writeValue(generator, message);
+                generator.writeRaw('\n');
+                // L'entité n'est plus référencée : le contexte de persistance ne grossit pas
+                entityManager.detach(message);
+                if (++count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+}
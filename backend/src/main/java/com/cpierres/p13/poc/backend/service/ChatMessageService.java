@@ -1,5 +1,8 @@
 package com.cpierres.p13.poc.backend.service;
 
+import com.cpierres.p13.poc.backend.dto.MessageListPage;
+import com.cpierres.p13.poc.backend.dto.MessagePage;
+import com.cpierres.p13.poc.backend.dto.MessageResumePage;
 import com.cpierres.p13.poc.backend.dto.MockUserInfo;
 import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
 import com.cpierres.p13.poc.backend.dto.SystemMessageRequest;
@@ -7,21 +10,47 @@ import com.cpierres.p13.poc.backend.entity.ChatMessage;
 import com.cpierres.p13.poc.backend.entity.SupportTicket;
 import com.cpierres.p13.poc.backend.entity.TicketStatus;
 import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.repository.MessageSpecifications;
+import com.cpierres.p13.poc.backend.service.routing.AgentRoutingService;
+import com.cpierres.p13.poc.backend.service.search.ChatSearchIndex;
+import com.cpierres.p13.poc.backend.service.storage.ChatMessageArchive;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static com.cpierres.p13.poc.backend.service.ChatPipelineMetrics.SEND_MESSAGE;
+import static com.cpierres.p13.poc.backend.service.ChatPipelineMetrics.SEND_SYSTEM_MESSAGE;
 
 @Service
 @Transactional
 @Slf4j
 public class ChatMessageService {
     
+    /** Taille maximale d'une page d'historique */
+    public static final int MAX_PAGE_SIZE = 200;
+    
     @Autowired
     private ChatMessageRepository messageRepository;
     
@@ -36,6 +65,48 @@ public class ChatMessageService {
     
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
+    
+    @Autowired
+    private ChatMessageBatchWriter batchWriter;
+    
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    
+    @Autowired
+    private TypingIndicatorService typingIndicatorService;
+    
+    @Autowired
+    private AgentNotificationService agentNotificationService;
+    
+    @Autowired
+    private ChatMessageBroadcaster messageBroadcaster;
+    
+    @Autowired
+    private ChatPipelineMetrics pipelineMetrics;
+    
+    @Autowired
+    private ListingSupport listingSupport;
+    
+    @Autowired
+    private ChatSearchIndex searchIndex;
+    
+    @Autowired
+    private ChatMessageArchive messageArchive;
+    
+    @Autowired
+    private MessageSequencer messageSequencer;
+    
+    @Autowired
+    private SendDeduplicator sendDeduplicator;
+    
+    @Autowired
+    private AgentRoutingService agentRoutingService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    private static final Set<String> MESSAGE_SORT_FIELDS = Set.of("timestamp");
+    private static final Sort DEFAULT_MESSAGE_SORT = Sort.by(Sort.Direction.DESC, "timestamp");
 
     public ChatMessageService(SupportUserService supportUserService) {
         this.supportUserService = supportUserService;
@@ -43,20 +114,67 @@ public class ChatMessageService {
 
     /**
      * Envoyer un message de chat avec validation et notification temps réel
+     * Sans transaction englobante : l'insertion a sa propre transaction courte (ou attend le lot de l'écriture
+     * différée sans retenir de connexion), le passage en IN_PROGRESS la sienne.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatMessage sendMessage(SendMessageRequest request) {
         log.info("Envoi d'un message pour le ticket {} par l'utilisateur {}", request.getTicketId(), request.getSenderId());
-        
-        // Validation DTO
-        if (!request.isValid()) {
-            throw new IllegalArgumentException("Données de message invalides");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            // Validation DTO et métier
+            pipelineMetrics.run(SEND_MESSAGE, "validation", () -> {
+                if (!request.isValid()) {
+                    throw new IllegalArgumentException("Données de message invalides");
+                }
+                validateMessage(request.getTicketId(), request.getSenderId(), request.getContent());
+            });
+            
+            // Renvoi d'une clé déjà reçue : le message enregistré est retourné, sans nouvelle insertion ni diffusion
+            String clientMessageId = request.getClientMessageId();
+            if (clientMessageId != null) {
+                CompletableFuture<ChatMessage> previous = pipelineMetrics.time(SEND_MESSAGE, "deduplication",
+                        () -> sendDeduplicator.reserve(request.getSenderId(), clientMessageId));
+                if (previous != null) {
+                    ChatMessage existingMessage = sendDeduplicator.await(previous);
+                    success = true;
+                    return existingMessage;
+                }
+            }
+            try {
+                ChatMessage savedMessage = createMessage(request);
+                if (clientMessageId != null) {
+                    sendDeduplicator.confirm(request.getSenderId(), clientMessageId, savedMessage);
+                }
+                success = true;
+                return savedMessage;
+            } catch (RuntimeException e) {
+                if (clientMessageId != null) {
+                    sendDeduplicator.release(request.getSenderId(), clientMessageId, e);
+                }
+                throw e;
+            }
+        } finally {
+            pipelineMetrics.recordTotal(SEND_MESSAGE, start, success);
         }
-        
-        // Validation métier
-        validateMessage(request.getTicketId(), request.getSenderId(), request.getContent());
-        
+    }
+    
+    /**
+     * Retrouver le message enregistré sous une clé d'idempotence (renvoi refusé par la contrainte d'unicité)
+     */
+    @Transactional(readOnly = true)
+    public Optional<ChatMessage> findSentMessage(UUID senderId, String clientMessageId) {
+        return sendDeduplicator.findSent(senderId, clientMessageId);
+    }
+    
+    /**
+     * Enregistrer et diffuser un nouveau message (requête validée)
+     */
+    private ChatMessage createMessage(SendMessageRequest request) {
         // Validation ticket exists et est accessible
-        SupportTicket ticket = ticketService.getTicketById(request.getTicketId());
+        SupportTicket ticket = pipelineMetrics.time(SEND_MESSAGE, "ticket_lookup",
+                () -> ticketService.getTicketById(request.getTicketId()));
         
         if (ticket.getStatus() == TicketStatus.CLOSED) {
             throw new IllegalStateException("Impossible d'envoyer un message dans un ticket fermé");
@@ -64,7 +182,8 @@ public class ChatMessageService {
         
         // Validation utilisateur existe
         //User sender = userService.getUserById(request.getSenderId());
-        MockUserInfo sender = supportUserService.getChatUserInfo(request.getSenderId());
+        MockUserInfo sender = pipelineMetrics.time(SEND_MESSAGE, "user_lookup",
+                () -> supportUserService.getChatUserInfo(request.getSenderId()));
         log.debug("Message envoyé par : {} ({})", sender.getEmail(), sender.getRole());
         
         // Création du message
@@ -72,40 +191,189 @@ public class ChatMessageService {
         message.setTicketId(request.getTicketId());
         message.setSenderId(request.getSenderId());
         message.setContent(request.getContent());
+        message.setClientMessageId(request.getClientMessageId());
         
-        ChatMessage savedMessage = messageRepository.save(message);
+        ChatMessage savedMessage = pipelineMetrics.time(SEND_MESSAGE, "save", () -> persistMessage(SEND_MESSAGE, message));
         
         // Mise à jour statut ticket si nécessaire
-        updateTicketStatusIfNeeded(ticket, savedMessage);
+        pipelineMetrics.run(SEND_MESSAGE, "status_update", () -> updateTicketStatusIfNeeded(ticket, savedMessage));
+        
+        // Le message envoyé met fin à l'indicateur de saisie de son auteur
+        pipelineMetrics.run(SEND_MESSAGE, "typing",
+                () -> typingIndicatorService.onStoppedTyping(request.getTicketId(), request.getSenderId()));
         
         // Notification temps réel
-        sendRealTimeNotification(savedMessage);
+        sendRealTimeNotification(SEND_MESSAGE, ticket, savedMessage);
         
         log.info("Message envoyé avec succès dans le ticket {} (ID message: {})", request.getTicketId(), savedMessage.getId());
-        
         return savedMessage;
     }
     
     /**
      * Récupérer l'historique des messages d'un ticket
+     * Ticket archivé : les segments d'archive sont décompressés à la demande et précèdent les messages en base
      */
     @Transactional(readOnly = true)
     public List<ChatMessage> getTicketHistory(UUID ticketId) {
         log.debug("Récupération de l'historique du ticket : {}", ticketId);
         
         // Validation accès ticket
-        ticketService.getTicketById(ticketId); // Lève exception si pas d'accès
+        SupportTicket ticket = ticketService.getTicketById(ticketId); // Lève exception si pas d'accès
+        
+        return recentMessageCache.findAll(ticketId).orElseGet(() -> {
+            List<ChatMessage> history = new ArrayList<>();
+            if (ticket.getArchivedAt() != null) {
+                history.addAll(messageArchive.findAll(ticketId));
+            }
+            // Borne inférieure connue : seules les partitions postérieures au premier message sont parcourues
+            history.addAll(ticket.getFirstMessageAt() != null
+                    ? messageRepository.findByTicketIdAndTimestampAfter(ticketId, ticket.getFirstMessageAt())
+                    : messageRepository.findByTicketIdOrderByTimestampAsc(ticketId));
+            recentMessageCache.seed(ticketId, history);
+            return history;
+        });
+    }
+    
+    /**
+     * Récupérer une page de l'historique d'un ticket par curseur (keyset)
+     * Sans curseur : les derniers messages du ticket ; before : messages plus anciens ; after : messages plus récents
+     * Les messages archivés, plus anciens que ceux en base, complètent la page au besoin.
+     */
+    @Transactional(readOnly = true)
+    public MessagePage getTicketHistoryPage(UUID ticketId, UUID before, UUID after, int limit) {
+        log.debug("Récupération page historique du ticket {} (before: {}, after: {}, limit: {})", ticketId, before, after, limit);
+        
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Les curseurs before et after sont exclusifs");
+        }
+        
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        
+        // Validation accès ticket
+        SupportTicket ticket = ticketService.getTicketById(ticketId);
+        
+        // Une ligne supplémentaire permet de savoir s'il reste des messages sans COUNT
+        Limit fetchLimit = Limit.of(limit + 1);
+        List<ChatMessage> rows;
+        boolean descending;
+        
+        if (after != null) {
+            Cursor cursor = getCursor(ticket, after);
+            if (cursor.archived()) {
+                rows = new ArrayList<>(messageArchive.findAfter(ticketId, cursor.message(), limit + 1));
+                // Fin de l'archive atteinte : la page se poursuit avec les messages en base
+                if (rows.size() <= limit) {
+                    ChatMessage last = rows.isEmpty() ? cursor.message() : rows.get(rows.size() - 1);
+                    rows.addAll(messageRepository.findPageAfter(ticketId, last.getTimestamp(), last.getId(),
+                            Limit.of(limit + 1 - rows.size())));
+                }
+            } else {
+                rows = messageRepository.findPageAfter(ticketId, cursor.message().getTimestamp(), cursor.message().getId(), fetchLimit);
+            }
+            descending = false;
+        } else {
+            ChatMessage lowerBound = null;
+            if (before != null) {
+                Cursor cursor = getCursor(ticket, before);
+                lowerBound = cursor.message();
+                rows = cursor.archived()
+                        ? new ArrayList<>()
+                        : new ArrayList<>(messageRepository.findPageBefore(ticketId, lowerBound.getTimestamp(), lowerBound.getId(), fetchLimit));
+            } else {
+                // Première page : servie par le cache des messages récents si possible (ordre chronologique)
+                rows = recentMessageCache.findLatest(ticketId, limit + 1)
+                        .map(cached -> {
+                            List<ChatMessage> newestFirst = new ArrayList<>(cached);
+                            Collections.reverse(newestFirst);
+                            return newestFirst;
+                        })
+                        .orElseGet(() -> new ArrayList<>(messageRepository.findByTicketIdOrderByTimestampDescIdDesc(ticketId, fetchLimit)));
+            }
+            // Début des messages en base atteint : la page se poursuit dans l'archive
+            if (ticket.getArchivedAt() != null && rows.size() <= limit) {
+                ChatMessage oldest = rows.isEmpty() ? lowerBound : rows.get(rows.size() - 1);
+                rows.addAll(messageArchive.findBefore(ticketId, oldest, limit + 1 - rows.size()));
+            }
+            descending = true;
+        }
+        
+        boolean hasMore = rows.size() > limit;
+        List<ChatMessage> messages = new ArrayList<>(hasMore ? rows.subList(0, limit) : rows);
+        if (descending) {
+            Collections.reverse(messages);
+        }
+        
+        // En lecture vers le passé, une page incomplète atteint le début de la conversation
+        boolean startReached = descending && !hasMore;
+        UUID previousCursor = startReached ? null : messages.isEmpty() ? after : messages.get(0).getId();
+        UUID nextCursor = messages.isEmpty() ? null : messages.get(messages.size() - 1).getId();
+        
+        return new MessagePage(messages, previousCursor, nextCursor, hasMore);
+    }
+    
+    /**
+     * Reprendre l'historique d'un ticket après un numéro de séquence (exclu), du plus ancien au plus récent
+     * Servi par le cache des messages récents si possible, sinon par l'index (ticket_id, sequence_number),
+     * puis par l'archive si la reprise remonte avant les messages en base.
+     */
+    public MessageResumePage resumeTicketHistory(UUID ticketId, long afterSequence, int limit) {
+        log.debug("Reprise de l'historique du ticket {} après la séquence {} (limit: {})", ticketId, afterSequence, limit);
+        
+        if (afterSequence < 0) {
+            throw new IllegalArgumentException("Le numéro de séquence doit être positif ou nul");
+        }
+        
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        
+        // Validation accès ticket
+        SupportTicket ticket = ticketService.getTicketById(ticketId);
+        if (ticket.getLastSequence() == null) {
+            messageSequencer.ensureSequences(ticketId);
+        }
+        
+        List<ChatMessage> rows = recentMessageCache.findAfterSequence(ticketId, afterSequence)
+                .orElseGet(() -> {
+                    List<ChatMessage> live = messageRepository.findBySequenceAfter(ticketId, afterSequence, Limit.of(limit + 1));
+                    // Premier numéro suivant absent de la base : il se trouve dans l'archive
+                    if (ticket.getArchivedAt() == null || (!live.isEmpty() && live.get(0).getSequence() == afterSequence + 1)) {
+                        return live;
+                    }
+                    List<ChatMessage> merged = new ArrayList<>(messageArchive.findAfterSequence(ticketId, afterSequence, limit + 1));
+                    merged.addAll(live);
+                    return merged;
+                });
         
-        return messageRepository.findByTicketIdOrderByTimestampAsc(ticketId);
+        boolean hasMore = rows.size() > limit;
+        List<ChatMessage> messages = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        long lastSequence = messages.isEmpty() ? afterSequence : messages.get(messages.size() - 1).getSequence();
+        return new MessageResumePage(ticketId, messages, lastSequence, hasMore);
     }
     
     /**
-     * Récupérer tous les messages
+     * Rechercher les messages par page, filtres combinables (null : pas de filtre)
+     * Le total est estimé sans COUNT(*) complet (voir ListingSupport)
      */
     @Transactional(readOnly = true)
-    public List<ChatMessage> getAllMessages() {
-        log.debug("Récupération de tous les messages");
-        return messageRepository.findAll();
+    public MessageListPage searchMessages(UUID ticketId, UUID senderId, LocalDateTime since,
+                                          Integer page, Integer size, String sort) {
+        log.debug("Recherche messages (ticket: {}, expéditeur: {}, depuis: {}, page: {}, taille: {}, tri: {})",
+                ticketId, senderId, since, page, size, sort);
+        
+        Pageable pageable = listingSupport.pageRequest(page, size, sort, MESSAGE_SORT_FIELDS, DEFAULT_MESSAGE_SORT);
+        Specification<ChatMessage> specification = MessageSpecifications.matching(ticketId, senderId, since);
+        
+        // Slice : une ligne de plus que la page, sans requête de comptage
+        Slice<ChatMessage> slice = messageRepository.findBy(specification, query -> query.slice(pageable));
+        ListingSupport.TotalEstimate total = listingSupport.estimateTotal(ChatMessage.class, specification,
+                MessageSpecifications.isUnfiltered(ticketId, senderId, since), "chat_messages",
+                pageable, slice.getNumberOfElements(), slice.hasNext());
+        
+        return new MessageListPage(slice.getContent(), pageable.getPageNumber(), pageable.getPageSize(),
+                slice.hasNext(), total.total(), total.exact());
     }
     
     /**
@@ -145,7 +413,8 @@ public class ChatMessageService {
         // Validation accès ticket
         ticketService.getTicketById(ticketId);
         
-        return messageRepository.findByTicketIdAndTimestampAfter(ticketId, since);
+        return recentMessageCache.findSince(ticketId, since)
+                .orElseGet(() -> messageRepository.findByTicketIdAndTimestampAfter(ticketId, since));
     }
     
     /**
@@ -156,39 +425,49 @@ public class ChatMessageService {
         log.debug("Comptage messages pour le ticket : {}", ticketId);
         
         // Validation accès ticket
-        ticketService.getTicketById(ticketId);
+        SupportTicket ticket = ticketService.getTicketById(ticketId);
         
-        return messageRepository.countByTicketId(ticketId);
+        long archived = ticket.getArchivedAt() != null ? messageArchive.countMessages(ticketId) : 0;
+        return messageRepository.countByTicketId(ticketId) + archived;
     }
     
     /**
-     * Envoyer un message système automatique
+     * Envoyer un message système automatique (sans transaction englobante, comme sendMessage)
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatMessage sendSystemMessage(SystemMessageRequest request) {
         log.info("Envoi d'un message système pour le ticket : {}", request.getTicketId());
-        
-        // Validation DTO
-        if (!request.isValid()) {
-            throw new IllegalArgumentException("Données de message système invalides");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            // Validation DTO
+            pipelineMetrics.run(SEND_SYSTEM_MESSAGE, "validation", () -> {
+                if (!request.isValid()) {
+                    throw new IllegalArgumentException("Données de message système invalides");
+                }
+            });
+            
+            // Validation ticket exists
+            SupportTicket ticket = pipelineMetrics.time(SEND_SYSTEM_MESSAGE, "ticket_lookup",
+                    () -> ticketService.getTicketById(request.getTicketId()));
+            
+            // Création message système (sans expéditeur spécifique)
+            ChatMessage systemMessage = new ChatMessage();
+            systemMessage.setTicketId(request.getTicketId());
+            systemMessage.setSenderId(null); // Message système
+            systemMessage.setContent("[SYSTÈME] " + request.getContent());
+            
+            ChatMessage savedMessage = pipelineMetrics.time(SEND_SYSTEM_MESSAGE, "save", () -> persistMessage(SEND_SYSTEM_MESSAGE, systemMessage));
+            
+            // Notification temps réel
+            sendRealTimeNotification(SEND_SYSTEM_MESSAGE, ticket, savedMessage);
+            
+            log.info("Message système envoyé dans le ticket {} (ID message: {})", request.getTicketId(), savedMessage.getId());
+            success = true;
+            return savedMessage;
+        } finally {
+            pipelineMetrics.recordTotal(SEND_SYSTEM_MESSAGE, start, success);
         }
-        
-        // Validation ticket exists
-        SupportTicket ticket = ticketService.getTicketById(request.getTicketId());
-        
-        // Création message système (sans expéditeur spécifique)
-        ChatMessage systemMessage = new ChatMessage();
-        systemMessage.setTicketId(request.getTicketId());
-        systemMessage.setSenderId(null); // Message système
-        systemMessage.setContent("[SYSTÈME] " + request.getContent());
-        
-        ChatMessage savedMessage = messageRepository.save(systemMessage);
-        
-        // Notification temps réel
-        sendRealTimeNotification(savedMessage);
-        
-        log.info("Message système envoyé dans le ticket {} (ID message: {})", request.getTicketId(), savedMessage.getId());
-        
-        return savedMessage;
     }
     
     /**
@@ -196,29 +475,32 @@ public class ChatMessageService {
      * @deprecated Utiliser sendSystemMessage(SystemMessageRequest) à la place
      */
     @Deprecated
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatMessage sendSystemMessage(UUID ticketId, String content) {
         SystemMessageRequest request = new SystemMessageRequest(ticketId, content);
         return sendSystemMessage(request);
     }
     
     /**
-     * Marquer qu'un utilisateur est en train d'écrire
+     * Marquer qu'un utilisateur est en train d'écrire (état en mémoire, diffusion regroupée, sans accès base)
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void notifyUserTyping(UUID ticketId, UUID userId) {
-        log.debug("Notification saisie en cours - Ticket: {}, Utilisateur: {}", ticketId, userId);
-        
-        // Validation ticket et utilisateur existent
-        ticketService.getTicketById(ticketId);
-        MockUserInfo user = supportUserService.getChatUserInfo(userId);
-        
-        // Notification temps réel de saisie
-        String typingMessage = user.getFirstName() + " est en train d'écrire...";
-        messagingTemplate.convertAndSend("/topic/typing/" + ticketId, typingMessage);
+        typingIndicatorService.onTyping(ticketId, userId);
+    }
+    
+    /**
+     * Marquer qu'un utilisateur a arrêté d'écrire
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void notifyUserStoppedTyping(UUID ticketId, UUID userId) {
+        typingIndicatorService.onStoppedTyping(ticketId, userId);
     }
     
     /**
      * Notifier qu'un utilisateur a rejoint la conversation
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void notifyUserJoined(UUID ticketId, UUID userId) {
         log.info("Utilisateur {} a rejoint la conversation du ticket {}", userId, ticketId);
         
@@ -238,6 +520,7 @@ public class ChatMessageService {
     /**
      * Notifier qu'un utilisateur a quitté la conversation
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void notifyUserLeft(UUID ticketId, UUID userId) {
         log.info("Utilisateur {} a quitté la conversation du ticket {}", userId, ticketId);
         
@@ -260,29 +543,90 @@ public class ChatMessageService {
     
     /**
      * Obtenir les statistiques de messages pour un ticket
+     * Lecture des compteurs maintenus sur le ticket ; initialisation unique pour les tickets plus anciens
      */
-    @Transactional(readOnly = true)
     public MessageStats getTicketMessageStats(UUID ticketId) {
         log.debug("Calcul statistiques messages pour ticket : {}", ticketId);
         
-        // Validation accès ticket
-        ticketService.getTicketById(ticketId);
-        
-        List<ChatMessage> messages = messageRepository.findByTicketId(ticketId);
-        
-        long totalMessages = messages.size();
-        long systemMessages = messages.stream()
-                .filter(msg -> msg.getSenderId() == null)
-                .count();
-        long userMessages = totalMessages - systemMessages;
+        // Validation accès ticket (relecture en base : les compteurs du ticket en cache peuvent être en retard)
+        SupportTicket ticket = ticketService.reloadTicket(ticketId);
         
-        LocalDateTime firstMessageTime = messages.isEmpty() ? null : 
-            messages.get(0).getTimestamp();
-        LocalDateTime lastMessageTime = messages.isEmpty() ? null : 
-            messages.get(messages.size() - 1).getTimestamp();
+        if (ticket.getMessageCount() == null) {
+            ticket = ticketService.initializeMessageStats(ticketId);
+        }
         
-        return new MessageStats(totalMessages, userMessages, systemMessages, 
-                               firstMessageTime, lastMessageTime);
+        return new MessageStats(ticket.getMessageCount(), ticket.getUserMessageCount(), ticket.getSystemMessageCount(),
+                               ticket.getFirstMessageAt(), ticket.getLastMessageAt());
+    }
+    
+    /**
+     * Persister un message : insertion directe ou commit groupé si l'écriture différée est activée
+     * Appelé hors transaction : en écriture différée, l'expéditeur attend le lot sans retenir de connexion,
+     * le thread d'écriture en a besoin pour le valider.
+     */
+    private ChatMessage persistMessage(String operation, ChatMessage message) {
+        if (batchWriter.isEnabled()) {
+            // Attente bornée tant que le message est en file (jamais inséré s'il expire) ; pris dans un lot,
+            // l'issue réelle de l'écriture : le message est durable au retour
+            ChatMessage savedMessage;
+            try {
+                savedMessage = batchWriter.submit(message).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    throw new IllegalStateException("Délai d'écriture du message dépassé", e.getCause());
+                }
+                // Erreur du lot propagée telle quelle (doublon refusé par la contrainte d'unicité notamment)
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            recentMessageCache.append(savedMessage);
+            searchIndex.indexMessage(savedMessage);
+            return savedMessage;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                messageSequencer.assign(message.getTicketId(), List.of(message));
+                ChatMessage savedMessage = messageRepository.save(message);
+                sendDeduplicator.record(List.of(savedMessage));
+                recordMessageStats(savedMessage);
+                cacheAndIndexAfterCommit(savedMessage);
+                pipelineMetrics.timeCommit(operation);
+                return savedMessage;
+            });
+        } catch (RuntimeException e) {
+            // Échec du commit lui-même possible après validation : le message manquerait au tampon du ticket
+            recentMessageCache.invalidate(message.getTicketId());
+            throw e;
+        }
+    }
+    
+    /**
+     * Mettre à jour les compteurs de messages du ticket dans la transaction d'insertion
+     */
+    private void recordMessageStats(ChatMessage message) {
+        long systemMessages = message.getSenderId() == null ? 1 : 0;
+        ticketService.recordMessages(message.getTicketId(), 1 - systemMessages, systemMessages,
+                                     message.getTimestamp(), message.getTimestamp());
+    }
+    
+    /**
+     * Alimenter le cache des messages récents et l'index de recherche une fois la transaction validée
+     */
+    private void cacheAndIndexAfterCommit(ChatMessage message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recentMessageCache.append(message);
+            searchIndex.indexMessage(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentMessageCache.append(message);
+                searchIndex.indexMessage(message);
+            }
+        });
     }
     
     /**
@@ -298,9 +642,8 @@ public class ChatMessageService {
 
                 if (sender.getRole().equals("CLIENT")) {
                     log.info("Premier message client reçu, passage du ticket {} en IN_PROGRESS", ticket.getId());
-                    ticket.setStatus(TicketStatus.IN_PROGRESS);
-                    // Note: Éviter la boucle en appelant directement le repository
-                    // ticketService.updateTicket(ticket.getId(), ticket);
+                    // Le ticket lu est une copie issue du cache : la mise à jour passe par le service (invalidation du cache)
+                    ticketService.startProgressIfOpen(ticket.getId());
                 }
             } catch (Exception e) {
                 log.warn("Erreur lors de la mise à jour du statut du ticket: {}", e.getMessage());
@@ -311,21 +654,18 @@ public class ChatMessageService {
     /**
      * Envoyer notification temps réel via WebSocket
      */
-    private void sendRealTimeNotification(ChatMessage message) {
+    private void sendRealTimeNotification(String operation, SupportTicket ticket, ChatMessage message) {
         try {
             log.debug("Envoi notification temps réel pour message ID: {}", message.getId());
             
-            // Diffuser le message à tous les abonnés du ticket
-            messagingTemplate.convertAndSend(
-                "/topic/messages/" + message.getTicketId(), 
-                message
-            );
+            // Diffuser le message à tous les abonnés du ticket, une fois la transaction validée
+            pipelineMetrics.run(operation, "broadcast", () -> broadcastAfterCommit(message));
+            
+            // Notification de l'agent assigné, regroupée par fenêtre (remplace /topic/notifications)
+            pipelineMetrics.run(operation, "agent_notification", () -> agentNotificationService.recordMessage(ticket, message));
             
-            // Notification globale (optionnel, pour dashboard admin)
-            messagingTemplate.convertAndSend(
-                "/topic/notifications", 
-                "Nouveau message dans ticket " + message.getTicketId()
-            );
+            // Charge de l'agent assigné (messages non lus), prise en compte par le routage des nouveaux tickets
+            pipelineMetrics.run(operation, "agent_load", () -> agentRoutingService.recordMessage(ticket, message));
             
         } catch (Exception e) {
             log.error("Erreur lors de l'envoi de notification temps réel pour message {}: {}", 
@@ -333,6 +673,46 @@ public class ChatMessageService {
         }
     }
     
+    /**
+     * Diffusion unique du message (sérialisé une seule fois) après validation de la transaction
+     */
+    private void broadcastAfterCommit(ChatMessage message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageBroadcaster.broadcast(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageBroadcaster.broadcast(message);
+            }
+        });
+    }
+    
+    /**
+     * Résoudre le message servant de curseur (en base ou dans l'archive) et vérifier qu'il appartient au ticket
+     */
+    private Cursor getCursor(SupportTicket ticket, UUID cursorId) {
+        ChatMessage cursor = messageRepository.findById(cursorId).orElse(null);
+        if (cursor == null && ticket.getArchivedAt() != null) {
+            ChatMessage archived = messageArchive.findMessage(ticket.getId(), cursorId).orElse(null);
+            if (archived != null) {
+                return new Cursor(archived, true);
+            }
+        }
+        if (cursor == null) {
+            log.warn("Message non trouvé avec l'ID : {}", cursorId);
+            throw new IllegalArgumentException("Message non trouvé avec l'ID : " + cursorId);
+        }
+        if (!ticket.getId().equals(cursor.getTicketId())) {
+            throw new IllegalArgumentException("Le curseur " + cursorId + " n'appartient pas au ticket " + ticket.getId());
+        }
+        return new Cursor(cursor, false);
+    }
+    
+    private record Cursor(ChatMessage message, boolean archived) {
+    }
+    
     /**
      * Validation métier des données de message
      */
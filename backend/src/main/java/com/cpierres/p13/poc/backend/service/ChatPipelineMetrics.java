@@ -0,0 +1,98 @@
+package com.cpierres.p13.poc.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Minuteurs par phase du pipeline d'envoi de message (chat.send.phase{operation, phase})
+ * et durée totale par opération (chat.send.duration{operation, outcome}).
+ * Les minuteurs sont créés une fois puis réutilisés : pas de recherche dans le registre par appel.
+ */
+@Component
+public class ChatPipelineMetrics {
+
+    public static final String SEND_MESSAGE = "sendMessage";
+    public static final String SEND_SYSTEM_MESSAGE = "sendSystemMessage";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ChatPipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Chronométrer une phase produisant un résultat
+     */
+    public <T> T time(String operation, String phase, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            phaseTimer(operation, phase).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Chronométrer une phase sans résultat
+     */
+    public void run(String operation, String phase, Runnable step) {
+        time(operation, phase, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    /**
+     * Chronométrer la validation de la transaction en cours (phase "commit"), qui a lieu après le retour du service
+     */
+    public void timeCommit(String operation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (start != 0) {
+                    phaseTimer(operation, "commit").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Enregistrer la durée totale d'une opération depuis startNanos
+     */
+    public void recordTotal(String operation, long startNanos, boolean success) {
+        String outcome = success ? "success" : "error";
+        timers.computeIfAbsent("duration:" + operation + ":" + outcome, key -> Timer.builder("chat.send.duration")
+                        .description("Durée totale d'envoi d'un message (hors validation de la transaction)")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer phaseTimer(String operation, String phase) {
+        return timers.computeIfAbsent("phase:" + operation + ":" + phase, key -> Timer.builder("chat.send.phase")
+                .description("Durée d'une phase de l'envoi de message")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .register(meterRegistry));
+    }
+}
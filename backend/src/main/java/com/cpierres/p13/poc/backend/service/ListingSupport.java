@@ -0,0 +1,174 @@
+package com.cpierres.p13.poc.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaSubQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Outils communs aux listes paginées : validation page/taille/tri et estimation du nombre total de résultats
+ * La profondeur d'une page est bornée (max-offset) : au-delà, la demande est refusée.
+ * L'estimation évite tout COUNT(*) complet :
+ * - dernière page atteinte : total exact déduit de la page ;
+ * - sinon comptage borné en SQL (COUNT sur une sous-requête limitée à offset + count-cap) : exact sous la borne ;
+ * - au-delà, sans filtre et sur PostgreSQL : estimation du planificateur (pg_class.reltuples, partitions comprises) ;
+ * - à défaut, la borne est renvoyée comme minimum (totalExact = false).
+ */
+@Component
+@Slf4j
+public class ListingSupport {
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int countCap;
+    private final long maxOffset;
+    private boolean postgres;
+
+    public ListingSupport(EntityManager entityManager,
+                          JdbcTemplate jdbcTemplate,
+                          @Value("${chat.listing.default-page-size:50}") int defaultPageSize,
+                          @Value("${chat.listing.max-page-size:200}") int maxPageSize,
+                          @Value("${chat.listing.count-cap:1000}") int countCap,
+                          @Value("${chat.listing.max-offset:10000}") long maxOffset) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.countCap = countCap;
+        this.maxOffset = maxOffset;
+    }
+
+    @PostConstruct
+    void detectDatabase() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            postgres = product != null && product.toLowerCase(Locale.ROOT).contains("postgresql");
+        } catch (DataAccessException e) {
+            log.warn("Base de données non identifiée, estimations du planificateur désactivées : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Construire la demande de page ; sort au format "champ" ou "champ,asc|desc", limité aux champs autorisés
+     * L'identifiant complète toujours le tri pour un ordre stable entre les pages.
+     */
+    public Pageable pageRequest(Integer page, Integer size, String sort, Set<String> sortableFields, Sort defaultSort) {
+        int pageNumber = page != null ? page : 0;
+        int pageSize = size != null ? size : defaultPageSize;
+        if (pageNumber < 0) {
+            throw new IllegalArgumentException("Le numéro de page doit être positif");
+        }
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + maxPageSize);
+        }
+        if ((long) pageNumber * pageSize > maxOffset) {
+            throw new IllegalArgumentException("Page trop éloignée : au plus " + maxOffset
+                    + " résultats peuvent précéder la page demandée (affiner les filtres)");
+        }
+        Sort order = sort == null || sort.isBlank() ? defaultSort : parseSort(sort, sortableFields);
+        if (order.isUnsorted()) {
+            return PageRequest.of(pageNumber, pageSize);
+        }
+        Sort.Direction tieBreak = order.stream().findFirst().map(Sort.Order::getDirection).orElse(Sort.Direction.DESC);
+        return PageRequest.of(pageNumber, pageSize, order.and(Sort.by(tieBreak, "id")));
+    }
+
+    /**
+     * Demande de page sans tri (listes dont l'ordre est imposé, ex. pertinence d'une recherche)
+     */
+    public Pageable pageRequest(Integer page, Integer size) {
+        return pageRequest(page, size, null, Set.of(), Sort.unsorted());
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Estimer le nombre total de résultats d'une liste filtrée
+     */
+    public <T> TotalEstimate estimateTotal(Class<T> type, Specification<T> specification, boolean unfiltered,
+                                           String table, Pageable pageable, int pageContentSize, boolean hasNext) {
+        // Une page vide au-delà de la fin ne permet pas de déduire le total
+        if (!hasNext && (pageContentSize > 0 || pageable.getOffset() == 0)) {
+            return new TotalEstimate(pageable.getOffset() + pageContentSize, true);
+        }
+        long bound = pageable.getOffset() + countCap;
+        long counted = countUpTo(type, specification, bound);
+        if (counted < bound) {
+            return new TotalEstimate(counted, true);
+        }
+        if (unfiltered && postgres) {
+            // Table partitionnée : somme des estimations de ses partitions (reltuples vaut -1 sur la table mère)
+            Long planned = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0)::bigint FROM pg_class c " +
+                    "WHERE c.oid = to_regclass(?) OR c.oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))",
+                    Long.class, table, table);
+            if (planned != null && planned > counted) {
+                return new TotalEstimate(planned, false);
+            }
+        }
+        return new TotalEstimate(counted, false);
+    }
+
+    /**
+     * Compter les résultats jusqu'à la borne, en base : SELECT count(*) FROM (SELECT id ... LIMIT borne)
+     * Aucun identifiant n'est transféré ; le parcours s'arrête à la borne.
+     */
+    private <T> long countUpTo(Class<T> type, Specification<T> specification, long bound) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        JpaCriteriaQuery<Long> query = cb.createQuery(Long.class);
+        JpaSubQuery<Tuple> window = query.subquery(Tuple.class);
+        Root<T> root = window.from(type);
+        window.multiselect(root.get("id").alias("id"));
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(root, query, cb);
+            if (predicate != null) {
+                window.where(predicate);
+            }
+        }
+        window.fetch((int) Math.min(bound, Integer.MAX_VALUE));
+        query.select(cb.count(query.from(window).get("id")));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static Sort parseSort(String sort, Set<String> sortableFields) {
+        String[] parts = sort.split(",");
+        String field = parts[0].trim();
+        if (!sortableFields.contains(field)) {
+            throw new IllegalArgumentException("Tri non autorisé : " + field + " (autorisés : " + sortableFields + ")");
+        }
+        Sort.Direction direction = parts.length > 1
+                ? Sort.Direction.fromOptionalString(parts[1].trim())
+                        .orElseThrow(() -> new IllegalArgumentException("Sens de tri invalide : " + parts[1]))
+                : Sort.Direction.ASC;
+        return Sort.by(direction, field);
+    }
+
+    /**
+     * Nombre total de résultats : exact, ou estimation / minimum si exact = false
+     */
+    public record TotalEstimate(long total, boolean exact) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.repository.ChatMessageArchiveSegmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Numéros de séquence des messages : strictement croissants et sans trou au sein d'un ticket
+ * Les numéros sont réservés sur la ligne du ticket dans la transaction d'insertion : l'ordre des numéros
+ * est celui des commits, indépendamment des horloges. Les messages d'un ticket antérieur à la numérotation
+ * sont numérotés dans l'ordre (timestamp, id) à la première utilisation, après ses messages archivés
+ * (numérotés selon leur position dans l'archive, voir ChatMessageArchive).
+ */
+@Component
+@Slf4j
+public class MessageSequencer {
+
+    private final SupportTicketService ticketService;
+    private final ChatMessageArchiveSegmentRepository segmentRepository;
+    private final RecentMessageCache recentMessageCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageSequencer(SupportTicketService ticketService,
+                            ChatMessageArchiveSegmentRepository segmentRepository,
+                            RecentMessageCache recentMessageCache,
+                            JdbcTemplate jdbcTemplate) {
+        this.ticketService = ticketService;
+        this.segmentRepository = segmentRepository;
+        this.recentMessageCache = recentMessageCache;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Attribuer leurs numéros aux nouveaux messages d'un même ticket, dans l'ordre de la liste
+     */
+    @Transactional
+    public void assign(UUID ticketId, List<ChatMessage> messages) {
+        Long last = ticketService.reserveSequences(ticketId, messages.size());
+        if (last == null) {
+            ensureSequences(ticketId);
+            last = ticketService.reserveSequences(ticketId, messages.size());
+            if (last == null) {
+                throw new TicketNotFoundException(ticketId);
+            }
+        }
+        long sequence = last - messages.size();
+        for (ChatMessage message : messages) {
+            message.setSequence(++sequence);
+        }
+    }
+
+    /**
+     * Numéroter les messages d'un ticket antérieur à la numérotation (sans effet si c'est déjà fait)
+     */
+    @Transactional
+    public void ensureSequences(UUID ticketId) {
+        if (!ticketService.claimSequenceInitialization(ticketId)) {
+            return;
+        }
+        long sequence = segmentRepository.countMessages(ticketId);
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, timestamp FROM chat_messages WHERE ticket_id = ? ORDER BY timestamp, id",
+                (RowCallbackHandler) rs -> updates.add(new Object[]{
+                        sequence + updates.size() + 1, rs.getObject(1, UUID.class), rs.getObject(2, LocalDateTime.class)}),
+                ticketId);
+        // Le timestamp désigne la partition de chaque ligne
+        jdbcTemplate.batchUpdate("UPDATE chat_messages SET sequence_number = ? WHERE id = ? AND timestamp = ?", updates);
+        long lastSequence = sequence + updates.size();
+        ticketService.updateLastSequence(ticketId, lastSequence);
+        // Les copies en cache n'ont pas de numéro
+        recentMessageCache.invalidate(ticketId);
+        log.info("Numérotation des messages du ticket {} : {} messages", ticketId, lastSequence);
+    }
+}
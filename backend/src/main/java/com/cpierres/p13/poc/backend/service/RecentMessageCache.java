@@ -0,0 +1,314 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Cache mémoire des derniers messages de chaque ticket (tampon circulaire borné par ticket)
+ * Alimenté sur le chemin d'écriture ; une lecture n'est servie que si la plage demandée est entièrement couverte
+ * et ses numéros de séquence consécutifs (un message validé sans passer par le cache crée un trou : lecture en base).
+ * Limites globales en nombre de tickets et de messages, éviction LRU des tickets inactifs.
+ */
+@Component
+@Slf4j
+public class RecentMessageCache {
+
+    private static final Comparator<ChatMessage> CHRONOLOGICAL =
+            Comparator.comparing(ChatMessage::getTimestamp).thenComparing(ChatMessage::getId);
+    private static final Comparator<ChatMessage> BY_SEQUENCE = Comparator.comparing(ChatMessage::getSequence);
+
+    private final boolean enabled;
+    private final int perTicketCapacity;
+    private final int maxTickets;
+    private final int maxMessages;
+
+    /** Ordre d'accès : l'entrée la plus ancienne est le ticket le moins récemment utilisé */
+    private final LinkedHashMap<UUID, TicketBuffer> buffers = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicInteger totalMessages = new AtomicInteger();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public RecentMessageCache(@Value("${chat.cache.recent-messages.enabled:true}") boolean enabled,
+                              @Value("${chat.cache.recent-messages.per-ticket-capacity:50}") int perTicketCapacity,
+                              @Value("${chat.cache.recent-messages.max-tickets:10000}") int maxTickets,
+                              @Value("${chat.cache.recent-messages.max-messages:200000}") int maxMessages,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.perTicketCapacity = perTicketCapacity;
+        this.maxTickets = maxTickets;
+        this.maxMessages = maxMessages;
+        this.hits = Counter.builder("chat.cache.recent.messages").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.cache.recent.messages").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("chat.cache.recent.messages.size", totalMessages);
+        meterRegistry.gauge("chat.cache.recent.tickets", this, cache -> cache.ticketCount());
+    }
+
+    /**
+     * Ajouter un message persisté au tampon de son ticket
+     */
+    public void append(ChatMessage message) {
+        if (!enabled) {
+            return;
+        }
+        TicketBuffer buffer = getOrCreate(message.getTicketId());
+        int delta;
+        synchronized (buffer) {
+            delta = buffer.evicted ? 0 : buffer.add(message, perTicketCapacity);
+        }
+        totalMessages.addAndGet(delta);
+        enforceLimits();
+    }
+
+    /**
+     * Initialiser le tampon d'un ticket à partir de son historique complet lu en base
+     * (ignoré si l'historique n'est pas numéroté de 1 à n : ticket non encore numéroté)
+     */
+    public void seed(UUID ticketId, List<ChatMessage> fullHistory) {
+        if (!enabled || fullHistory.size() > perTicketCapacity || !isNumberedFromStart(fullHistory)) {
+            return;
+        }
+        TicketBuffer buffer = getOrCreate(ticketId);
+        int delta = 0;
+        synchronized (buffer) {
+            if (buffer.evicted) {
+                return;
+            }
+            for (ChatMessage message : fullHistory) {
+                delta += buffer.add(message, perTicketCapacity);
+            }
+            // Historique complet tant qu'aucun message n'a été évincé du tampon
+            buffer.complete = !buffer.truncated;
+        }
+        totalMessages.addAndGet(delta);
+        enforceLimits();
+    }
+
+    /**
+     * Messages d'un ticket depuis une date (incluse), si le tampon couvre la plage
+     */
+    public Optional<List<ChatMessage>> findSince(UUID ticketId, LocalDateTime since) {
+        return read(ticketId, buffer -> {
+            ChatMessage oldest = buffer.messages.peekFirst();
+            // Couvert si le tampon contient tout l'historique, ou si un message plus ancien que 'since' y figure encore
+            if (!buffer.complete && (oldest == null || !oldest.getTimestamp().isBefore(since))
+                    || !isContiguous(buffer.messages)) {
+                return null;
+            }
+            List<ChatMessage> result = new ArrayList<>();
+            for (ChatMessage message : buffer.messages) {
+                if (!message.getTimestamp().isBefore(since)) {
+                    result.add(message);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Historique complet d'un ticket, si le tampon le contient entièrement
+     */
+    public Optional<List<ChatMessage>> findAll(UUID ticketId) {
+        return read(ticketId, buffer -> buffer.complete && isContiguous(buffer.messages) ? new ArrayList<>(buffer.messages) : null);
+    }
+
+    /**
+     * Les 'count' derniers messages d'un ticket (ordre chronologique), si le tampon en contient assez
+     */
+    public Optional<List<ChatMessage>> findLatest(UUID ticketId, int count) {
+        return read(ticketId, buffer -> {
+            if (!buffer.complete && buffer.messages.size() < count) {
+                return null;
+            }
+            List<ChatMessage> result = new ArrayList<>(buffer.messages);
+            result = result.subList(Math.max(0, result.size() - count), result.size());
+            return isContiguous(result) ? result : null;
+        });
+    }
+
+    /**
+     * Messages d'un ticket de numéro de séquence strictement supérieur, par numéro croissant,
+     * si le tampon contient tous les numéros suivants sans trou
+     */
+    public Optional<List<ChatMessage>> findAfterSequence(UUID ticketId, long afterSequence) {
+        return read(ticketId, buffer -> {
+            List<ChatMessage> result = new ArrayList<>();
+            long highest = -1;
+            for (ChatMessage message : buffer.messages) {
+                if (message.getSequence() == null) {
+                    return null;
+                }
+                highest = Math.max(highest, message.getSequence());
+                if (message.getSequence() > afterSequence) {
+                    result.add(message);
+                }
+            }
+            // Rien de plus récent : couvert seulement si le tampon connaît le numéro demandé
+            if (result.isEmpty()) {
+                return buffer.complete || highest >= afterSequence ? result : null;
+            }
+            result.sort(BY_SEQUENCE);
+            for (int i = 0; i < result.size(); i++) {
+                if (result.get(i).getSequence() != afterSequence + i + 1) {
+                    return null;
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Retirer le tampon d'un ticket (messages écrits ailleurs que sur ce nœud)
+     */
+    public void invalidate(UUID ticketId) {
+        TicketBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.remove(ticketId);
+        }
+        if (buffer != null) {
+            synchronized (buffer) {
+                totalMessages.addAndGet(-buffer.messages.size());
+                buffer.messages.clear();
+                buffer.evicted = true;
+            }
+        }
+    }
+
+    public int ticketCount() {
+        synchronized (buffers) {
+            return buffers.size();
+        }
+    }
+
+    private Optional<List<ChatMessage>> read(UUID ticketId, Function<TicketBuffer, List<ChatMessage>> reader) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        TicketBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(ticketId);
+        }
+        List<ChatMessage> result = null;
+        if (buffer != null) {
+            synchronized (buffer) {
+                result = reader.apply(buffer);
+            }
+        }
+        if (result == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(result);
+    }
+
+    /**
+     * Vrai si les messages portent des numéros de séquence consécutifs, quel que soit leur ordre chronologique
+     */
+    private static boolean isContiguous(Collection<ChatMessage> messages) {
+        long[] sequences = new long[messages.size()];
+        int i = 0;
+        for (ChatMessage message : messages) {
+            if (message.getSequence() == null) {
+                return false;
+            }
+            sequences[i++] = message.getSequence();
+        }
+        Arrays.sort(sequences);
+        for (i = 1; i < sequences.length; i++) {
+            if (sequences[i] != sequences[i - 1] + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumberedFromStart(List<ChatMessage> history) {
+        return isContiguous(history) && (history.isEmpty() || history.stream().mapToLong(ChatMessage::getSequence).min().getAsLong() == 1);
+    }
+
+    private TicketBuffer getOrCreate(UUID ticketId) {
+        synchronized (buffers) {
+            return buffers.computeIfAbsent(ticketId, id -> new TicketBuffer());
+        }
+    }
+
+    /**
+     * Évincer les tickets les moins récemment utilisés tant que les limites globales sont dépassées
+     */
+    private void enforceLimits() {
+        if (totalMessages.get() <= maxMessages && ticketCount() <= maxTickets) {
+            return;
+        }
+        synchronized (buffers) {
+            Iterator<Map.Entry<UUID, TicketBuffer>> eldest = buffers.entrySet().iterator();
+            while (eldest.hasNext() && (totalMessages.get() > maxMessages || buffers.size() > maxTickets)) {
+                TicketBuffer buffer = eldest.next().getValue();
+                eldest.remove();
+                synchronized (buffer) {
+                    totalMessages.addAndGet(-buffer.messages.size());
+                    buffer.messages.clear();
+                    buffer.evicted = true;
+                }
+                log.debug("Éviction LRU d'un tampon de messages ({} tickets en cache)", buffers.size());
+            }
+        }
+    }
+
+    /**
+     * Suffixe contigu de l'historique d'un ticket, trié chronologiquement
+     */
+    private static final class TicketBuffer {
+        private final Deque<ChatMessage> messages = new ArrayDeque<>();
+        /** Vrai si le tampon contient tout l'historique du ticket */
+        private boolean complete;
+        /** Vrai dès qu'un message a été évincé par la capacité du tampon */
+        private boolean truncated;
+        /** Vrai une fois le tampon retiré du cache : il n'est plus alimenté */
+        private boolean evicted;
+
+        /**
+         * Insérer un message à sa place (en pratique en fin de tampon) et renvoyer la variation de taille
+         */
+        int add(ChatMessage message, int capacity) {
+            for (ChatMessage existing : messages) {
+                if (existing.getId().equals(message.getId())) {
+                    return 0;
+                }
+            }
+            Deque<ChatMessage> newer = new ArrayDeque<>();
+            while (!messages.isEmpty() && CHRONOLOGICAL.compare(messages.peekLast(), message) > 0) {
+                newer.addFirst(messages.pollLast());
+            }
+            messages.addLast(message);
+            messages.addAll(newer);
+            if (messages.size() > capacity) {
+                messages.pollFirst();
+                truncated = true;
+                complete = false;
+                return 0;
+            }
+            return 1;
+        }
+    }
+}
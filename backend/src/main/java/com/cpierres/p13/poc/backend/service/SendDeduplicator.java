@@ -0,0 +1,249 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.ClientMessageKey;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.repository.ClientMessageKeyRepository;
+import com.cpierres.p13.poc.backend.service.storage.ChatMessageArchive;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Déduplication des messages renvoyés par les clients (clé d'idempotence clientMessageId, unique par expéditeur)
+ * Une fenêtre bornée en mémoire résout les renvois récents, y compris pendant l'enregistrement du premier envoi ;
+ * au-delà (redémarrage, autre nœud, clé sortie de la fenêtre), la table chat_message_client_keys fait foi
+ * et sa clé primaire refuse tout doublon concurrent. Les clés sont purgées après la durée de conservation.
+ */
+@Component
+@Slf4j
+public class SendDeduplicator {
+
+    private final ClientMessageKeyRepository keyRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatMessageArchive messageArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter duplicates;
+
+    @Value("${chat.idempotency.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${chat.idempotency.purge-interval-minutes:60}")
+    private long purgeIntervalMinutes;
+
+    /** Clé -> message enregistré, ou en cours d'enregistrement (futur non complété) ; ordre d'accès, plus ancien évincé */
+    private final Map<ClientMessageKey.Key, CompletableFuture<ChatMessage>> window;
+    private final int windowSize;
+    private ScheduledExecutorService purger;
+
+    public SendDeduplicator(ClientMessageKeyRepository keyRepository,
+                            ChatMessageRepository messageRepository,
+                            ChatMessageArchive messageArchive,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${chat.idempotency.window-size:10000}") int windowSize,
+                            MeterRegistry meterRegistry) {
+        this.keyRepository = keyRepository;
+        this.messageRepository = messageRepository;
+        this.messageArchive = messageArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.windowSize = windowSize;
+        this.duplicates = Counter.builder("chat.messages.duplicates")
+                .description("Messages renvoyés par un client avec une clé déjà enregistrée")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.messages.idempotency.window", this, deduplicator -> deduplicator.windowSize());
+    }
+
+    @PostConstruct
+    void start() {
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "client-message-key-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpiredKeys, purgeIntervalMinutes, purgeIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void stop() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Réserver une clé avant l'enregistrement d'un message
+     * Retourne le message déjà associé à la clé (futur en attente si son enregistrement est en cours),
+     * ou null : l'appelant enregistre le message puis appelle confirm, ou release en cas d'échec.
+     */
+    public CompletableFuture<ChatMessage> reserve(UUID senderId, String clientMessageId) {
+        ClientMessageKey.Key key = new ClientMessageKey.Key(senderId, clientMessageId);
+        CompletableFuture<ChatMessage> reservation = new CompletableFuture<>();
+        CompletableFuture<ChatMessage> previous;
+        synchronized (window) {
+            previous = window.putIfAbsent(key, reservation);
+            if (previous == null) {
+                evictResolved();
+            }
+        }
+        if (previous != null) {
+            duplicates.increment();
+            log.info("Renvoi du message {} de l'expéditeur {} ignoré (fenêtre mémoire)", clientMessageId, senderId);
+            return previous;
+        }
+        Optional<ChatMessage> stored;
+        try {
+            stored = findSent(senderId, clientMessageId);
+        } catch (RuntimeException e) {
+            release(senderId, clientMessageId, reservation, e);
+            throw e;
+        }
+        if (stored.isEmpty()) {
+            return null;
+        }
+        duplicates.increment();
+        log.info("Renvoi du message {} de l'expéditeur {} ignoré (clé enregistrée)", clientMessageId, senderId);
+        reservation.complete(stored.get());
+        return reservation;
+    }
+
+    /**
+     * Associer la clé réservée au message enregistré, une fois la transaction en cours validée
+     * (libérée si elle est annulée : le client pourra renvoyer le message)
+     */
+    public void confirm(UUID senderId, String clientMessageId, ChatMessage message) {
+        CompletableFuture<ChatMessage> reservation = reservation(senderId, clientMessageId);
+        if (reservation == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reservation.complete(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    reservation.complete(message);
+                } else {
+                    release(senderId, clientMessageId, reservation,
+                            new IllegalStateException("Enregistrement du message " + clientMessageId + " annulé"));
+                }
+            }
+        });
+    }
+
+    /**
+     * Libérer une clé réservée dont l'enregistrement a échoué ; les renvois en attente reçoivent l'erreur
+     */
+    public void release(UUID senderId, String clientMessageId, Throwable cause) {
+        CompletableFuture<ChatMessage> reservation = reservation(senderId, clientMessageId);
+        if (reservation != null) {
+            release(senderId, clientMessageId, reservation, cause);
+        }
+    }
+
+    /**
+     * Attendre le message associé à une clé déjà reçue (erreur du premier envoi propagée telle quelle)
+     */
+    public ChatMessage await(CompletableFuture<ChatMessage> previous) {
+        try {
+            return previous.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Enregistrer les clés des messages insérés dans la transaction en cours (messages sans clé ignorés)
+     * Un doublon concurrent fait échouer la transaction sur la clé primaire.
+     */
+    public void record(List<ChatMessage> messages) {
+        List<ClientMessageKey> keys = messages.stream()
+                .filter(message -> message.getClientMessageId() != null)
+                .map(message -> new ClientMessageKey(message.getSenderId(), message.getClientMessageId(),
+                        message.getTicketId(), message.getId(), LocalDateTime.now()))
+                .toList();
+        if (!keys.isEmpty()) {
+            keyRepository.saveAll(keys);
+        }
+    }
+
+    /**
+     * Retrouver le message enregistré sous une clé (en base ou dans l'archive)
+     */
+    public Optional<ChatMessage> findSent(UUID senderId, String clientMessageId) {
+        return keyRepository.findById(new ClientMessageKey.Key(senderId, clientMessageId))
+                .flatMap(key -> messageRepository.findById(key.getMessageId())
+                        .or(() -> messageArchive.findMessage(key.getTicketId(), key.getMessageId())));
+    }
+
+    /**
+     * Supprimer les clés plus anciennes que la durée de conservation
+     */
+    void purgeExpiredKeys() {
+        try {
+            LocalDateTime createdBefore = LocalDateTime.now().minusHours(retentionHours);
+            Integer deleted = transactionTemplate.execute(status -> keyRepository.deleteCreatedBefore(createdBefore));
+            if (deleted != null && deleted > 0) {
+                log.info("{} clés d'idempotence expirées supprimées", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de la purge des clés d'idempotence : {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<ChatMessage> reservation(UUID senderId, String clientMessageId) {
+        synchronized (window) {
+            return window.get(new ClientMessageKey.Key(senderId, clientMessageId));
+        }
+    }
+
+    /**
+     * Évincer les plus anciennes clés résolues au-delà de la taille de la fenêtre
+     * Une réservation en cours n'est jamais évincée : ses renvois doivent attendre le premier envoi.
+     */
+    private void evictResolved() {
+        Iterator<CompletableFuture<ChatMessage>> reservations = window.values().iterator();
+        while (window.size() > windowSize && reservations.hasNext()) {
+            if (reservations.next().isDone()) {
+                reservations.remove();
+            }
+        }
+    }
+
+    private void release(UUID senderId, String clientMessageId, CompletableFuture<ChatMessage> reservation, Throwable cause) {
+        synchronized (window) {
+            window.remove(new ClientMessageKey.Key(senderId, clientMessageId), reservation);
+        }
+        reservation.completeExceptionally(cause);
+    }
+
+    private int windowSize() {
+        synchronized (window) {
+            return window.size();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.cpierres.p13.poc.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nombre d'abonnés STOMP par destination, alimenté par les événements de session
+ * Les jauges Micrometer sont agrégées par famille de topic (stomp.subscriptions{topic}) pour
+ * borner la cardinalité ; le détail par destination est exposé par l'endpoint Actuator "stomp".
+ */
+@Component
+public class StompSubscriptionTracker {
+
+    /** Familles de destinations : préfixe -> libellé du tag "topic" */
+    private static final Map<String, String> FAMILIES = Map.of(
+            "/topic/messages/", "messages",
+            "/topic/typing/", "typing",
+            "/topic/users/", "users",
+            "/user/queue/notifications", "notifications");
+    private static final String OTHER = "other";
+
+    /** session -> (subscriptionId -> destination) */
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    /** destination -> nombre d'abonnements actifs */
+    private final Map<String, Integer> subscribersByDestination = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> subscribersByFamily = new ConcurrentHashMap<>();
+
+    public StompSubscriptionTracker(MeterRegistry meterRegistry) {
+        for (String family : familyNames()) {
+            AtomicInteger count = new AtomicInteger();
+            subscribersByFamily.put(family, count);
+            Gauge.builder("stomp.subscriptions", count, AtomicInteger::get)
+                    .description("Abonnements STOMP actifs par famille de topic")
+                    .tag("topic", family)
+                    .register(meterRegistry);
+        }
+        meterRegistry.gaugeMapSize("stomp.destinations", Tags.empty(), subscribersByDestination);
+    }
+
+    /**
+     * Abonnés actifs par destination (copie triée)
+     */
+    public Map<String, Integer> getSubscribersByDestination() {
+        return new TreeMap<>(subscribersByDestination);
+    }
+
+    /**
+     * Abonnés actifs par famille de topic (copie triée)
+     */
+    public Map<String, Integer> getSubscribersByFamily() {
+        Map<String, Integer> result = new TreeMap<>();
+        subscribersByFamily.forEach((family, count) -> result.put(family, count.get()));
+        return result;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>());
+        if (subscriptions.putIfAbsent(accessor.getSubscriptionId(), destination) == null) {
+            subscribersByDestination.merge(destination, 1, Integer::sum);
+            subscribersByFamily.get(familyOf(destination)).incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessions.get(accessor.getSessionId());
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(String destination) {
+        subscribersByDestination.computeIfPresent(destination, (d, count) -> count > 1 ? count - 1 : null);
+        subscribersByFamily.get(familyOf(destination)).decrementAndGet();
+    }
+
+    private static String familyOf(String destination) {
+        for (Map.Entry<String, String> family : FAMILIES.entrySet()) {
+            if (destination.startsWith(family.getKey())) {
+                return family.getValue();
+            }
+        }
+        return OTHER;
+    }
+
+    private static List<String> familyNames() {
+        List<String> names = new ArrayList<>(FAMILIES.values());
+        names.add(OTHER);
+        return names;
+    }
+}
@@ -1,15 +1,31 @@
 package com.cpierres.p13.poc.backend.service;
 
 import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.dto.TicketListPage;
 import com.cpierres.p13.poc.backend.entity.SupportTicket;
 import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
 import com.cpierres.p13.poc.backend.repository.SupportTicketRepository;
+import com.cpierres.p13.poc.backend.repository.TicketSpecifications;
+import com.cpierres.p13.poc.backend.service.routing.AgentRoutingService;
+import com.cpierres.p13.poc.backend.service.search.ChatSearchIndex;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -23,6 +39,27 @@ public class SupportTicketService {
     @Autowired
     private SupportUserService supportUserService;
     
+    @Autowired
+    private TicketCache ticketCache;
+    
+    @Autowired
+    private ListingSupport listingSupport;
+    
+    @Autowired
+    private ChatSearchIndex searchIndex;
+    
+    @Autowired
+    private AgentRoutingService agentRoutingService;
+    
+    @Autowired
+    private ChatMessageRepository messageRepository;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    private static final Set<String> TICKET_SORT_FIELDS = Set.of("createdAt", "updatedAt", "status", "lastMessageAt");
+    private static final Sort DEFAULT_TICKET_SORT = Sort.by(Sort.Direction.DESC, "updatedAt");
+    
     /**
      * Créer un nouveau ticket de support avec validation métier
      */
@@ -36,8 +73,9 @@ public class SupportTicketService {
         MockUserInfo user = supportUserService.getChatUserInfo(ticket.getUserId());
         log.debug("Ticket créé pour l'utilisateur : {} ({})", user.getEmail(), user.getRole());
         
-        // Auto-assignation si possible
-        if (ticket.getAssignedAgent() == null) {
+        // Auto-assignation si possible (ticket compté dans la charge de l'agent dès son choix)
+        boolean autoAssigned = ticket.getAssignedAgent() == null;
+        if (autoAssigned) {
             assignAvailableAgent(ticket);
         }
         
@@ -47,63 +85,109 @@ public class SupportTicketService {
         }
         
         SupportTicket savedTicket = ticketRepository.save(ticket);
+        if (!autoAssigned) {
+            agentRoutingService.ticketChanged(savedTicket.getId(), null, null, savedTicket.getAssignedAgent(), savedTicket.getStatus());
+        }
+        indexAfterCommit(savedTicket);
         log.info("Ticket de support créé avec succès : {} (ID: {})", savedTicket.getSubject(), savedTicket.getId());
         
         return savedTicket;
     }
     
     /**
-     * Récupérer tous les tickets
+     * Rechercher les tickets par page, filtres combinables (null : pas de filtre)
+     * Le total est estimé sans COUNT(*) complet (voir ListingSupport)
      */
     @Transactional(readOnly = true)
-    public List<SupportTicket> getAllTickets() {
-        log.debug("Récupération de tous les tickets de support");
-        return ticketRepository.findAll();
+    public TicketListPage searchTickets(TicketStatus status, String assignedAgent, UUID userId, LocalDateTime updatedSince,
+                                        Integer page, Integer size, String sort) {
+        log.debug("Recherche tickets (statut: {}, agent: {}, utilisateur: {}, depuis: {}, page: {}, taille: {}, tri: {})",
+                status, assignedAgent, userId, updatedSince, page, size, sort);
+        
+        Pageable pageable = listingSupport.pageRequest(page, size, sort, TICKET_SORT_FIELDS, DEFAULT_TICKET_SORT);
+        Specification<SupportTicket> specification = TicketSpecifications.matching(status, assignedAgent, userId, updatedSince);
+        
+        // Slice : une ligne de plus que la page, sans requête de comptage
+        Slice<SupportTicket> slice = ticketRepository.findBy(specification, query -> query.slice(pageable));
+        ListingSupport.TotalEstimate total = listingSupport.estimateTotal(SupportTicket.class, specification,
+                TicketSpecifications.isUnfiltered(status, assignedAgent, userId, updatedSince), "support_tickets",
+                pageable, slice.getNumberOfElements(), slice.hasNext());
+        
+        return new TicketListPage(slice.getContent(), pageable.getPageNumber(), pageable.getPageSize(),
+                slice.hasNext(), total.total(), total.exact());
     }
     
     /**
-     * Récupérer un ticket par ID
+     * Récupérer un ticket par ID (copie issue du cache, les compteurs de messages peuvent être en retard)
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public SupportTicket getTicketById(UUID id) {
+        return ticketCache.get(id, this::loadTicket);
+    }
+    
+    /**
+     * Relire un ticket en base sans passer par le cache
+     */
+    @Transactional(readOnly = true)
+    public SupportTicket reloadTicket(UUID id) {
+        return loadTicket(id);
+    }
+    
+    /**
+     * Charger un ticket en base (entité gérée, à utiliser avant toute modification)
+     */
+    private SupportTicket loadTicket(UUID id) {
         log.debug("Récupération ticket par ID : {}", id);
         
         return ticketRepository.findById(id)
                 .orElseThrow(() -> {
                     log.warn("Ticket non trouvé avec l'ID : {}", id);
-                    return new IllegalArgumentException("Ticket non trouvé avec l'ID : " + id);
+                    return new TicketNotFoundException(id);
                 });
     }
     
     /**
-     * Récupérer les tickets d'un utilisateur
+     * Récupérer les tickets d'un utilisateur (les plus récents, au plus une page maximale)
+     * @deprecated liste tronquée à une page : utiliser searchTickets (GET /api/tickets?userId=...)
      */
+    @Deprecated
     @Transactional(readOnly = true)
-    public List<SupportTicket> getTicketsByUserId(UUID userId) {
+    public TicketListPage getTicketsByUserId(UUID userId) {
         log.debug("Récupération tickets pour utilisateur ID : {}", userId);
         
         // Vérifier que l'utilisateur existe
         supportUserService.getChatUserInfo(userId);
         
-        return ticketRepository.findByUserId(userId);
+        return firstPage(null, null, userId);
     }
     
     /**
-     * Récupérer les tickets assignés à un agent
+     * Récupérer les tickets assignés à un agent (les plus récents, au plus une page maximale)
+     * @deprecated liste tronquée à une page : utiliser searchTickets (GET /api/tickets?assignedAgent=...)
      */
+    @Deprecated
     @Transactional(readOnly = true)
-    public List<SupportTicket> getTicketsByAssignedAgent(String assignedAgent) {
+    public TicketListPage getTicketsByAssignedAgent(String assignedAgent) {
         log.debug("Récupération tickets pour agent : {}", assignedAgent);
-        return ticketRepository.findByAssignedAgent(assignedAgent);
+        return firstPage(null, assignedAgent, null);
     }
     
     /**
-     * Récupérer les tickets par statut
+     * Récupérer les tickets par statut (les plus récents, au plus une page maximale)
+     * @deprecated liste tronquée à une page : utiliser searchTickets (GET /api/tickets?status=...)
      */
+    @Deprecated
     @Transactional(readOnly = true)
-    public List<SupportTicket> getTicketsByStatus(TicketStatus status) {
+    public TicketListPage getTicketsByStatus(TicketStatus status) {
         log.debug("Récupération tickets par statut : {}", status);
-        return ticketRepository.findByStatus(status);
+        return firstPage(status, null, null);
+    }
+    
+    /**
+     * Listes historiques non paginées : bornées aux tickets les plus récemment mis à jour (hasNext : liste tronquée)
+     */
+    private TicketListPage firstPage(TicketStatus status, String assignedAgent, UUID userId) {
+        return searchTickets(status, assignedAgent, userId, null, 0, listingSupport.getMaxPageSize(), null);
     }
     
     /**
@@ -112,7 +196,10 @@ public class SupportTicketService {
     public SupportTicket updateTicket(UUID id, SupportTicket ticketDetails) {
         log.info("Mise à jour ticket ID : {}", id);
         
-        SupportTicket existingTicket = getTicketById(id);
+        SupportTicket existingTicket = loadTicket(id);
+        ticketCache.invalidate(id);
+        String previousAgent = existingTicket.getAssignedAgent();
+        TicketStatus previousStatus = existingTicket.getStatus();
         
         // Validation des règles métier pour les changements de statut
         validateStatusTransition(existingTicket.getStatus(), ticketDetails.getStatus());
@@ -127,7 +214,7 @@ public class SupportTicketService {
         }
         
         if (ticketDetails.getStatus() != null) {
-            existingTicket.setStatus(ticketDetails.getStatus());
+            changeStatus(existingTicket, ticketDetails.getStatus());
         }
         
         if (ticketDetails.getAssignedAgent() != null) {
@@ -135,6 +222,10 @@ public class SupportTicketService {
         }
         
         SupportTicket updatedTicket = ticketRepository.save(existingTicket);
+        trackAgentLoad(updatedTicket, previousAgent, previousStatus);
+        if (ticketDetails.getSubject() != null || ticketDetails.getDescription() != null) {
+            indexAfterCommit(updatedTicket);
+        }
         log.info("Ticket mis à jour : {} (ID: {})", updatedTicket.getSubject(), updatedTicket.getId());
         
         return updatedTicket;
@@ -146,7 +237,10 @@ public class SupportTicketService {
     public SupportTicket assignToAgent(UUID ticketId, String agentName) {
         log.info("Assignation ticket ID {} à l'agent : {}", ticketId, agentName);
         
-        SupportTicket ticket = getTicketById(ticketId);
+        SupportTicket ticket = loadTicket(ticketId);
+        ticketCache.invalidate(ticketId);
+        String previousAgent = ticket.getAssignedAgent();
+        TicketStatus previousStatus = ticket.getStatus();
         
         // Validation des règles métier
         if (ticket.getStatus() == TicketStatus.RESOLVED || ticket.getStatus() == TicketStatus.CLOSED) {
@@ -161,23 +255,40 @@ public class SupportTicketService {
         }
         
         SupportTicket updatedTicket = ticketRepository.save(ticket);
+        trackAgentLoad(updatedTicket, previousAgent, previousStatus);
         log.info("Ticket assigné à l'agent {} : {} (ID: {})", agentName, updatedTicket.getSubject(), updatedTicket.getId());
         
         return updatedTicket;
     }
     
+    /**
+     * Passer un ticket OPEN en IN_PROGRESS (sans effet dans les autres statuts)
+     */
+    public void startProgressIfOpen(UUID ticketId) {
+        SupportTicket ticket = loadTicket(ticketId);
+        
+        if (ticket.getStatus() == TicketStatus.OPEN) {
+            ticketCache.invalidate(ticketId);
+            ticket.setStatus(TicketStatus.IN_PROGRESS);
+            ticketRepository.save(ticket);
+            log.info("Ticket passé en IN_PROGRESS : {}", ticketId);
+        }
+    }
+    
     /**
      * Résoudre un ticket
      */
     public SupportTicket resolveTicket(UUID ticketId, String resolution) {
         log.info("Résolution ticket ID : {}", ticketId);
         
-        SupportTicket ticket = getTicketById(ticketId);
+        SupportTicket ticket = loadTicket(ticketId);
+        ticketCache.invalidate(ticketId);
         
         if (ticket.getStatus() == TicketStatus.CLOSED) {
             throw new IllegalStateException("Impossible de résoudre un ticket fermé");
         }
         
+        TicketStatus previousStatus = ticket.getStatus();
         ticket.setStatus(TicketStatus.RESOLVED);
         
         // Ajouter la résolution dans la description si fournie
@@ -187,6 +298,7 @@ public class SupportTicketService {
         }
         
         SupportTicket resolvedTicket = ticketRepository.save(ticket);
+        trackAgentLoad(resolvedTicket, resolvedTicket.getAssignedAgent(), previousStatus);
         log.info("Ticket résolu : {} (ID: {})", resolvedTicket.getSubject(), resolvedTicket.getId());
         
         return resolvedTicket;
@@ -198,10 +310,13 @@ public class SupportTicketService {
     public SupportTicket closeTicket(UUID ticketId) {
         log.info("Fermeture ticket ID : {}", ticketId);
         
-        SupportTicket ticket = getTicketById(ticketId);
-        ticket.setStatus(TicketStatus.CLOSED);
+        SupportTicket ticket = loadTicket(ticketId);
+        ticketCache.invalidate(ticketId);
+        TicketStatus previousStatus = ticket.getStatus();
+        changeStatus(ticket, TicketStatus.CLOSED);
         
         SupportTicket closedTicket = ticketRepository.save(ticket);
+        trackAgentLoad(closedTicket, closedTicket.getAssignedAgent(), previousStatus);
         log.info("Ticket fermé : {} (ID: {})", closedTicket.getSubject(), closedTicket.getId());
         
         return closedTicket;
@@ -213,15 +328,18 @@ public class SupportTicketService {
     public SupportTicket reopenTicket(UUID ticketId) {
         log.info("Réouverture ticket ID : {}", ticketId);
         
-        SupportTicket ticket = getTicketById(ticketId);
+        SupportTicket ticket = loadTicket(ticketId);
+        ticketCache.invalidate(ticketId);
         
         if (ticket.getStatus() == TicketStatus.OPEN || ticket.getStatus() == TicketStatus.IN_PROGRESS) {
             throw new IllegalStateException("Le ticket est déjà ouvert ou en cours de traitement");
         }
         
-        ticket.setStatus(TicketStatus.OPEN);
+        TicketStatus previousStatus = ticket.getStatus();
+        changeStatus(ticket, TicketStatus.OPEN);
         
         SupportTicket reopenedTicket = ticketRepository.save(ticket);
+        trackAgentLoad(reopenedTicket, reopenedTicket.getAssignedAgent(), previousStatus);
         log.info("Ticket rouvert : {} (ID: {})", reopenedTicket.getSubject(), reopenedTicket.getId());
         
         return reopenedTicket;
@@ -249,16 +367,104 @@ public class SupportTicketService {
     }
     
     /**
-     * Auto-assignation d'agent disponible (version simplifiée pour POC)
+     * Enregistrer de nouveaux messages dans les statistiques du ticket (UPDATE atomique, O(1))
+     */
+    public void recordMessages(UUID ticketId, long userMessages, long systemMessages,
+                               LocalDateTime firstMessageAt, LocalDateTime lastMessageAt) {
+        ticketRepository.incrementMessageStats(ticketId, userMessages, systemMessages, firstMessageAt, lastMessageAt);
+    }
+    
+    /**
+     * Initialiser les statistiques de messages d'un ticket créé avant leur introduction
+     * Le comptage suit le verrou de ligne du ticket : toute insertion réserve d'abord son numéro de séquence
+     * sur cette ligne, un message est donc soit compté ici, soit ajouté ensuite aux compteurs initialisés.
+     * @return ticket relu avec ses statistiques
+     */
+    public SupportTicket initializeMessageStats(UUID ticketId) {
+        if (ticketRepository.lockMessageCount(ticketId) == null) {
+            log.info("Initialisation des statistiques de messages du ticket : {}", ticketId);
+            ChatMessageRepository.TicketMessageAggregate aggregate = messageRepository.aggregateByTicketId(ticketId);
+            ticketRepository.initializeMessageStats(ticketId, aggregate.getTotalMessages() - aggregate.getSystemMessages(),
+                    aggregate.getSystemMessages(), aggregate.getFirstMessageTime(), aggregate.getLastMessageTime());
+            ticketCache.invalidate(ticketId);
+        }
+        // L'entité éventuellement gérée par l'appelant ne voit pas la requête UPDATE
+        SupportTicket ticket = loadTicket(ticketId);
+        entityManager.refresh(ticket);
+        return ticket;
+    }
+    
+    /**
+     * Réserver count numéros de séquence de messages du ticket (UPDATE atomique, verrou de ligne jusqu'au commit)
+     * @return dernier numéro réservé, null si la numérotation du ticket n'est pas initialisée
+     */
+    public Long reserveSequences(UUID ticketId, int count) {
+        if (ticketRepository.incrementSequence(ticketId, count) == 0) {
+            return null;
+        }
+        return ticketRepository.findLastSequence(ticketId);
+    }
+    
+    /**
+     * Prendre en charge la numérotation d'un ticket antérieur aux numéros de séquence
+     * Une seule transaction obtient vrai ; les autres attendent son commit sur le verrou de ligne du ticket.
+     */
+    public boolean claimSequenceInitialization(UUID ticketId) {
+        return ticketRepository.initializeSequence(ticketId, 0) == 1;
+    }
+    
+    public void updateLastSequence(UUID ticketId, long lastSequence) {
+        ticketCache.invalidate(ticketId);
+        ticketRepository.updateLastSequence(ticketId, lastSequence);
+    }
+    
+    /**
+     * Identifiants des tickets fermés depuis avant la date limite dont les messages restent à archiver
+     */
+    @Transactional(readOnly = true)
+    public List<UUID> findArchivableTicketIds(LocalDateTime closedBefore, int limit) {
+        return ticketRepository.findArchivableTicketIds(TicketStatus.CLOSED, closedBefore, Limit.of(limit));
+    }
+    
+    /**
+     * Marquer les messages d'un ticket comme archivés (le ticket en cache est invalidé)
+     */
+    public void markArchived(UUID ticketId, LocalDateTime archivedAt) {
+        ticketCache.invalidate(ticketId);
+        ticketRepository.markArchived(ticketId, archivedAt);
+    }
+    
+    /**
+     * Changer le statut d'un ticket en tenant à jour sa date de fermeture
+     */
+    private void changeStatus(SupportTicket ticket, TicketStatus newStatus) {
+        if (newStatus == TicketStatus.CLOSED && ticket.getStatus() != TicketStatus.CLOSED) {
+            ticket.setClosedAt(LocalDateTime.now());
+        } else if (newStatus != TicketStatus.CLOSED) {
+            ticket.setClosedAt(null);
+        }
+        ticket.setStatus(newStatus);
+    }
+    
+    /**
+     * Mettre à jour la charge des agents après un changement d'agent ou de statut
+     */
+    private void trackAgentLoad(SupportTicket ticket, String previousAgent, TicketStatus previousStatus) {
+        agentRoutingService.ticketChanged(ticket.getId(), previousAgent, previousStatus,
+                                          ticket.getAssignedAgent(), ticket.getStatus());
+    }
+    
+    /**
+     * Auto-assignation à l'agent le moins chargé (ou suivant du tourniquet pondéré), sans requête en base
+     * Sans agent disponible, le ticket reste non assigné.
      */
     private void assignAvailableAgent(SupportTicket ticket) {
         log.debug("Tentative d'auto-assignation d'agent pour le ticket : {}", ticket.getSubject());
         
-        // Pour le POC, assignation statique à l'agent de démonstration
-        // Dans une version complète, cette logique ferait appel au user-service
-        String defaultAgent = "Marie Agent";
-        ticket.setAssignedAgent(defaultAgent);
-        log.info("Ticket auto-assigné à l'agent par défaut : {}", defaultAgent);
+        agentRoutingService.assignAgent().ifPresentOrElse(agent -> {
+            ticket.setAssignedAgent(agent);
+            log.info("Ticket auto-assigné à l'agent : {}", agent);
+        }, () -> log.warn("Aucun agent disponible, ticket laissé non assigné : {}", ticket.getSubject()));
     }
     
     /**
@@ -327,4 +533,20 @@ public class SupportTicketService {
         
         log.debug("Transition de statut validée : {} -> {}", currentStatus, newStatus);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Indexer le sujet et la description du ticket pour la recherche, une fois la transaction validée
+     */
+    private void indexAfterCommit(SupportTicket ticket) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            searchIndex.indexTicket(ticket);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                searchIndex.indexTicket(ticket);
+            }
+        });
+    }
+}
@@ -7,6 +7,8 @@ import com.cpierres.p13.poc.backend.service.mock.MockUserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -49,4 +51,11 @@ public class SupportUserService {
     public MockUserInfo getChatUserInfo(UUID userId) {
         return mockUserService.getUserProfile(userId);
     }
+
+    /**
+     * Obtenir les informations de plusieurs utilisateurs du chat en une seule résolution
+     */
+    public Map<UUID, MockUserInfo> getChatUsersInfo(Collection<UUID> userIds) {
+        return mockUserService.getUserProfiles(userIds);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache borné (taille + TTL) des tickets pour le chemin chaud du chat
+ * Stocke des copies détachées : les appelants reçoivent toujours leur propre copie.
+ * Toute modification de ticket invalide l'entrée immédiatement puis à nouveau après commit.
+ */
+@Component
+public class TicketCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    /** Ordre d'accès + éviction automatique du ticket le moins récemment utilisé */
+    private final Map<UUID, CachedTicket> tickets;
+
+    /** Incrémenté à chaque invalidation : un chargement concurrent d'une invalidation n'est pas mis en cache */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public TicketCache(@Value("${chat.cache.tickets.enabled:true}") boolean enabled,
+                       @Value("${chat.cache.tickets.max-size:10000}") int maxSize,
+                       @Value("${chat.cache.tickets.ttl-seconds:60}") long ttlSeconds,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.tickets = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedTicket> eldest) {
+                return size() > TicketCache.this.maxSize;
+            }
+        };
+        this.hits = Counter.builder("chat.cache.tickets").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.cache.tickets").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("chat.cache.tickets.size", this, cache -> cache.size());
+    }
+
+    /**
+     * Lire un ticket depuis le cache, ou le charger et le mettre en cache
+     */
+    public SupportTicket get(UUID id, Function<UUID, SupportTicket> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        CachedTicket cached;
+        synchronized (tickets) {
+            cached = tickets.get(id);
+        }
+        if (cached != null && System.nanoTime() - cached.loadedAt() < ttlNanos) {
+            hits.increment();
+            return copy(cached.ticket());
+        }
+
+        misses.increment();
+        long generation = invalidations.get();
+        SupportTicket loaded = loader.apply(id);
+        SupportTicket snapshot = copy(loaded);
+        synchronized (tickets) {
+            if (generation == invalidations.get()) {
+                tickets.put(id, new CachedTicket(snapshot, System.nanoTime()));
+            }
+        }
+        return copy(snapshot);
+    }
+
+    /**
+     * Invalider un ticket modifié, maintenant et après validation de la transaction en cours
+     */
+    public void invalidate(UUID id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        synchronized (tickets) {
+            return tickets.size();
+        }
+    }
+
+    private void evict(UUID id) {
+        synchronized (tickets) {
+            invalidations.incrementAndGet();
+            tickets.remove(id);
+        }
+    }
+
+    private static SupportTicket copy(SupportTicket ticket) {
+        return new SupportTicket(ticket.getId(), ticket.getUserId(), ticket.getSubject(), ticket.getDescription(),
+                ticket.getStatus(), ticket.getAssignedAgent(), ticket.getCreatedAt(), ticket.getUpdatedAt(),
+                ticket.getClosedAt(), ticket.getArchivedAt(),
+                ticket.getMessageCount(), ticket.getUserMessageCount(), ticket.getSystemMessageCount(),
+                ticket.getFirstMessageAt(), ticket.getLastMessageAt(), ticket.getLastSequence());
+    }
+
+    private record CachedTicket(SupportTicket ticket, long loadedAt) {
+    }
+}
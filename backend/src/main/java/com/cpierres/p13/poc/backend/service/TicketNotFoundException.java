@@ -0,0 +1,14 @@
+package com.cpierres.p13.poc.backend.service;
+
+import java.util.UUID;
+
+/**
+ * Ticket inexistant ; sous-type d'IllegalArgumentException pour que les appelants existants la traitent
+ * comme une donnée invalide, les endpoints de lecture pouvant la distinguer (404)
+ */
+public class TicketNotFoundException extends IllegalArgumentException {
+
+    public TicketNotFoundException(UUID ticketId) {
+        super("Ticket non trouvé avec l'ID : " + ticketId);
+    }
+}
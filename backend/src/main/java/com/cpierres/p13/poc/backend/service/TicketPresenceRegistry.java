@@ -0,0 +1,183 @@
+package com.cpierres.p13.poc.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre de présence des utilisateurs par ticket, alimenté par les événements de session STOMP
+ * Une présence correspond à un abonnement à /topic/messages/{ticketId} ; l'utilisateur est identifié
+ * par l'en-tête natif "userId" du CONNECT (ou à défaut du SUBSCRIBE).
+ * Seul le CONNECT crée l'entrée d'une session : un SUBSCRIBE traité après le DISCONNECT est ignoré.
+ * Structures ConcurrentHashMap uniquement (verrouillage par segment) : pas de verrou global.
+ */
+@Component
+@Slf4j
+public class TicketPresenceRegistry {
+
+    public static final String USER_ID_HEADER = "userId";
+    private static final String MESSAGES_TOPIC_PREFIX = "/topic/messages/";
+
+    /** Sessions STOMP ouvertes : utilisateur et abonnements de présence */
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    /** ticket -> (utilisateur -> nombre d'abonnements actifs) */
+    private final Map<UUID, Map<UUID, Integer>> usersByTicket = new ConcurrentHashMap<>();
+    /** utilisateur -> (ticket -> nombre d'abonnements actifs) */
+    private final Map<UUID, Map<UUID, Integer>> ticketsByUser = new ConcurrentHashMap<>();
+
+    public TicketPresenceRegistry(MeterRegistry meterRegistry) {
+        meterRegistry.gaugeMapSize("chat.presence.sessions", Tags.empty(), sessions);
+        meterRegistry.gaugeMapSize("chat.presence.tickets", Tags.empty(), usersByTicket);
+    }
+
+    /**
+     * Utilisateurs connectés à un ticket (vue non modifiable, obtenue en temps constant)
+     */
+    public Set<UUID> getOnlineUsers(UUID ticketId) {
+        Map<UUID, Integer> users = usersByTicket.get(ticketId);
+        return users == null ? Set.of() : Collections.unmodifiableSet(users.keySet());
+    }
+
+    /**
+     * Tickets actuellement consultés par un utilisateur (vue non modifiable, obtenue en temps constant)
+     */
+    public Set<UUID> getViewedTickets(UUID userId) {
+        Map<UUID, Integer> tickets = ticketsByUser.get(userId);
+        return tickets == null ? Set.of() : Collections.unmodifiableSet(tickets.keySet());
+    }
+
+    public boolean isOnline(UUID ticketId, UUID userId) {
+        Map<UUID, Integer> users = usersByTicket.get(ticketId);
+        return users != null && users.containsKey(userId);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        sessions.put(accessor.getSessionId(), new SessionPresence(parseUuid(accessor.getFirstNativeHeader(USER_ID_HEADER))));
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        UUID ticketId = parseTicketId(accessor.getDestination());
+        if (ticketId == null) {
+            return;
+        }
+        // Enregistrement dans le compute de la session : atomique vis-à-vis de son retrait au DISCONNECT
+        SessionPresence open = sessions.computeIfPresent(accessor.getSessionId(), (id, session) -> {
+            UUID userId = session.userId != null ? session.userId : parseUuid(accessor.getFirstNativeHeader(USER_ID_HEADER));
+            if (userId == null) {
+                log.debug("Abonnement au ticket {} sans identifiant utilisateur (session: {})", ticketId, id);
+            } else if (session.subscriptions.putIfAbsent(accessor.getSubscriptionId(), new Presence(ticketId, userId)) == null) {
+                increment(usersByTicket, ticketId, userId);
+                increment(ticketsByUser, userId, ticketId);
+            }
+            return session;
+        });
+        if (open == null) {
+            log.debug("Abonnement au ticket {} ignoré : session {} fermée", ticketId, accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        SessionPresence session = sessions.get(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Presence presence = session.subscriptions.remove(accessor.getSubscriptionId());
+        if (presence != null) {
+            release(presence);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionPresence session = sessions.remove(event.getSessionId());
+        if (session != null) {
+            // Retrait un par un : un UNSUBSCRIBE concurrent ne libère pas la même présence une seconde fois
+            for (String subscriptionId : session.subscriptions.keySet()) {
+                Presence presence = session.subscriptions.remove(subscriptionId);
+                if (presence != null) {
+                    release(presence);
+                }
+            }
+        }
+    }
+
+    private void release(Presence presence) {
+        decrement(usersByTicket, presence.ticketId(), presence.userId());
+        decrement(ticketsByUser, presence.userId(), presence.ticketId());
+    }
+
+    /**
+     * Incrément atomique : la modification de la map interne a lieu dans le compute de l'entrée externe
+     */
+    private static void increment(Map<UUID, Map<UUID, Integer>> index, UUID key, UUID member) {
+        index.compute(key, (k, members) -> {
+            Map<UUID, Integer> result = members != null ? members : new ConcurrentHashMap<>();
+            result.merge(member, 1, Integer::sum);
+            return result;
+        });
+    }
+
+    /**
+     * Décrément atomique ; les entrées vides sont retirées pour que les vues restent exactes
+     */
+    private static void decrement(Map<UUID, Map<UUID, Integer>> index, UUID key, UUID member) {
+        index.computeIfPresent(key, (k, members) -> {
+            members.computeIfPresent(member, (m, count) -> count > 1 ? count - 1 : null);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private static UUID parseTicketId(String destination) {
+        if (destination == null || !destination.startsWith(MESSAGES_TOPIC_PREFIX)) {
+            return null;
+        }
+        return parseUuid(destination.substring(MESSAGES_TOPIC_PREFIX.length()));
+    }
+
+    private static UUID parseUuid(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record Presence(UUID ticketId, UUID userId) {
+    }
+
+    private static final class SessionPresence {
+        private final UUID userId;
+        /** subscriptionId -> présence */
+        private final Map<String, Presence> subscriptions = new ConcurrentHashMap<>();
+
+        SessionPresence(UUID userId) {
+            this.userId = userId;
+        }
+    }
+}
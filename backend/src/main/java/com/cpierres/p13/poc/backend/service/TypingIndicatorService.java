@@ -0,0 +1,160 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.dto.TypingEvent;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Présence de saisie par (ticket, utilisateur), entièrement en mémoire
+ * Les frappes ne font que mettre à jour l'état ; au plus un événement "début/fin de saisie"
+ * est diffusé par utilisateur et par intervalle, la fin étant déduite après expiration du TTL.
+ */
+@Service
+@Slf4j
+public class TypingIndicatorService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDirectory userDirectory;
+    private final long intervalMs;
+    private final long ttlMs;
+
+    private final Map<TypingKey, TypingState> states = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate,
+                                  UserDirectory userDirectory,
+                                  @Value("${chat.typing.interval-ms:1000}") long intervalMs,
+                                  @Value("${chat.typing.ttl-ms:3000}") long ttlMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.userDirectory = userDirectory;
+        this.intervalMs = intervalMs;
+        this.ttlMs = ttlMs;
+    }
+
+    @PostConstruct
+    void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-indicator-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(50, intervalMs / 4);
+        sweeper.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Enregistrer une frappe de l'utilisateur
+     */
+    public void onTyping(UUID ticketId, UUID userId) {
+        TypingKey key = new TypingKey(ticketId, userId);
+        long now = System.currentTimeMillis();
+        while (true) {
+            TypingState state = states.computeIfAbsent(key, k -> new TypingState());
+            Boolean event;
+            synchronized (state) {
+                if (state.removed) {
+                    continue; // Retiré par le balayage entre-temps : recréer l'état
+                }
+                state.lastKeystroke = now;
+                state.typing = true;
+                event = state.reconcile(now, intervalMs);
+            }
+            publish(key, event);
+            return;
+        }
+    }
+
+    /**
+     * L'utilisateur a explicitement arrêté d'écrire (ou a envoyé son message)
+     */
+    public void onStoppedTyping(UUID ticketId, UUID userId) {
+        TypingKey key = new TypingKey(ticketId, userId);
+        TypingState state = states.get(key);
+        if (state == null) {
+            return;
+        }
+        Boolean event;
+        synchronized (state) {
+            state.typing = false;
+            event = state.reconcile(System.currentTimeMillis(), intervalMs);
+        }
+        publish(key, event);
+    }
+
+    /**
+     * Expirer les saisies inactives et diffuser les changements d'état retenus par l'intervalle
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        states.forEach((key, state) -> {
+            Boolean event;
+            synchronized (state) {
+                if (state.typing && now - state.lastKeystroke >= ttlMs) {
+                    state.typing = false;
+                }
+                event = state.reconcile(now, intervalMs);
+                if (!state.typing && !state.announced) {
+                    state.removed = true;
+                    states.remove(key, state);
+                }
+            }
+            publish(key, event);
+        });
+    }
+
+    private void publish(TypingKey key, Boolean typing) {
+        if (typing == null) {
+            return;
+        }
+        try {
+            String firstName = userDirectory.findById(key.userId()).map(MockUserInfo::getFirstName).orElse(null);
+            messagingTemplate.convertAndSend("/topic/typing/" + key.ticketId(),
+                    new TypingEvent(key.ticketId(), key.userId(), firstName, typing));
+        } catch (Exception e) {
+            log.warn("Erreur lors de la diffusion de l'indicateur de saisie : {}", e.getMessage());
+        }
+    }
+
+    private record TypingKey(UUID ticketId, UUID userId) {
+    }
+
+    private static final class TypingState {
+        private long lastKeystroke;
+        /** État souhaité (l'utilisateur écrit) */
+        private boolean typing;
+        /** Dernier état diffusé aux abonnés */
+        private boolean announced;
+        private long lastEventAt;
+        private boolean removed;
+
+        /**
+         * Renvoie l'état à diffuser si l'état souhaité diffère du dernier diffusé et que l'intervalle est écoulé
+         */
+        Boolean reconcile(long now, long intervalMs) {
+            if (typing == announced || now - lastEventAt < intervalMs) {
+                return null;
+            }
+            announced = typing;
+            lastEventAt = now;
+            return typing;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.cpierres.p13.poc.backend.service.broker;
+
+import com.cpierres.p13.poc.backend.service.RecentMessageCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais multi-nœuds des diffusions STOMP (mode chat.broker.mode=redis-relay)
+ * Chaque message envoyé au broker local vers un topic relayé est d'abord délivré aux abonnés locaux,
+ * puis publié sur le transport par un thread dédié ; les autres nœuds le réinjectent dans leur broker local.
+ * Un nœud ignore ses propres publications et déduplique les enveloppes déjà reçues.
+ * Les messages adressés à un utilisateur (/user/{id}/...) sont relayés avant résolution : chaque nœud les
+ * délivre aux sessions de l'utilisateur qu'il détient. Les réponses à une session (@SendToUser sans diffusion)
+ * restent locales, la session demandeuse étant connectée à ce nœud.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "redis-relay")
+@Slf4j
+public class BrokerRelay implements ChannelInterceptor {
+
+    /** En-tête posé sur les messages réinjectés pour ne pas les republier */
+    static final String RELAYED_HEADER = "chatRelayedFrom";
+    static final List<String> RELAYED_PREFIXES = List.of("/topic/messages/", "/topic/typing/", "/topic/users/");
+    private static final String MESSAGES_PREFIX = "/topic/messages/";
+    private static final String USER_PREFIX = "/user/";
+    private static final int DEDUPE_WINDOW = 10_000;
+
+    private final BrokerRelayTransport transport;
+    private final MessageChannel brokerChannel;
+    private final RecentMessageCache recentMessageCache;
+    private final int publishQueueCapacity;
+    private ExecutorService publisher;
+
+    private final UUID nodeId = UUID.randomUUID();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<EnvelopeId, Boolean> recentlyReceived = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<EnvelopeId, Boolean> eldest) {
+            return size() > DEDUPE_WINDOW;
+        }
+    };
+
+    public BrokerRelay(BrokerRelayTransport transport,
+                       @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                       RecentMessageCache recentMessageCache,
+                       @Value("${chat.broker.publish-queue-capacity:10000}") int publishQueueCapacity) {
+        this.transport = transport;
+        this.brokerChannel = brokerChannel;
+        this.recentMessageCache = recentMessageCache;
+        this.publishQueueCapacity = publishQueueCapacity;
+    }
+
+    @PostConstruct
+    void start() {
+        // Un seul thread : les publications du nœud restent dans l'ordre des livraisons locales
+        publisher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(publishQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "stomp-relay-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.subscribe(this::onEnvelope);
+        log.info("Relais STOMP multi-nœuds actif (nœud {})", nodeId);
+    }
+
+    @PreDestroy
+    void stop() {
+        publisher.shutdown();
+    }
+
+    public UUID getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Après une livraison locale réussie, publier le message vers les autres nœuds (hors du thread appelant)
+     */
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || ex != null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || accessor.getHeader(RELAYED_HEADER) != null
+                || destination == null || !isRelayed(destination, accessor.getSessionId())
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return;
+        }
+        // Encodage sur le thread appelant : les numéros d'enveloppe suivent l'ordre des livraisons
+        byte[] envelope = encode(destination, accessor.getContentType(), payload);
+        try {
+            publisher.execute(() -> publish(destination, envelope));
+        } catch (RejectedExecutionException e) {
+            log.warn("File de publication vers les autres nœuds pleine, message non relayé ({})", destination);
+            notRelayed(destination);
+        }
+    }
+
+    private void publish(String destination, byte[] envelope) {
+        try {
+            transport.publish(envelope);
+        } catch (Exception e) {
+            log.error("Erreur lors de la publication vers les autres nœuds ({}) : {}", destination, e.getMessage());
+            notRelayed(destination);
+        }
+    }
+
+    /**
+     * Message non relayé : les autres nœuds n'invalident pas leur tampon du ticket (le trou de numérotation
+     * y est détecté à la lecture) ; le tampon local est retiré pour que l'historique soit relu en base
+     */
+    private void notRelayed(String destination) {
+        if (destination.startsWith(MESSAGES_PREFIX)) {
+            invalidateRecentMessages(destination.substring(MESSAGES_PREFIX.length()));
+        }
+    }
+
+    private void onEnvelope(byte[] envelope) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(envelope))) {
+            UUID sourceNode = new UUID(in.readLong(), in.readLong());
+            long envelopeSequence = in.readLong();
+            if (nodeId.equals(sourceNode) || !markReceived(new EnvelopeId(sourceNode, envelopeSequence))) {
+                return; // Déjà délivré localement, ou doublon
+            }
+            String destination = in.readUTF();
+            String contentType = in.readUTF();
+            byte[] payload = in.readNBytes(in.readInt());
+
+            // Un message écrit sur un autre nœud n'est pas dans le cache local : le tampon du ticket n'est plus contigu
+            if (destination.startsWith(MESSAGES_PREFIX)) {
+                invalidateRecentMessages(destination.substring(MESSAGES_PREFIX.length()));
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            if (!contentType.isEmpty()) {
+                accessor.setContentType(MimeType.valueOf(contentType));
+            }
+            accessor.setHeader(RELAYED_HEADER, sourceNode.toString());
+            accessor.setLeaveMutable(true);
+            brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Enveloppe de relais STOMP illisible : {}", e.getMessage());
+        }
+    }
+
+    private void invalidateRecentMessages(String ticketId) {
+        try {
+            recentMessageCache.invalidate(UUID.fromString(ticketId));
+        } catch (IllegalArgumentException e) {
+            log.debug("Destination de ticket non reconnue : {}", ticketId);
+        }
+    }
+
+    private boolean markReceived(EnvelopeId id) {
+        synchronized (recentlyReceived) {
+            return recentlyReceived.put(id, Boolean.TRUE) == null;
+        }
+    }
+
+    private byte[] encode(String destination, MimeType contentType, byte[] payload) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(nodeId.getMostSignificantBits());
+            out.writeLong(nodeId.getLeastSignificantBits());
+            out.writeLong(sequence.incrementAndGet());
+            out.writeUTF(destination);
+            out.writeUTF(contentType != null ? contentType.toString() : "");
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isRelayed(String destination, String sessionId) {
+        if (destination.startsWith(USER_PREFIX)) {
+            return sessionId == null;
+        }
+        for (String prefix : RELAYED_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record EnvelopeId(UUID node, long sequence) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.cpierres.p13.poc.backend.service.broker;
+
+import java.util.function.Consumer;
+
+/**
+ * Canal pub/sub partagé entre les nœuds backend pour relayer les diffusions STOMP
+ */
+public interface BrokerRelayTransport {
+
+    /**
+     * Publier une enveloppe vers tous les nœuds (y compris l'émetteur)
+     */
+    void publish(byte[] envelope);
+
+    /**
+     * Enregistrer le récepteur des enveloppes publiées par l'ensemble des nœuds
+     */
+    void subscribe(Consumer<byte[]> listener);
+}
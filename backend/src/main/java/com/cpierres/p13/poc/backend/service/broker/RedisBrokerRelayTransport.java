@@ -0,0 +1,52 @@
+package com.cpierres.p13.poc.backend.service.broker;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Transport du relais STOMP sur Redis pub/sub
+ */
+@Component
+@ConditionalOnExpression("'${chat.broker.mode:simple}' == 'redis-relay' && '${chat.broker.transport:redis}' == 'redis'")
+public class RedisBrokerRelayTransport implements BrokerRelayTransport {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final byte[] channel;
+
+    public RedisBrokerRelayTransport(RedisConnectionFactory connectionFactory,
+                                     @Value("${chat.broker.redis-channel:chat:stomp-relay}") String channel) {
+        this.connectionFactory = connectionFactory;
+        this.channel = channel.getBytes(StandardCharsets.UTF_8);
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.afterPropertiesSet();
+        this.listenerContainer.start();
+    }
+
+    @PreDestroy
+    void stop() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Override
+    public void publish(byte[] envelope) {
+        try (var connection = connectionFactory.getConnection()) {
+            connection.publish(channel, envelope);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> listener.accept(message.getBody()),
+                new ChannelTopic(new String(channel, StandardCharsets.UTF_8)));
+    }
+}
@@ -1,19 +1,22 @@
 package com.cpierres.p13.poc.backend.service.mock;
 
 import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 @Slf4j
 public class MockUserService {
 
-    private final MockAuthService mockAuthService;
+    private final UserDirectory userDirectory;
 
-    public MockUserService(MockAuthService mockAuthService) {
-        this.mockAuthService = mockAuthService;
+    public MockUserService(UserDirectory userDirectory) {
+        this.userDirectory = userDirectory;
     }
 
     /**
@@ -21,17 +24,10 @@ public class MockUserService {
      */
     public MockUserInfo getUserProfile(UUID userId) {
         // Dans un vrai contexte : appel REST vers user-service
-        // Pour le POC : simulation locale
+        // Pour le POC : annuaire local indexé, alimenté par le client user-service
 
-        MockUserInfo user = mockAuthService.getAllMockUsers().values()
-                .stream()
-                .filter(u -> u.getId().equals(userId))
-                .findFirst()
-                .orElse(null);
-
-        if (user == null) {
-            throw new IllegalArgumentException("Utilisateur non trouvé : " + userId);
-        }
+        MockUserInfo user = userDirectory.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé : " + userId));
 
         log.debug("Profil utilisateur récupéré : {} {}", user.getFirstName(), user.getLastName());
         return user;
@@ -41,16 +37,14 @@ public class MockUserService {
      * Simule l'appel vers le User Service par email
      */
     public MockUserInfo getUserByEmail(String email) {
-        MockUserInfo user = mockAuthService.getAllMockUsers().values()
-                .stream()
-                .filter(u -> u.getEmail().equals(email))
-                .findFirst()
-                .orElse(null);
-
-        if (user == null) {
-            throw new IllegalArgumentException("Utilisateur non trouvé par email : " + email);
-        }
+        return userDirectory.findByEmail(email)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé par email : " + email));
+    }
 
-        return user;
+    /**
+     * Récupérer plusieurs profils en un seul appel (utilisateurs inconnus ignorés)
+     */
+    public Map<UUID, MockUserInfo> getUserProfiles(Collection<UUID> userIds) {
+        return userDirectory.findAllByIds(userIds);
     }
 }
@@ -0,0 +1,36 @@
+package com.cpierres.p13.poc.backend.service.mock;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.service.user.UserServiceClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Simulation du user-service à partir des utilisateurs de démonstration (source par défaut)
+ */
+@Component
+@ConditionalOnProperty(name = "chat.users.source", havingValue = "mock", matchIfMissing = true)
+public class MockUserServiceClient implements UserServiceClient {
+
+    private final MockAuthService mockAuthService;
+
+    public MockUserServiceClient(MockAuthService mockAuthService) {
+        this.mockAuthService = mockAuthService;
+    }
+
+    @Override
+    public List<MockUserInfo> fetchAllUsers() {
+        return List.copyOf(mockAuthService.getAllMockUsers().values());
+    }
+
+    @Override
+    public Optional<MockUserInfo> fetchUser(UUID userId) {
+        return mockAuthService.getAllMockUsers().values().stream()
+                .filter(u -> u.getId().equals(userId))
+                .findFirst();
+    }
+}
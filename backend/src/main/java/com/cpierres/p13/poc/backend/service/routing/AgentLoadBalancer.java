@@ -0,0 +1,286 @@
+package com.cpierres.p13.poc.backend.service.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Charge des agents en mémoire et choix de l'agent d'un nouveau ticket en O(log agents)
+ * Chaque agent occupe une place dans une file triée (ConcurrentSkipListSet) : agents connectés d'abord,
+ * puis par rang croissant, selon la stratégie :
+ * - LEAST_LOAD : charge (tickets actifs, messages non lus) rapportée au poids de l'agent ;
+ * - WEIGHTED_ROUND_ROBIN : tourniquet pondéré par pas (chaque attribution avance l'agent de STRIDE / poids).
+ * À égalité, l'agent servi le moins récemment passe en premier.
+ * Les compteurs d'un agent ne sont modifiés que sous son verrou, avec le retrait et la réinsertion de sa place ;
+ * l'attribution retire atomiquement la première place (pollFirst) : deux attributions simultanées
+ * choisissent deux agents différents.
+ */
+public class AgentLoadBalancer {
+
+    public enum Strategy {
+        LEAST_LOAD,
+        WEIGHTED_ROUND_ROBIN
+    }
+
+    /** Coût d'un ticket actif, exprimé en messages non lus */
+    static final long TICKET_COST = 10;
+    /** Pas du tourniquet et facteur d'échelle de la charge pour un agent de poids 1 */
+    static final long STRIDE = 1_000_000;
+
+    private final Strategy strategy;
+    private final Map<UUID, Agent> agents = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Slot> queue = new ConcurrentSkipListSet<>();
+    private final AtomicLong assignments = new AtomicLong();
+    /** Tourniquet : position du dernier agent servi, point de départ des agents qui (re)joignent la file */
+    private volatile long virtualTime;
+
+    public AgentLoadBalancer(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Ajouter un agent ou mettre à jour son poids (sans effet sur ses compteurs)
+     */
+    public void register(UUID agentId, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Le poids d'un agent doit être positif");
+        }
+        Agent agent = agents.computeIfAbsent(agentId, Agent::new);
+        synchronized (agent) {
+            if (!agent.queued) {
+                agent.queued = true;
+                agent.weight = weight;
+                agent.pass = Math.max(agent.pass, virtualTime);
+                agent.slot = slot(agent);
+                queue.add(agent.slot);
+                return;
+            }
+        }
+        update(agentId, a -> a.weight = weight);
+    }
+
+    /**
+     * Retirer un agent (il ne reçoit plus de tickets)
+     */
+    public void unregister(UUID agentId) {
+        Agent agent = agents.remove(agentId);
+        if (agent == null) {
+            return;
+        }
+        synchronized (agent) {
+            agent.removed = true;
+            if (agent.slot != null) {
+                queue.remove(agent.slot);
+            }
+        }
+    }
+
+    /**
+     * Choisir l'agent d'un nouveau ticket et lui compter ce ticket
+     * @param allowOffline attribuer à un agent déconnecté si aucun agent n'est connecté
+     * @return agent choisi, vide si aucun agent n'est disponible
+     */
+    public Optional<UUID> assign(boolean allowOffline) {
+        while (true) {
+            Slot first = queue.pollFirst();
+            if (first == null) {
+                return Optional.empty();
+            }
+            Agent agent = first.agent();
+            synchronized (agent) {
+                if (agent.removed) {
+                    continue;
+                }
+                boolean eligible = agent.sessions > 0 || allowOffline;
+                if (eligible) {
+                    agent.activeTickets++;
+                    agent.lastAssigned = assignments.incrementAndGet();
+                    virtualTime = Math.max(virtualTime, agent.pass);
+                    agent.pass += STRIDE / agent.weight;
+                }
+                // Place remise en file ; la place calculée entre-temps par update (compteurs modifiés) est remplacée
+                agent.slot = slot(agent);
+                queue.add(agent.slot);
+                return eligible ? Optional.of(agent.id) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Compter un ticket actif supplémentaire (assignation manuelle, réouverture)
+     */
+    public void ticketAssigned(UUID agentId) {
+        update(agentId, agent -> agent.activeTickets++);
+    }
+
+    /**
+     * Décompter un ticket qui n'est plus actif pour l'agent (résolu, fermé, réassigné) et oublier ses messages non lus
+     */
+    public void ticketReleased(UUID agentId, UUID ticketId) {
+        update(agentId, agent -> {
+            agent.activeTickets = Math.max(0, agent.activeTickets - 1);
+            if (ticketId != null) {
+                agent.clearUnread(ticketId);
+            }
+        });
+    }
+
+    /**
+     * Nouveau message d'un autre participant dans un ticket de l'agent
+     */
+    public void messageReceived(UUID agentId, UUID ticketId) {
+        update(agentId, agent -> {
+            agent.unreadByTicket.merge(ticketId, 1, Integer::sum);
+            agent.unread++;
+        });
+    }
+
+    /**
+     * L'agent a répondu dans le ticket : ses messages sont considérés comme lus
+     */
+    public void messagesRead(UUID agentId, UUID ticketId) {
+        Agent agent = agents.get(agentId);
+        if (agent == null) {
+            return;
+        }
+        synchronized (agent) {
+            if (!agent.unreadByTicket.containsKey(ticketId)) {
+                return;
+            }
+        }
+        update(agentId, a -> a.clearUnread(ticketId));
+    }
+
+    public void sessionOpened(UUID agentId) {
+        update(agentId, agent -> {
+            if (agent.sessions++ == 0) {
+                // Retour dans la file du tourniquet sans rattrapage des tours manqués
+                agent.pass = Math.max(agent.pass, virtualTime);
+            }
+        });
+    }
+
+    public void sessionClosed(UUID agentId) {
+        update(agentId, agent -> agent.sessions = Math.max(0, agent.sessions - 1));
+    }
+
+    /**
+     * Recaler le nombre de tickets actifs d'un agent sur la base (réconciliation périodique)
+     */
+    public void resetActiveTickets(UUID agentId, int activeTickets) {
+        update(agentId, agent -> agent.activeTickets = activeTickets);
+    }
+
+    public Optional<AgentLoad> getLoad(UUID agentId) {
+        Agent agent = agents.get(agentId);
+        if (agent == null) {
+            return Optional.empty();
+        }
+        synchronized (agent) {
+            return Optional.of(new AgentLoad(agent.id, agent.activeTickets, agent.unread, agent.sessions > 0, agent.weight));
+        }
+    }
+
+    public Set<UUID> getAgentIds() {
+        return Set.copyOf(agents.keySet());
+    }
+
+    public int getAgentCount() {
+        return agents.size();
+    }
+
+    public long getOnlineCount() {
+        return agents.values().stream().filter(agent -> agent.sessions > 0).count();
+    }
+
+    /**
+     * Modifier les compteurs d'un agent et replacer l'agent dans la file
+     * Place absente (retirée par une attribution en cours) : l'attribution la réinsère avec les compteurs à jour.
+     */
+    private void update(UUID agentId, Consumer<Agent> change) {
+        Agent agent = agents.get(agentId);
+        if (agent == null) {
+            return;
+        }
+        synchronized (agent) {
+            if (agent.removed) {
+                return;
+            }
+            boolean queued = agent.slot != null && queue.remove(agent.slot);
+            change.accept(agent);
+            agent.slot = slot(agent);
+            if (queued) {
+                queue.add(agent.slot);
+            }
+        }
+    }
+
+    private Slot slot(Agent agent) {
+        long rank = strategy == Strategy.LEAST_LOAD
+                ? (agent.activeTickets * TICKET_COST + agent.unread) * STRIDE / agent.weight
+                : agent.pass;
+        return new Slot(agent.sessions == 0, rank, agent.lastAssigned, agent);
+    }
+
+    /**
+     * Charge courante d'un agent
+     */
+    public record AgentLoad(UUID agentId, int activeTickets, long unreadMessages, boolean online, int weight) {
+    }
+
+    /**
+     * Place d'un agent dans la file : connectés d'abord, puis rang, puis attribution la plus ancienne
+     */
+    private record Slot(boolean offline, long rank, long lastAssigned, Agent agent) implements Comparable<Slot> {
+        @Override
+        public int compareTo(Slot other) {
+            int result = Boolean.compare(offline, other.offline);
+            if (result == 0) {
+                result = Long.compare(rank, other.rank);
+            }
+            if (result == 0) {
+                result = Long.compare(lastAssigned, other.lastAssigned);
+            }
+            return result != 0 ? result : agent.id.compareTo(other.agent.id);
+        }
+    }
+
+    /**
+     * Compteurs d'un agent, modifiés sous son verrou uniquement
+     */
+    private static final class Agent {
+        private final UUID id;
+        private final Map<UUID, Integer> unreadByTicket = new HashMap<>();
+        private int weight = 1;
+        private int activeTickets;
+        private long unread;
+        private int sessions;
+        private long pass;
+        private long lastAssigned;
+        private Slot slot;
+        /** Agent entré dans la file (register) */
+        private boolean queued;
+        private boolean removed;
+
+        Agent(UUID id) {
+            this.id = id;
+        }
+
+        void clearUnread(UUID ticketId) {
+            Integer count = unreadByTicket.remove(ticketId);
+            if (count != null) {
+                unread -= count;
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.cpierres.p13.poc.backend.service.routing;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.repository.SupportTicketRepository;
+import com.cpierres.p13.poc.backend.service.TicketPresenceRegistry;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routage des nouveaux tickets vers les agents selon leur charge (voir AgentLoadBalancer)
+ * La charge est tenue en mémoire : tickets actifs (OPEN, IN_PROGRESS) suivis à chaque changement validé,
+ * messages non lus comptés à chaque message client, présence suivie par les sessions STOMP des agents.
+ * Aucune requête par décision ; une réconciliation périodique recharge la liste des agents depuis l'annuaire
+ * et recale les tickets actifs par une seule requête groupée.
+ */
+@Service
+@Slf4j
+public class AgentRoutingService {
+
+    public static final String AGENT_ROLE = "AGENT";
+    private static final Set<TicketStatus> ACTIVE_STATUSES = EnumSet.of(TicketStatus.OPEN, TicketStatus.IN_PROGRESS);
+
+    private final AgentLoadBalancer balancer;
+    private final UserDirectory userDirectory;
+    private final SupportTicketRepository ticketRepository;
+    private final Map<String, Integer> weights;
+    private final boolean offlineFallback;
+    private final long reconcileSeconds;
+    private final Counter assignments;
+    private final Counter unrouted;
+
+    /** Sessions STOMP ouvertes par des agents : sessionId -> agent */
+    private final Map<String, UUID> agentSessions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconciler;
+
+    public AgentRoutingService(UserDirectory userDirectory,
+                               SupportTicketRepository ticketRepository,
+                               @Value("${chat.routing.strategy:LEAST_LOAD}") AgentLoadBalancer.Strategy strategy,
+                               @Value("${chat.routing.weights:}") List<String> weights,
+                               @Value("${chat.routing.offline-fallback:true}") boolean offlineFallback,
+                               @Value("${chat.routing.reconcile-seconds:300}") long reconcileSeconds,
+                               MeterRegistry meterRegistry) {
+        this.balancer = new AgentLoadBalancer(strategy);
+        this.userDirectory = userDirectory;
+        this.ticketRepository = ticketRepository;
+        this.weights = parseWeights(weights);
+        this.offlineFallback = offlineFallback;
+        this.reconcileSeconds = reconcileSeconds;
+        this.assignments = Counter.builder("chat.routing.assignments")
+                .tag("strategy", strategy.name().toLowerCase())
+                .register(meterRegistry);
+        this.unrouted = Counter.builder("chat.routing.unrouted")
+                .description("Nouveaux tickets laissés sans agent (aucun agent disponible)")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.routing.agents", balancer, AgentLoadBalancer::getAgentCount);
+        meterRegistry.gauge("chat.routing.agents.online", balancer, AgentLoadBalancer::getOnlineCount);
+    }
+
+    @PostConstruct
+    void start() {
+        reconcile();
+        if (reconcileSeconds > 0) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "agent-routing-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(this::reconcile, reconcileSeconds, reconcileSeconds, TimeUnit.SECONDS);
+        }
+        log.info("Routage des tickets : stratégie {}, {} agents", balancer.getStrategy(), balancer.getAgentCount());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
+    /**
+     * Choisir l'agent d'un nouveau ticket (nom complet, tel que stocké dans SupportTicket.assignedAgent)
+     * Le ticket est compté immédiatement pour que les créations simultanées se répartissent ;
+     * il est décompté si la transaction de création est annulée.
+     * @return agent choisi, vide si aucun agent n'est disponible
+     */
+    public Optional<String> assignAgent() {
+        Optional<UUID> agentId = balancer.assign(offlineFallback);
+        if (agentId.isEmpty()) {
+            unrouted.increment();
+            return Optional.empty();
+        }
+        Optional<MockUserInfo> agent = userDirectory.findById(agentId.get());
+        if (agent.isEmpty()) {
+            // Agent retiré de l'annuaire depuis la dernière réconciliation
+            balancer.unregister(agentId.get());
+            return assignAgent();
+        }
+        assignments.increment();
+        onRollback(() -> balancer.ticketReleased(agentId.get(), null));
+        return Optional.of(agent.get().getFullName());
+    }
+
+    /**
+     * Prendre en compte un changement d'agent ou de statut d'un ticket, une fois la transaction validée
+     */
+    public void ticketChanged(UUID ticketId, String previousAgent, TicketStatus previousStatus,
+                              String agent, TicketStatus status) {
+        boolean wasActive = previousAgent != null && ACTIVE_STATUSES.contains(previousStatus);
+        boolean active = agent != null && ACTIVE_STATUSES.contains(status);
+        boolean sameAgent = previousAgent != null && previousAgent.equals(agent);
+        if (wasActive == active && (sameAgent || !active)) {
+            return;
+        }
+        afterCommit(() -> {
+            if (wasActive) {
+                agentId(previousAgent).ifPresent(agentId -> balancer.ticketReleased(agentId, ticketId));
+            }
+            if (active) {
+                agentId(agent).ifPresent(balancer::ticketAssigned);
+            }
+        });
+    }
+
+    /**
+     * Compter un message comme non lu pour l'agent du ticket, ou marquer le ticket comme lu si l'agent répond
+     */
+    public void recordMessage(SupportTicket ticket, ChatMessage message) {
+        if (ticket.getAssignedAgent() == null || message.getSenderId() == null) {
+            return;
+        }
+        agentId(ticket.getAssignedAgent()).ifPresent(agentId -> {
+            if (agentId.equals(message.getSenderId())) {
+                balancer.messagesRead(agentId, ticket.getId());
+            } else {
+                balancer.messageReceived(agentId, ticket.getId());
+            }
+        });
+    }
+
+    public Optional<AgentLoadBalancer.AgentLoad> getLoad(UUID agentId) {
+        return balancer.getLoad(agentId);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String userId = accessor.getFirstNativeHeader(TicketPresenceRegistry.USER_ID_HEADER);
+        if (userId == null) {
+            return;
+        }
+        try {
+            UUID agentId = UUID.fromString(userId);
+            if (balancer.getLoad(agentId).isPresent() && agentSessions.putIfAbsent(accessor.getSessionId(), agentId) == null) {
+                balancer.sessionOpened(agentId);
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Identifiant utilisateur invalide à la connexion : {}", userId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        UUID agentId = agentSessions.remove(event.getSessionId());
+        if (agentId != null) {
+            balancer.sessionClosed(agentId);
+        }
+    }
+
+    /**
+     * Recharger les agents depuis l'annuaire et recaler leurs tickets actifs sur la base
+     */
+    void reconcile() {
+        try {
+            List<MockUserInfo> agents = userDirectory.findByRole(AGENT_ROLE);
+            Set<UUID> agentIds = new HashSet<>();
+            for (MockUserInfo agent : agents) {
+                agentIds.add(agent.getId());
+                balancer.register(agent.getId(), weights.getOrDefault(agent.getEmail(), 1));
+            }
+            balancer.getAgentIds().stream().filter(id -> !agentIds.contains(id)).forEach(balancer::unregister);
+
+            Map<String, Long> activeTickets = new HashMap<>();
+            ticketRepository.countTicketsByAgent(ACTIVE_STATUSES)
+                    .forEach(count -> activeTickets.put(count.getAgent(), count.getTickets()));
+            for (MockUserInfo agent : agents) {
+                balancer.resetActiveTickets(agent.getId(), activeTickets.getOrDefault(agent.getFullName(), 0L).intValue());
+            }
+            log.debug("Charges des agents réconciliées : {} agents", agents.size());
+        } catch (Exception e) {
+            log.warn("Échec de la réconciliation des charges des agents : {}", e.getMessage());
+        }
+    }
+
+    private Optional<UUID> agentId(String agentName) {
+        return userDirectory.findByFullName(agentName).map(MockUserInfo::getId);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Poids des agents déclarés sous la forme "email=poids"
+     */
+    private static Map<String, Integer> parseWeights(List<String> entries) {
+        Map<String, Integer> result = new HashMap<>();
+        for (String entry : entries) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Poids d'agent invalide (email=poids attendu) : " + entry);
+            }
+            result.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return result;
+    }
+}
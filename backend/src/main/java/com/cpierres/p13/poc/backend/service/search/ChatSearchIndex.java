@@ -0,0 +1,29 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import com.cpierres.p13.poc.backend.dto.SearchHit;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+
+import java.util.List;
+
+/**
+ * Index plein texte des messages (contenu) et des tickets (sujet + description)
+ * Implémentations : PostgreSQL (chat.search.engine=postgres) ou index inversé en mémoire (memory, tests)
+ */
+public interface ChatSearchIndex {
+
+    /**
+     * Indexer un message enregistré (appelé après validation de la transaction)
+     */
+    void indexMessage(ChatMessage message);
+
+    /**
+     * Indexer ou réindexer un ticket créé ou modifié (appelé après validation de la transaction)
+     */
+    void indexTicket(SupportTicket ticket);
+
+    /**
+     * Résultats triés par pertinence décroissante puis date décroissante, au plus query.limit() à partir de query.offset()
+     */
+    List<SearchHit> search(SearchQuery query);
+}
@@ -0,0 +1,60 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import com.cpierres.p13.poc.backend.dto.SearchHit;
+import com.cpierres.p13.poc.backend.dto.SearchResultPage;
+import com.cpierres.p13.poc.backend.service.ListingSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Recherche plein texte dans les messages et les tickets, paginée et filtrable
+ */
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+public class ChatSearchService {
+
+    /** Longueur maximale du texte recherché */
+    public static final int MAX_QUERY_LENGTH = 200;
+
+    @Autowired
+    private ChatSearchIndex searchIndex;
+
+    @Autowired
+    private ListingSupport listingSupport;
+
+    /**
+     * Rechercher un texte libre (tous les termes requis), résultats par pertinence décroissante
+     */
+    public SearchResultPage search(String text, UUID ticketId, UUID senderId, LocalDateTime from, LocalDateTime to,
+                                   Integer page, Integer size) {
+        log.debug("Recherche \"{}\" (ticket: {}, expéditeur: {}, du {} au {}, page: {}, taille: {})",
+                text, ticketId, senderId, from, to, page, size);
+
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Le texte recherché est obligatoire");
+        }
+        if (text.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Le texte recherché ne peut pas dépasser " + MAX_QUERY_LENGTH + " caractères");
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("La date de début doit précéder la date de fin");
+        }
+
+        Pageable pageable = listingSupport.pageRequest(page, size);
+        // Un résultat supplémentaire indique l'existence d'une page suivante
+        List<SearchHit> hits = searchIndex.search(new SearchQuery(text.trim(), ticketId, senderId, from, to,
+                pageable.getOffset(), pageable.getPageSize() + 1));
+
+        boolean hasNext = hits.size() > pageable.getPageSize();
+        return new SearchResultPage(hasNext ? hits.subList(0, pageable.getPageSize()) : hits,
+                pageable.getPageNumber(), pageable.getPageSize(), hasNext);
+    }
+}
@@ -0,0 +1,177 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import com.cpierres.p13.poc.backend.dto.SearchHit;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.repository.SupportTicketRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index inversé en mémoire (chat.search.engine=memory), pour les tests et la base embarquée sans PostgreSQL
+ * Termes normalisés (minuscules, sans accents), sans racinisation ; tous les termes de la recherche
+ * doivent être présents. Pertinence : somme des tf x idf des termes.
+ * Les écritures sont sérialisées ; les lectures parcourent des maps concurrentes sans verrou.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.search.engine", havingValue = "memory")
+@Slf4j
+public class InMemoryChatSearchIndex implements ChatSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private final ChatMessageRepository messageRepository;
+    private final SupportTicketRepository ticketRepository;
+
+    /** Documents indexés, par clé (type + identifiant) */
+    private final Map<DocumentKey, Document> documents = new ConcurrentHashMap<>();
+    /** terme -> (document -> nombre d'occurrences) */
+    private final Map<String, Map<DocumentKey, Integer>> postings = new ConcurrentHashMap<>();
+
+    public InMemoryChatSearchIndex(ChatMessageRepository messageRepository, SupportTicketRepository ticketRepository) {
+        this.messageRepository = messageRepository;
+        this.ticketRepository = ticketRepository;
+    }
+
+    /**
+     * Indexer les données déjà présentes en base au démarrage
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        ticketRepository.findAll().forEach(this::indexTicket);
+        messageRepository.findAll().forEach(this::indexMessage);
+        log.info("Index de recherche en mémoire construit : {} documents, {} termes", documents.size(), postings.size());
+    }
+
+    @Override
+    public void indexMessage(ChatMessage message) {
+        index(new Document(new DocumentKey(SearchHit.Type.MESSAGE, message.getId()), message.getTicketId(),
+                message.getSenderId(), message.getContent(), message.getTimestamp(), termFrequencies(message.getContent())));
+    }
+
+    @Override
+    public void indexTicket(SupportTicket ticket) {
+        String text = (ticket.getSubject() != null ? ticket.getSubject() : "") + " "
+                + (ticket.getDescription() != null ? ticket.getDescription() : "");
+        index(new Document(new DocumentKey(SearchHit.Type.TICKET, ticket.getId()), ticket.getId(),
+                ticket.getUserId(), ticket.getSubject(), ticket.getCreatedAt(), termFrequencies(text)));
+    }
+
+    @Override
+    public List<SearchHit> search(SearchQuery query) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query.text()));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        // Parcours de la liste de postings la plus courte, les autres termes sont vérifiés par document
+        List<Map<DocumentKey, Integer>> termPostings = new ArrayList<>();
+        for (String term : terms) {
+            Map<DocumentKey, Integer> documentsWithTerm = postings.get(term);
+            if (documentsWithTerm == null) {
+                return List.of();
+            }
+            termPostings.add(documentsWithTerm);
+        }
+        termPostings.sort(Comparator.comparingInt(Map::size));
+
+        double documentCount = Math.max(1, documents.size());
+        List<SearchHit> hits = new ArrayList<>();
+        for (DocumentKey key : termPostings.get(0).keySet()) {
+            Document document = documents.get(key);
+            if (document == null || !matches(document, query)) {
+                continue;
+            }
+            double score = 0;
+            for (Map<DocumentKey, Integer> documentsWithTerm : termPostings) {
+                Integer frequency = documentsWithTerm.get(key);
+                if (frequency == null) {
+                    score = -1;
+                    break;
+                }
+                score += frequency * Math.log(1 + documentCount / documentsWithTerm.size());
+            }
+            if (score >= 0) {
+                hits.add(document.toHit(score));
+            }
+        }
+
+        return hits.stream()
+                .sorted(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                        .thenComparing(SearchHit::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder())))
+                .skip(query.offset())
+                .limit(query.limit())
+                .toList();
+    }
+
+    private synchronized void index(Document document) {
+        Document previous = documents.put(document.key(), document);
+        if (previous != null) {
+            previous.terms().keySet().forEach(term -> postings.computeIfPresent(term, (t, documentsWithTerm) -> {
+                documentsWithTerm.remove(document.key());
+                return documentsWithTerm.isEmpty() ? null : documentsWithTerm;
+            }));
+        }
+        document.terms().forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(document.key(), frequency));
+    }
+
+    private static boolean matches(Document document, SearchQuery query) {
+        return (query.ticketId() == null || query.ticketId().equals(document.ticketId()))
+                && (query.senderId() == null || query.senderId().equals(document.senderId()))
+                && (query.from() == null || (document.timestamp() != null && !document.timestamp().isBefore(query.from())))
+                && (query.to() == null || (document.timestamp() != null && document.timestamp().isBefore(query.to())));
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokenize(text).forEach(term -> frequencies.merge(term, 1, Integer::sum));
+        return frequencies;
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.length() > 1) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private record DocumentKey(SearchHit.Type type, UUID id) {
+    }
+
+    private record Document(DocumentKey key, UUID ticketId, UUID senderId, String text,
+                            LocalDateTime timestamp, Map<String, Integer> terms) {
+
+        SearchHit toHit(double score) {
+            UUID messageId = key.type() == SearchHit.Type.MESSAGE ? key.id() : null;
+            return new SearchHit(key.type(), ticketId, messageId, senderId, text, timestamp, score);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import com.cpierres.p13.poc.backend.dto.SearchHit;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Recherche plein texte PostgreSQL : index GIN sur to_tsvector(contenu), requêtes websearch_to_tsquery, tri ts_rank
+ * Les index portent sur des expressions : PostgreSQL les met à jour à chaque INSERT/UPDATE,
+ * indexMessage et indexTicket n'ont donc rien à faire.
+ * La configuration de langue est écrite en littéral dans les requêtes pour que le planificateur
+ * reconnaisse l'expression indexée (un paramètre lié l'en empêcherait).
+ */
+@Component
+@ConditionalOnProperty(name = "chat.search.engine", havingValue = "postgres", matchIfMissing = true)
+// Après la conversion éventuelle de chat_messages en table partitionnée (l'index porte sur la table finale)
+@DependsOn({"entityManagerFactory", "chatMessagePartitionManager"})
+@Slf4j
+public class PostgresChatSearchIndex implements ChatSearchIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String language;
+
+    public PostgresChatSearchIndex(JdbcTemplate jdbcTemplate,
+                                   @Value("${chat.search.language:french}") String language) {
+        if (!language.matches("[a-z_]+")) {
+            throw new IllegalArgumentException("Configuration de recherche invalide : " + language);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.language = language;
+    }
+
+    /**
+     * Créer les index plein texte s'ils manquent (le schéma est créé auparavant par Hibernate)
+     */
+    @PostConstruct
+    void createIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_chat_messages_content_fts ON chat_messages USING GIN (" + messageVector("") + ")");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_support_tickets_text_fts ON support_tickets USING GIN (" + ticketVector("") + ")");
+        log.info("Index plein texte PostgreSQL prêts (configuration : {})", language);
+    }
+
+    @Override
+    public void indexMessage(ChatMessage message) {
+        // Index d'expression maintenu par PostgreSQL
+    }
+
+    @Override
+    public void indexTicket(SupportTicket ticket) {
+        // Index d'expression maintenu par PostgreSQL
+    }
+
+    @Override
+    public List<SearchHit> search(SearchQuery query) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT kind, ticket_id, message_id, sender_id, text, at, rank FROM (");
+
+        sql.append("SELECT 'MESSAGE'::text AS kind, m.ticket_id, m.id AS message_id, m.sender_id, m.content AS text, ")
+           .append("m.timestamp AS at, ts_rank(").append(messageVector("m.")).append(", q) AS rank ")
+           .append("FROM chat_messages m, websearch_to_tsquery('").append(language).append("', ?) q ")
+           .append("WHERE ").append(messageVector("m.")).append(" @@ q");
+        args.add(query.text());
+        appendFilters(sql, args, query, "m.ticket_id", "m.sender_id", "m.timestamp");
+
+        sql.append(" UNION ALL ");
+
+        sql.append("SELECT 'TICKET'::text, t.id, NULL::uuid, t.user_id, t.subject, t.created_at, ts_rank(")
+           .append(ticketVector("t.")).append(", q) ")
+           .append("FROM support_tickets t, websearch_to_tsquery('").append(language).append("', ?) q ")
+           .append("WHERE ").append(ticketVector("t.")).append(" @@ q");
+        args.add(query.text());
+        appendFilters(sql, args, query, "t.id", "t.user_id", "t.created_at");
+
+        sql.append(") hits ORDER BY rank DESC, at DESC LIMIT ? OFFSET ?");
+        args.add(query.limit());
+        args.add(query.offset());
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new SearchHit(
+                SearchHit.Type.valueOf(rs.getString("kind")),
+                rs.getObject("ticket_id", UUID.class),
+                rs.getObject("message_id", UUID.class),
+                rs.getObject("sender_id", UUID.class),
+                rs.getString("text"),
+                rs.getTimestamp("at").toLocalDateTime(),
+                rs.getDouble("rank")), args.toArray());
+    }
+
+    /**
+     * Expressions indexées ; la requête doit reprendre exactement la même expression
+     */
+    private String messageVector(String alias) {
+        return "to_tsvector('" + language + "', " + alias + "content)";
+    }
+
+    private String ticketVector(String alias) {
+        return "to_tsvector('" + language + "', coalesce(" + alias + "subject, '') || ' ' || coalesce(" + alias + "description, ''))";
+    }
+
+    private static void appendFilters(StringBuilder sql, List<Object> args, SearchQuery query,
+                                      String ticketColumn, String senderColumn, String dateColumn) {
+        if (query.ticketId() != null) {
+            sql.append(" AND ").append(ticketColumn).append(" = ?");
+            args.add(query.ticketId());
+        }
+        if (query.senderId() != null) {
+            sql.append(" AND ").append(senderColumn).append(" = ?");
+            args.add(query.senderId());
+        }
+        if (query.from() != null) {
+            sql.append(" AND ").append(dateColumn).append(" >= ?");
+            args.add(Timestamp.valueOf(query.from()));
+        }
+        if (query.to() != null) {
+            sql.append(" AND ").append(dateColumn).append(" < ?");
+            args.add(Timestamp.valueOf(query.to()));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Recherche plein texte : texte libre et filtres optionnels (null : pas de filtre)
+ * from inclus, to exclu ; offset/limit déjà validés par l'appelant.
+ */
+public record SearchQuery(String text, UUID ticketId, UUID senderId,
+                          LocalDateTime from, LocalDateTime to, long offset, int limit) {
+}
@@ -0,0 +1,334 @@
+package com.cpierres.p13.poc.backend.service.storage;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.ChatMessageArchiveSegment;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.repository.ChatMessageArchiveSegmentRepository;
+import com.cpierres.p13.poc.backend.repository.ChatMessageArchiveSegmentRepository.SegmentInfo;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.service.MessageSequencer;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive des messages des tickets fermés : segments immuables de messages consécutifs, compressés (NDJSON gzip)
+ * Les lectures sont paresseuses : seuls les segments couvrant la plage demandée sont lus et décompressés,
+ * les derniers segments décompressés sont gardés en mémoire (LRU borné).
+ * Les messages archivés avant la numérotation des messages reçoivent leur position dans l'archive comme numéro de séquence.
+ */
+@Service
+@Slf4j
+public class ChatMessageArchive {
+
+    /** Ordre (timestamp, id) des requêtes keyset ; UUID comparés octet par octet comme PostgreSQL */
+    static final Comparator<ChatMessage> CHRONOLOGICAL = Comparator.comparing(ChatMessage::getTimestamp)
+            .thenComparing(ChatMessage::getId, ChatMessageArchive::compareIds);
+
+    private final ChatMessageArchiveSegmentRepository segmentRepository;
+    private final ChatMessageRepository messageRepository;
+    private final SupportTicketService ticketService;
+    private final MessageSequencer messageSequencer;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter messageWriter;
+    private final ObjectReader messageReader;
+    private final int segmentSize;
+    private final int cachedSegments;
+
+    /** Segments décompressés récemment lus, par identifiant (ordre d'accès) */
+    private final LinkedHashMap<UUID, List<ChatMessage>> decodedSegments = new LinkedHashMap<>(64, 0.75f, true);
+
+    public ChatMessageArchive(ChatMessageArchiveSegmentRepository segmentRepository,
+                              ChatMessageRepository messageRepository,
+                              SupportTicketService ticketService,
+                              MessageSequencer messageSequencer,
+                              EntityManager entityManager,
+                              ObjectMapper objectMapper,
+                              @Value("${chat.storage.archive.segment-size:500}") int segmentSize,
+                              @Value("${chat.storage.archive.cached-segments:64}") int cachedSegments) {
+        this.segmentRepository = segmentRepository;
+        this.messageRepository = messageRepository;
+        this.ticketService = ticketService;
+        this.messageSequencer = messageSequencer;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.messageWriter = objectMapper.writerFor(ChatMessage.class);
+        this.messageReader = objectMapper.readerFor(ChatMessage.class);
+        this.segmentSize = segmentSize;
+        this.cachedSegments = cachedSegments;
+    }
+
+    /**
+     * Archiver les messages d'un ticket fermé puis les supprimer de chat_messages
+     * Lecture répétable : la suppression ne porte que sur les messages lus et archivés.
+     * @return nombre de messages archivés
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public int archiveTicket(UUID ticketId) {
+        SupportTicket ticket = ticketService.reloadTicket(ticketId);
+        if (ticket.getStatus() != TicketStatus.CLOSED) {
+            return 0;
+        }
+        if (ticket.getMessageCount() == null) {
+            // Les statistiques du ticket doivent être calculées tant que les messages sont en base
+            ticket = ticketService.initializeMessageStats(ticketId);
+        }
+        // Les segments écrits portent les numéros de séquence des messages
+        if (ticket.getLastSequence() == null) {
+            messageSequencer.ensureSequences(ticketId);
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        int segmentNumber = segmentRepository.nextSegmentNumber(ticketId);
+        int archived = 0;
+        ChatMessage last = null;
+        List<ChatMessage> segment = new ArrayList<>(segmentSize);
+        try (Stream<ChatMessage> messages = messageRepository.streamByTicketId(ticketId)) {
+            Iterator<ChatMessage> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                ChatMessage message = iterator.next();
+                entityManager.detach(message);
+                segment.add(message);
+                if (segment.size() == segmentSize || !iterator.hasNext()) {
+                    saveSegment(ticketId, segmentNumber++, segment, archivedAt);
+                    archived += segment.size();
+                    last = segment.get(segment.size() - 1);
+                    segment.clear();
+                }
+            }
+        }
+
+        if (last != null) {
+            messageRepository.deleteArchived(ticketId, last.getTimestamp(), last.getId());
+        }
+        ticketService.markArchived(ticketId, archivedAt);
+        log.info("Ticket {} archivé : {} messages", ticketId, archived);
+        return archived;
+    }
+
+    /**
+     * Tous les messages archivés d'un ticket, du plus ancien au plus récent
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> findAll(UUID ticketId) {
+        List<ChatMessage> messages = new ArrayList<>();
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        for (int i = 0; i < segments.size(); i++) {
+            messages.addAll(read(segments.get(i), offsets[i]));
+        }
+        return messages;
+    }
+
+    /**
+     * Messages archivés lus segment par segment, sans alimenter le cache (exports)
+     */
+    public Stream<ChatMessage> stream(UUID ticketId) {
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        return IntStream.range(0, segments.size()).boxed()
+                .flatMap(i -> decode(segments.get(i), offsets[i]).stream());
+    }
+
+    /**
+     * Messages archivés strictement antérieurs au curseur (null : depuis le plus récent), du plus récent au plus ancien
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> findBefore(UUID ticketId, ChatMessage cursor, int limit) {
+        List<ChatMessage> result = new ArrayList<>();
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        for (int i = segments.size() - 1; i >= 0 && result.size() < limit; i--) {
+            SegmentInfo segment = segments.get(i);
+            if (cursor != null && compare(segment.getFirstMessageAt(), segment.getFirstMessageId(), cursor) >= 0) {
+                continue;
+            }
+            List<ChatMessage> messages = read(segment, offsets[i]);
+            for (int j = messages.size() - 1; j >= 0 && result.size() < limit; j--) {
+                if (cursor == null || CHRONOLOGICAL.compare(messages.get(j), cursor) < 0) {
+                    result.add(messages.get(j));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Messages archivés strictement postérieurs au curseur, du plus ancien au plus récent
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> findAfter(UUID ticketId, ChatMessage cursor, int limit) {
+        List<ChatMessage> result = new ArrayList<>();
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        for (int i = 0; i < segments.size() && result.size() < limit; i++) {
+            SegmentInfo segment = segments.get(i);
+            if (compare(segment.getLastMessageAt(), segment.getLastMessageId(), cursor) <= 0) {
+                continue;
+            }
+            for (ChatMessage message : read(segment, offsets[i])) {
+                if (result.size() < limit && CHRONOLOGICAL.compare(message, cursor) > 0) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrouver un message archivé (curseur de pagination), en partant des segments les plus récents
+     */
+    @Transactional(readOnly = true)
+    public Optional<ChatMessage> findMessage(UUID ticketId, UUID messageId) {
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            for (ChatMessage message : read(segments.get(i), offsets[i])) {
+                if (message.getId().equals(messageId)) {
+                    return Optional.of(message);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Messages archivés de numéro de séquence strictement supérieur, par numéro croissant
+     * Les segments sont parcourus depuis le plus récent jusqu'à celui qui contient le numéro suivant.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> findAfterSequence(UUID ticketId, long afterSequence, int limit) {
+        List<SegmentInfo> segments = segmentRepository.findSegments(ticketId);
+        long[] offsets = offsets(segments);
+        int first = segments.size();
+        while (first > 0 && read(segments.get(first - 1), offsets[first - 1]).get(0).getSequence() > afterSequence + 1) {
+            first--;
+        }
+        List<ChatMessage> result = new ArrayList<>();
+        for (int i = Math.max(0, first - 1); i < segments.size() && result.size() < limit; i++) {
+            for (ChatMessage message : read(segments.get(i), offsets[i])) {
+                if (result.size() < limit && message.getSequence() > afterSequence) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public long countMessages(UUID ticketId) {
+        return segmentRepository.countMessages(ticketId);
+    }
+
+    private void saveSegment(UUID ticketId, int segmentNumber, List<ChatMessage> messages, LocalDateTime archivedAt) {
+        ChatMessage first = messages.get(0);
+        ChatMessage last = messages.get(messages.size() - 1);
+        ChatMessageArchiveSegment segment = new ChatMessageArchiveSegment(null, ticketId, segmentNumber, messages.size(),
+                first.getTimestamp(), first.getId(), last.getTimestamp(), last.getId(), archivedAt, encode(messages));
+        segmentRepository.save(segment);
+        // Le contenu compressé n'a plus à rester dans le contexte de persistance
+        entityManager.flush();
+        entityManager.detach(segment);
+    }
+
+    /**
+     * Position dans l'archive du message précédant chaque segment
+     */
+    private static long[] offsets(List<SegmentInfo> segments) {
+        long[] offsets = new long[segments.size()];
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = offsets[i - 1] + segments.get(i - 1).getMessageCount();
+        }
+        return offsets;
+    }
+
+    private List<ChatMessage> read(SegmentInfo segment, long offset) {
+        synchronized (decodedSegments) {
+            List<ChatMessage> cached = decodedSegments.get(segment.getId());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<ChatMessage> messages = decode(segment, offset);
+        synchronized (decodedSegments) {
+            decodedSegments.put(segment.getId(), messages);
+            Iterator<UUID> eldest = decodedSegments.keySet().iterator();
+            while (decodedSegments.size() > cachedSegments && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return messages;
+    }
+
+    private byte[] encode(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // La fermeture du générateur termine le flux gzip
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(new GZIPOutputStream(bytes))) {
+            generator.setRootValueSeparator(null);
+            for (ChatMessage message : messages) {
+                messageWriter.writeValue(generator, message);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de compresser le segment d'archive", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<ChatMessage> decode(SegmentInfo segment, long offset) {
+        byte[] payload = segmentRepository.findPayload(segment.getId());
+        if (payload == null) {
+            throw new IllegalStateException("Segment d'archive introuvable : " + segment.getId());
+        }
+        try (MappingIterator<ChatMessage> messages = messageReader.readValues(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            List<ChatMessage> decoded = messages.readAll();
+            // Segment antérieur à la numérotation : position dans l'archive
+            for (int i = 0; i < decoded.size(); i++) {
+                if (decoded.get(i).getSequence() == null) {
+                    decoded.get(i).setSequence(offset + i + 1);
+                }
+            }
+            return List.copyOf(decoded);
+        } catch (IOException e) {
+            throw new IllegalStateException("Segment d'archive illisible : " + segment.getId(), e);
+        }
+    }
+
+    private static int compare(LocalDateTime timestamp, UUID id, ChatMessage cursor) {
+        int byTimestamp = timestamp.compareTo(cursor.getTimestamp());
+        return byTimestamp != 0 ? byTimestamp : compareIds(id, cursor.getId());
+    }
+
+    private static int compareIds(UUID left, UUID right) {
+        int byHigh = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,137 @@
+package com.cpierres.p13.poc.backend.service.storage;
+
+import com.cpierres.p13.poc.backend.service.RecentMessageCache;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivage périodique des tickets fermés depuis plus de retention-days
+ * Chaque ticket est archivé dans sa propre transaction ; les partitions passées devenues vides
+ * sont ensuite supprimées.
+ */
+@Component
+@Slf4j
+public class ChatMessageArchiver {
+
+    private final ChatMessageArchive archive;
+    private final SupportTicketService ticketService;
+    private final RecentMessageCache recentMessageCache;
+    private final ChatMessagePartitionManager partitionManager;
+    private final boolean enabled;
+    private final long retentionDays;
+    private final long intervalMinutes;
+    private final int batchSize;
+
+    private final Counter archivedTickets;
+    private final Counter archivedMessages;
+    private ScheduledExecutorService scheduler;
+
+    public ChatMessageArchiver(ChatMessageArchive archive,
+                               SupportTicketService ticketService,
+                               RecentMessageCache recentMessageCache,
+                               ChatMessagePartitionManager partitionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${chat.storage.archive.enabled:false}") boolean enabled,
+                               @Value("${chat.storage.archive.retention-days:90}") long retentionDays,
+                               @Value("${chat.storage.archive.interval-minutes:60}") long intervalMinutes,
+                               @Value("${chat.storage.archive.batch-size:100}") int batchSize) {
+        this.archive = archive;
+        this.ticketService = ticketService;
+        this.recentMessageCache = recentMessageCache;
+        this.partitionManager = partitionManager;
+        this.enabled = enabled;
+        this.retentionDays = retentionDays;
+        this.intervalMinutes = intervalMinutes;
+        this.batchSize = batchSize;
+        this.archivedTickets = Counter.builder("chat.archive.tickets").register(meterRegistry);
+        this.archivedMessages = Counter.builder("chat.archive.messages").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("Archivage des tickets fermés désactivé");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        log.info("Archivage des tickets fermés depuis plus de {} jours, toutes les {} minutes", retentionDays, intervalMinutes);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Archiver tous les tickets éligibles
+     * @return nombre de tickets archivés
+     */
+    public int archiveClosedTickets() {
+        LocalDateTime closedBefore = LocalDateTime.now().minusDays(retentionDays);
+        Set<UUID> failed = new HashSet<>();
+        int tickets = 0;
+        int requested;
+        List<UUID> batch;
+        do {
+            // Les tickets en échec restent éligibles : la page est élargie d'autant
+            requested = batchSize + failed.size();
+            batch = ticketService.findArchivableTicketIds(closedBefore, requested);
+            int archivedInBatch = 0;
+            for (UUID ticketId : batch) {
+                if (failed.contains(ticketId)) {
+                    continue;
+                }
+                try {
+                    int messages = archive.archiveTicket(ticketId);
+                    recentMessageCache.invalidate(ticketId);
+                    archivedMessages.increment(messages);
+                    archivedTickets.increment();
+                    archivedInBatch++;
+                } catch (RuntimeException e) {
+                    // Ticket rouvert ou modifié pendant l'archivage : nouvel essai au prochain passage
+                    log.warn("Archivage du ticket {} impossible : {}", ticketId, e.getMessage());
+                    failed.add(ticketId);
+                }
+            }
+            tickets += archivedInBatch;
+            if (archivedInBatch == 0) {
+                break;
+            }
+        } while (batch.size() >= requested);
+        return tickets;
+    }
+
+    private void run() {
+        try {
+            int tickets = archiveClosedTickets();
+            if (tickets > 0) {
+                log.info("{} tickets fermés archivés", tickets);
+            }
+            partitionManager.maintain();
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'archivage des tickets fermés : {}", e.getMessage());
+        }
+    }
+}
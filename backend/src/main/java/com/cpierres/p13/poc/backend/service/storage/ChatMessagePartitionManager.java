@@ -0,0 +1,217 @@
+package com.cpierres.p13.poc.backend.service.storage;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Partitionnement mensuel de chat_messages sur PostgreSQL (PARTITION BY RANGE (timestamp))
+ * La conversion d'une table encore classique (créée par Hibernate) est une migration ponctuelle et explicite
+ * (chat.storage.partitioning.migrate) : ses lignes sont recopiées dans la table partitionnée, dans une seule
+ * transaction qui verrouille chat_messages en ACCESS EXCLUSIVE pendant toute la copie. Sans elle, une table
+ * classique reste telle quelle et le partitionnement inactif.
+ * Les partitions des mois à venir sont créées par avance ; une partition DEFAULT reçoit les lignes hors des
+ * plages prévues. Les partitions des mois passés vidées par l'archivage sont supprimées (DROP TABLE, sans VACUUM).
+ * La clé primaire devient (id, timestamp) : PostgreSQL impose la clé de partition dans les contraintes d'unicité
+ * et ne peut pas garantir l'unicité de id seul. Elle n'est pas nécessaire : les identifiants sont générés par
+ * le serveur (UUIDv7 à 74 bits aléatoires, voir TimeOrderedUuidGenerator), jamais repris d'un client, et les
+ * renvois d'un même message sont écartés par leur clé client (voir SendDeduplicator).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class ChatMessagePartitionManager {
+
+    private static final String TABLE = "chat_messages";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{4})_(\\d{2})");
+    private static final long MAINTENANCE_PERIOD_HOURS = 24;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean migrate;
+    private final int monthsAhead;
+    private ScheduledExecutorService scheduler;
+    private boolean active;
+
+    public ChatMessagePartitionManager(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${chat.storage.partitioning.enabled:false}") boolean enabled,
+                                       @Value("${chat.storage.partitioning.migrate:false}") boolean migrate,
+                                       @Value("${chat.storage.partitioning.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.migrate = migrate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Convertir la table si la migration est demandée puis planifier la maintenance des partitions
+     * (avant la création des index de recherche, qui portent sur la table partitionnée)
+     */
+    @PostConstruct
+    void start() {
+        if (!enabled || !isPostgres()) {
+            log.info("Partitionnement de {} inactif", TABLE);
+            return;
+        }
+        if ("r".equals(relationKind())) {
+            if (!migrate) {
+                log.warn("{} n'est pas partitionnée : partitionnement inactif (conversion par un démarrage unique " +
+                        "avec chat.storage.partitioning.migrate=true)", TABLE);
+                return;
+            }
+            partitionTable();
+        }
+        active = true;
+        maintain();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintain, MAINTENANCE_PERIOD_HOURS, MAINTENANCE_PERIOD_HOURS, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Créer les partitions du mois courant et des mois à venir, supprimer les partitions passées devenues vides
+     * Hors transaction : chaque instruction est validée seule, l'échec d'une partition n'affecte pas les autres.
+     */
+    public void maintain() {
+        if (!active) {
+            return;
+        }
+        try {
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                try {
+                    createPartition(month);
+                } catch (DataAccessException e) {
+                    // Lignes déjà présentes dans la partition DEFAULT pour ce mois : la plage y reste
+                    log.warn("Partition {} non créée : {}", partitionName(month), e.getMessage());
+                }
+            }
+            dropEmptyPartitionsBefore(current);
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la maintenance des partitions de {} : {}", TABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * Migration : recopier la table classique dans une table partitionnée
+     * Aucune erreur n'est interceptée dans la transaction (abandonnée par PostgreSQL à la première erreur) :
+     * un échec annule toute la conversion et interrompt le démarrage.
+     */
+    private void partitionTable() {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Vérification sous le verrou : de deux nœuds démarrés ensemble, le second trouve la table déjà convertie
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+            if (!"r".equals(relationKind())) {
+                log.info("{} déjà partitionnée par un autre nœud", TABLE);
+                return;
+            }
+            log.info("Conversion de {} en table partitionnée par mois", TABLE);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + TABLE + "_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS) " +
+                    "PARTITION BY RANGE (timestamp)");
+
+            LocalDate oldest = jdbcTemplate.queryForObject(
+                    "SELECT CAST(MIN(timestamp) AS date) FROM " + TABLE + "_unpartitioned", LocalDate.class);
+            YearMonth month = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+            for (YearMonth last = YearMonth.now().plusMonths(monthsAhead); !month.isAfter(last); month = month.plusMonths(1)) {
+                createPartition(month);
+            }
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+
+            int copied = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("DROP TABLE " + TABLE + "_unpartitioned");
+
+            // Clé primaire et index déclarés par l'entité ChatMessage, recréés sur la table partitionnée (propagés aux partitions)
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey PRIMARY KEY (id, timestamp)");
+            for (Index index : ChatMessage.class.getAnnotation(Table.class).indexes()) {
+                jdbcTemplate.execute("CREATE " + (index.unique() ? "UNIQUE " : "") + "INDEX " + index.name() +
+                        " ON " + TABLE + " (" + index.columnList() + ")");
+            }
+            log.info("{} partitionnée : {} messages recopiés en {} ms", TABLE, copied, System.currentTimeMillis() - start);
+        });
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + TABLE +
+                " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.getYear() + "_" + String.format("%02d", month.getMonthValue());
+    }
+
+    /**
+     * Type de la relation chat_messages : "r" table classique, "p" table partitionnée
+     */
+    private String relationKind() {
+        return jdbcTemplate.queryForObject(
+                "SELECT CAST(relkind AS varchar) FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+    }
+
+    private void dropEmptyPartitionsBefore(YearMonth current) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT CAST(c.relname AS varchar) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            // Les nouveaux messages sont horodatés à l'insertion : un mois révolu vide le reste
+            if (month.isBefore(current)
+                    && !Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class))) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Partition vide supprimée : {}", partition);
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            return product != null && product.toLowerCase(Locale.ROOT).contains("postgresql");
+        } catch (DataAccessException e) {
+            log.warn("Base de données non identifiée, partitionnement désactivé : {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.cpierres.p13.poc.backend.service.user;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annuaire local des utilisateurs, indexé par ID, par email et par nom complet
+ * Chargé depuis le UserServiceClient au démarrage puis rafraîchi périodiquement ;
+ * un utilisateur inconnu est demandé individuellement au client puis ajouté à l'index.
+ * Un ID absent de la source n'est pas redemandé avant l'expiration de son absence (cache négatif,
+ * vidé à chaque rafraîchissement).
+ */
+@Service
+@Slf4j
+public class CachedUserDirectory implements UserDirectory {
+
+    private final UserServiceClient userServiceClient;
+    private final long refreshSeconds;
+    private final long missTtlNanos;
+
+    private volatile Index index = new Index(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+            new ConcurrentHashMap<>());
+    /** ID inconnu de la source -> échéance (System.nanoTime) avant laquelle il n'est pas redemandé */
+    private final Map<UUID, Long> misses = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refresher;
+
+    public CachedUserDirectory(UserServiceClient userServiceClient,
+                               @Value("${chat.users.refresh-seconds:300}") long refreshSeconds,
+                               @Value("${chat.users.miss-ttl-seconds:30}") long missTtlSeconds) {
+        this.userServiceClient = userServiceClient;
+        this.refreshSeconds = refreshSeconds;
+        this.missTtlNanos = TimeUnit.SECONDS.toNanos(missTtlSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        refresh();
+        if (refreshSeconds > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-directory-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Reconstruire les index à partir de la source ; en cas d'échec, l'annuaire courant est conservé
+     */
+    public void refresh() {
+        try {
+            List<MockUserInfo> users = userServiceClient.fetchAllUsers();
+            Map<UUID, MockUserInfo> byId = new ConcurrentHashMap<>(users.size() * 2);
+            Map<String, MockUserInfo> byEmail = new ConcurrentHashMap<>(users.size() * 2);
+            Map<String, MockUserInfo> byFullName = new ConcurrentHashMap<>(users.size() * 2);
+            Index refreshed = new Index(byId, byEmail, byFullName, new ConcurrentHashMap<>());
+            users.forEach(refreshed::add);
+            index = refreshed;
+            misses.clear();
+            log.info("Annuaire utilisateurs chargé : {} utilisateurs", users.size());
+        } catch (Exception e) {
+            log.warn("Échec du rafraîchissement de l'annuaire utilisateurs : {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<MockUserInfo> findById(UUID userId) {
+        Index current = index;
+        MockUserInfo user = current.byId().get(userId);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        Long missExpiry = misses.get(userId);
+        if (missExpiry != null) {
+            if (System.nanoTime() - missExpiry < 0) {
+                return Optional.empty();
+            }
+            misses.remove(userId, missExpiry);
+        }
+        Optional<MockUserInfo> fetched = userServiceClient.fetchUser(userId);
+        if (fetched.isPresent()) {
+            current.add(fetched.get());
+        } else if (missTtlNanos > 0) {
+            misses.put(userId, System.nanoTime() + missTtlNanos);
+        }
+        return fetched;
+    }
+
+    @Override
+    public Optional<MockUserInfo> findByEmail(String email) {
+        return Optional.ofNullable(index.byEmail().get(email));
+    }
+
+    @Override
+    public Optional<MockUserInfo> findByFullName(String fullName) {
+        return Optional.ofNullable(index.byFullName().get(fullName));
+    }
+
+    @Override
+    public List<MockUserInfo> findByRole(String role) {
+        return List.copyOf(index.byRole().getOrDefault(role, Map.of()).values());
+    }
+
+    @Override
+    public Map<UUID, MockUserInfo> findAllByIds(Collection<UUID> userIds) {
+        Map<UUID, MockUserInfo> result = new HashMap<>(userIds.size() * 2);
+        for (UUID userId : userIds) {
+            findById(userId).ifPresent(user -> result.put(userId, user));
+        }
+        return result;
+    }
+
+    private record Index(Map<UUID, MockUserInfo> byId, Map<String, MockUserInfo> byEmail,
+                         Map<String, MockUserInfo> byFullName, Map<String, Map<UUID, MockUserInfo>> byRole) {
+        void add(MockUserInfo user) {
+            byId.put(user.getId(), user);
+            byEmail.put(user.getEmail(), user);
+            byFullName.put(user.getFullName(), user);
+            if (user.getRole() != null) {
+                byRole.computeIfAbsent(user.getRole(), role -> new ConcurrentHashMap<>()).put(user.getId(), user);
+            }
+        }
+    }
+}
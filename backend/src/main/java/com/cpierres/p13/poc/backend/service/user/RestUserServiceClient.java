@@ -0,0 +1,56 @@
+package com.cpierres.p13.poc.backend.service.user;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Client REST vers le user-service (activé avec chat.users.source=remote)
+ */
+@Component
+@ConditionalOnProperty(name = "chat.users.source", havingValue = "remote")
+@Slf4j
+public class RestUserServiceClient implements UserServiceClient {
+
+    private final RestClient restClient;
+
+    public RestUserServiceClient(RestClient.Builder builder,
+                                 @Value("${chat.users.remote.base-url}") String baseUrl) {
+        this.restClient = builder.baseUrl(baseUrl).build();
+    }
+
+    @Override
+    public List<MockUserInfo> fetchAllUsers() {
+        log.debug("Chargement des utilisateurs depuis le user-service");
+        List<MockUserInfo> users = restClient.get()
+                .uri("/api/users")
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<MockUserInfo>>() {});
+        return users != null ? users : List.of();
+    }
+
+    @Override
+    public Optional<MockUserInfo> fetchUser(UUID userId) {
+        try {
+            return Optional.ofNullable(restClient.get()
+                    .uri("/api/users/{id}", userId)
+                    .retrieve()
+                    .body(MockUserInfo.class));
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.cpierres.p13.poc.backend.service.user;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Annuaire des utilisateurs consulté par le support (résolution par ID ou email en O(1))
+ */
+public interface UserDirectory {
+
+    Optional<MockUserInfo> findById(UUID userId);
+
+    Optional<MockUserInfo> findByEmail(String email);
+
+    /**
+     * Résolution par nom complet ("Prénom Nom"), tel que stocké dans SupportTicket.assignedAgent
+     */
+    Optional<MockUserInfo> findByFullName(String fullName);
+
+    /**
+     * Utilisateurs d'un rôle ("CLIENT", "AGENT"), parmi ceux de l'annuaire
+     */
+    List<MockUserInfo> findByRole(String role);
+
+    /**
+     * Résolution groupée : seuls les utilisateurs trouvés figurent dans le résultat
+     */
+    Map<UUID, MockUserInfo> findAllByIds(Collection<UUID> userIds);
+}
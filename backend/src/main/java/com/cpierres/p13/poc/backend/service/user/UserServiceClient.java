@@ -0,0 +1,23 @@
+package com.cpierres.p13.poc.backend.service.user;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Client vers la source des utilisateurs (user-service distant ou simulation locale)
+ */
+public interface UserServiceClient {
+
+    /**
+     * Charger l'ensemble des utilisateurs pour (re)construire l'annuaire local
+     */
+    List<MockUserInfo> fetchAllUsers();
+
+    /**
+     * Charger un utilisateur absent de l'annuaire local
+     */
+    Optional<MockUserInfo> fetchUser(UUID userId);
+}
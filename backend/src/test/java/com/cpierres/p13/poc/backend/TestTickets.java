@@ -0,0 +1,35 @@
+package com.cpierres.p13.poc.backend;
+
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+
+import java.util.UUID;
+
+/**
+ * Jeu de données commun aux tests : utilisateurs de l'annuaire fictif (MockAuthService) et création de tickets
+ */
+public final class TestTickets {
+
+    /** Client de l'annuaire fictif */
+    public static final UUID CLIENT = UUID.fromString("822d37e8-812f-4059-81ac-357cb3b45b50");
+    /** Agent de l'annuaire fictif */
+    public static final UUID AGENT = UUID.fromString("3031d66c-0bcd-478a-b920-af766623a2fb");
+
+    private TestTickets() {
+    }
+
+    /**
+     * Créer un ticket ouvert par le client
+     */
+    public static SupportTicket createTicket(SupportTicketService ticketService) {
+        return createTicket(ticketService, CLIENT, "Commande introuvable");
+    }
+
+    public static SupportTicket createTicket(SupportTicketService ticketService, UUID userId, String subject) {
+        SupportTicket ticket = new SupportTicket();
+        ticket.setUserId(userId);
+        ticket.setSubject(subject);
+        ticket.setDescription("Ma commande n'apparaît pas dans mon espace client");
+        return ticketService.createTicket(ticket);
+    }
+}
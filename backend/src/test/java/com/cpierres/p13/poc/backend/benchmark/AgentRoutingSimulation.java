@@ -0,0 +1,204 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.cpierres.p13.poc.backend.service.routing.AgentLoadBalancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulation du routage des tickets : des milliers d'agents, des rafales de créations de tickets concurrentes
+ * Entre deux rafales, une partie des tickets est résolue, des messages arrivent ou sont lus, des agents se
+ * connectent ou se déconnectent. Compare les deux stratégies d'AgentLoadBalancer (O(log agents) par décision)
+ * à un parcours linéaire de tous les agents (O(agents), coût d'une décision sans file triée), et mesure
+ * l'équilibre obtenu : tickets actifs rapportés au poids, sur les agents connectés (le parcours linéaire,
+ * simulé sur dix fois moins de tickets, ne sert qu'à la comparaison du coût par décision).
+ *
+ * Lancement :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.AgentRoutingSimulation \
+ *       -Dexec.args="5000 20 20000 8"   (agents, rafales, tickets par rafale, threads)
+ */
+public class AgentRoutingSimulation {
+
+    public static void main(String[] args) throws Exception {
+        int agentCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int bursts = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int burstSize = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        System.out.printf("%d agents, %d rafales de %d tickets, %d threads%n", agentCount, bursts, burstSize, threads);
+        System.out.printf("%-22s %14s %12s %14s %14s%n", "routage", "décisions/s", "µs/décision", "max/moyenne", "écart relatif");
+        for (AgentLoadBalancer.Strategy strategy : AgentLoadBalancer.Strategy.values()) {
+            run(strategy.name(), new BalancerRouter(new AgentLoadBalancer(strategy)), agentCount, bursts, burstSize, threads);
+        }
+        // Parcours linéaire : moins de rafales, chaque décision coûtant O(agents)
+        run("LINEAR_SCAN", new LinearScanRouter(), agentCount, Math.max(1, bursts / 10), burstSize / 10, threads);
+    }
+
+    private static void run(String label, Router router, int agentCount, int bursts, int burstSize, int threads) throws Exception {
+        Random random = new Random(42);
+        List<UUID> agents = new ArrayList<>(agentCount);
+        Map<UUID, Integer> weights = new ConcurrentHashMap<>();
+        for (int i = 0; i < agentCount; i++) {
+            UUID agentId = new UUID(0, i);
+            // 80 % d'agents de poids 1, 15 % de poids 2, 5 % de poids 4
+            int weight = i % 20 == 0 ? 4 : i % 20 < 4 ? 2 : 1;
+            agents.add(agentId);
+            weights.put(agentId, weight);
+            router.register(agentId, weight);
+            if (random.nextInt(10) < 9) {
+                router.sessionOpened(agentId);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Ticket> active = new ArrayList<>();
+        long decisions = 0;
+        long routingNanos = 0;
+        try {
+            for (int burst = 0; burst < bursts; burst++) {
+                // Rafale de créations concurrentes
+                int perThread = burstSize / threads;
+                List<Future<List<Ticket>>> futures = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        List<Ticket> created = new ArrayList<>(perThread);
+                        for (int i = 0; i < perThread; i++) {
+                            UUID agentId = router.assign();
+                            if (agentId != null) {
+                                created.add(new Ticket(UUID.randomUUID(), agentId));
+                            }
+                        }
+                        return created;
+                    }));
+                }
+                for (Future<List<Ticket>> future : futures) {
+                    active.addAll(future.get());
+                }
+                routingNanos += System.nanoTime() - start;
+                decisions += (long) perThread * threads;
+
+                // Activité entre deux rafales : messages, réponses, résolutions, connexions
+                for (int i = 0; i < burstSize; i++) {
+                    Ticket ticket = active.get(random.nextInt(active.size()));
+                    if (random.nextInt(3) == 0) {
+                        router.messagesRead(ticket.agentId(), ticket.id());
+                    } else {
+                        router.messageReceived(ticket.agentId(), ticket.id());
+                    }
+                }
+                for (int i = active.size() - 1; i >= 0; i--) {
+                    if (random.nextInt(10) < 4) {
+                        Ticket ticket = active.get(i);
+                        router.ticketReleased(ticket.agentId(), ticket.id());
+                        active.set(i, active.get(active.size() - 1));
+                        active.remove(active.size() - 1);
+                    }
+                }
+                for (int i = 0; i < agentCount / 100; i++) {
+                    UUID agentId = agents.get(random.nextInt(agentCount));
+                    if (random.nextBoolean()) {
+                        router.sessionOpened(agentId);
+                    } else {
+                        router.sessionClosed(agentId);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Équilibre : tickets actifs / poids sur les agents connectés
+        double sum = 0;
+        double sumSquares = 0;
+        double max = 0;
+        int online = 0;
+        for (UUID agentId : agents) {
+            if (!router.isOnline(agentId)) {
+                continue;
+            }
+            double load = (double) router.activeTickets(agentId) / weights.get(agentId);
+            sum += load;
+            sumSquares += load * load;
+            max = Math.max(max, load);
+            online++;
+        }
+        double mean = sum / online;
+        double deviation = Math.sqrt(Math.max(0, sumSquares / online - mean * mean));
+        System.out.printf("%-22s %,14.0f %12.2f %14.2f %13.1f%%%n", label,
+                decisions / (routingNanos / 1e9), routingNanos / 1e3 / decisions, max / mean, 100 * deviation / mean);
+    }
+
+    private record Ticket(UUID id, UUID agentId) {
+    }
+
+    private interface Router {
+        void register(UUID agentId, int weight);
+        UUID assign();
+        void ticketReleased(UUID agentId, UUID ticketId);
+        void messageReceived(UUID agentId, UUID ticketId);
+        void messagesRead(UUID agentId, UUID ticketId);
+        void sessionOpened(UUID agentId);
+        void sessionClosed(UUID agentId);
+        boolean isOnline(UUID agentId);
+        int activeTickets(UUID agentId);
+    }
+
+    private record BalancerRouter(AgentLoadBalancer balancer) implements Router {
+        public void register(UUID agentId, int weight) { balancer.register(agentId, weight); }
+        public UUID assign() { return balancer.assign(true).orElse(null); }
+        public void ticketReleased(UUID agentId, UUID ticketId) { balancer.ticketReleased(agentId, ticketId); }
+        public void messageReceived(UUID agentId, UUID ticketId) { balancer.messageReceived(agentId, ticketId); }
+        public void messagesRead(UUID agentId, UUID ticketId) { balancer.messagesRead(agentId, ticketId); }
+        public void sessionOpened(UUID agentId) { balancer.sessionOpened(agentId); }
+        public void sessionClosed(UUID agentId) { balancer.sessionClosed(agentId); }
+        public boolean isOnline(UUID agentId) { return balancer.getLoad(agentId).orElseThrow().online(); }
+        public int activeTickets(UUID agentId) { return balancer.getLoad(agentId).orElseThrow().activeTickets(); }
+    }
+
+    /**
+     * Référence : choix du moins chargé par parcours de tous les agents, sous un verrou global
+     */
+    private static final class LinearScanRouter implements Router {
+        private final Map<UUID, int[]> loads = new ConcurrentHashMap<>(); // actifs, non lus, sessions, poids
+        private final List<UUID> agents = new ArrayList<>();
+
+        public synchronized void register(UUID agentId, int weight) {
+            loads.put(agentId, new int[]{0, 0, 0, weight});
+            agents.add(agentId);
+        }
+
+        public synchronized UUID assign() {
+            UUID best = null;
+            long bestRank = Long.MAX_VALUE;
+            for (UUID agentId : agents) {
+                int[] load = loads.get(agentId);
+                long rank = (load[2] > 0 ? 0 : Long.MAX_VALUE / 2) + (load[0] * 10L + load[1]) * 1_000_000L / load[3]
+                        + ThreadLocalRandom.current().nextInt(2);
+                if (rank < bestRank) {
+                    bestRank = rank;
+                    best = agentId;
+                }
+            }
+            loads.get(best)[0]++;
+            return best;
+        }
+
+        public synchronized void ticketReleased(UUID agentId, UUID ticketId) { loads.get(agentId)[0] = Math.max(0, loads.get(agentId)[0] - 1); }
+        public synchronized void messageReceived(UUID agentId, UUID ticketId) { loads.get(agentId)[1]++; }
+        public synchronized void messagesRead(UUID agentId, UUID ticketId) { loads.get(agentId)[1] = Math.max(0, loads.get(agentId)[1] - 1); }
+        public synchronized void sessionOpened(UUID agentId) { loads.get(agentId)[2]++; }
+        public synchronized void sessionClosed(UUID agentId) { loads.get(agentId)[2] = Math.max(0, loads.get(agentId)[2] - 1); }
+        public synchronized boolean isOnline(UUID agentId) { return loads.get(agentId)[2] > 0; }
+        public synchronized int activeTickets(UUID agentId) { return loads.get(agentId)[0]; }
+    }
+}
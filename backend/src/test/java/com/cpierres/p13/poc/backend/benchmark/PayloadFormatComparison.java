@@ -0,0 +1,119 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.cpierres.p13.poc.backend.config.CompactPayloadNegotiator;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.TimeOrderedUuidGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Comparaison des formats de trames de messages : JSON (défaut) contre CBOR (abonnements "accept: application/cbor")
+ * Mesure la taille des trames (brute et compressée deflate) et le débit d'encodage/décodage, pour des messages
+ * isolés et des trames regroupées (voir ChatMessageBroadcaster).
+ *
+ * Lancement :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.PayloadFormatComparison -Dexec.args="200000"
+ */
+public class PayloadFormatComparison {
+
+    private static final String[] CONTENTS = {
+            "Bonjour",
+            "Merci, je regarde tout de suite.",
+            "Ma commande n'est toujours pas arrivée, le suivi indique une livraison prévue hier.",
+            "Pouvez-vous me communiquer votre numéro de réservation ainsi que l'adresse e-mail utilisée lors de l'achat ? "
+                    + "Je vérifie ensuite la disponibilité du véhicule et les options de remboursement.",
+    };
+    private static final TypeReference<List<ChatMessage>> MESSAGE_LIST = new TypeReference<>() {
+    };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        // Même configuration que le mapper JSON de Spring Boot (modules détectés, dates ISO)
+        ObjectMapper json = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper cbor = CompactPayloadNegotiator.cborMapper(json);
+
+        List<ChatMessage> messages = messages(1000);
+        List<List<ChatMessage>> batches = new ArrayList<>();
+        for (int i = 0; i + 8 <= messages.size(); i += 8) {
+            batches.add(messages.subList(i, i + 8));
+        }
+
+        System.out.printf("%-24s %10s %10s %14s %14s%n", "trame", "octets", "deflate", "encodage/s", "décodage/s");
+        run("JSON message isolé", json, new ArrayList<>(messages), ChatMessage.class, iterations);
+        run("CBOR message isolé", cbor, new ArrayList<>(messages), ChatMessage.class, iterations);
+        run("JSON regroupée (8)", json, new ArrayList<>(batches), MESSAGE_LIST, iterations / 8);
+        run("CBOR regroupée (8)", cbor, new ArrayList<>(batches), MESSAGE_LIST, iterations / 8);
+    }
+
+    private static void run(String label, ObjectMapper mapper, List<Object> frames, Object type, int iterations) throws Exception {
+        List<byte[]> encoded = new ArrayList<>();
+        long bytes = 0;
+        long deflated = 0;
+        for (Object frame : frames) {
+            byte[] payload = mapper.writeValueAsBytes(frame);
+            encoded.add(payload);
+            bytes += payload.length;
+            deflated += deflate(payload);
+        }
+
+        // Préchauffage puis mesure
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                mapper.writeValueAsBytes(frames.get(i % frames.size()));
+            }
+            double encodeSeconds = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                byte[] payload = encoded.get(i % encoded.size());
+                if (type instanceof Class<?> cls) {
+                    mapper.readValue(payload, cls);
+                } else {
+                    mapper.readValue(payload, MESSAGE_LIST);
+                }
+            }
+            double decodeSeconds = (System.nanoTime() - start) / 1e9;
+            if (pass == 1) {
+                System.out.printf("%-24s %10.1f %10.1f %,14.0f %,14.0f%n", label,
+                        (double) bytes / frames.size(), (double) deflated / frames.size(),
+                        iterations / encodeSeconds, iterations / decodeSeconds);
+            }
+        }
+    }
+
+    /** Taille d'une trame compressée isolément (permessage-deflate sans contexte partagé) */
+    private static int deflate(byte[] payload) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            deflater.write(payload);
+        }
+        return out.size();
+    }
+
+    static List<ChatMessage> messages(int count) {
+        Random random = new Random(42);
+        UUID ticketId = TimeOrderedUuidGenerator.next();
+        UUID clientId = UUID.randomUUID();
+        UUID agentId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 15, 10, 0);
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            timestamp = timestamp.plusNanos(random.nextInt(60_000) * 1_000_000L + random.nextInt(1000) * 1000L);
+            messages.add(new ChatMessage(TimeOrderedUuidGenerator.next(), ticketId, i % 2 == 0 ? clientId : agentId,
+                    CONTENTS[random.nextInt(CONTENTS.length)], timestamp, i + 1L, null));
+        }
+        return messages;
+    }
+}
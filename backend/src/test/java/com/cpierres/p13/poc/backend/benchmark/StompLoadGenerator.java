@@ -0,0 +1,380 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge STOMP de bout en bout contre un backend local (/ws, broker simple)
+ * Simule N clients répartis sur M tickets : chaque client rejoint son ticket (/app/chat.join), s'abonne aux
+ * messages et à la saisie du ticket, puis un émetteur cadencé envoie des messages (/app/chat.send) et des
+ * indicateurs de saisie (/app/chat.typing) au débit demandé.
+ * La latence envoi -> réception est mesurée pour chaque abonné depuis l'instant d'envoi prévu
+ * (pas d'omission coordonnée si l'émetteur prend du retard) ; la mémoire serveur par session est
+ * estimée via /actuator/metrics.
+ *
+ * Lancement (backend démarré sur localhost:8083, ulimit -n >= clients + marge) :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.StompLoadGenerator \
+ *       -Dexec.args="clients=1000 tickets=100 rate=500 duration=60 warmup=10 typing=0.2"
+ */
+public class StompLoadGenerator {
+
+    private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private static final long MAX_LATENCY_NS = TimeUnit.MINUTES.toNanos(1);
+    private static final int CONNECT_BATCH = 200;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String baseUrl;
+    private final int clientCount;
+    private final int ticketCount;
+    private final int rate;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final double typingRatio;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong typingSent = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        new StompLoadGenerator(options).run();
+    }
+
+    StompLoadGenerator(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("url", "http://localhost:8083");
+        this.clientCount = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        this.ticketCount = Integer.parseInt(options.getOrDefault("tickets", "100"));
+        this.rate = Integer.parseInt(options.getOrDefault("rate", "500"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        this.typingRatio = Double.parseDouble(options.getOrDefault("typing", "0.2"));
+        if (!LOCAL_HOSTS.contains(URI.create(baseUrl).getHost())) {
+            throw new IllegalArgumentException("Le générateur ne cible que localhost : " + baseUrl);
+        }
+    }
+
+    void run() throws Exception {
+        Map<String, UUID> users = fetchUsers();
+        UUID clientId = users.get("CLIENT");
+        UUID agentId = users.get("AGENT");
+        List<UUID> tickets = createTickets(clientId);
+
+        long heapBefore = serverMetric("jvm.memory.used", "area:heap");
+        long sessionsBefore = serverMetric("chat.presence.sessions", null);
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new SimpleMessageConverter());
+        List<SimulatedClient> clients = connectClients(stompClient, tickets, clientId, agentId);
+        Thread.sleep(2000); // Laisser les SUBSCRIBE et les JOIN être traités
+
+        long heapAfter = serverMetric("jvm.memory.used", "area:heap");
+        long sessionsAfter = serverMetric("chat.presence.sessions", null);
+        long connected = Math.max(1, sessionsAfter - sessionsBefore);
+
+        System.out.printf("Échauffement : %d s à %d msg/s%n", warmupSeconds, rate);
+        drive(clients, warmupSeconds);
+        clients.forEach(SimulatedClient::resetLatencies);
+        sent.set(0);
+        typingSent.set(0);
+
+        System.out.printf("Mesure : %d s à %d msg/s%n", durationSeconds, rate);
+        drive(clients, durationSeconds);
+        Thread.sleep(2000); // Laisser arriver les dernières remises
+
+        report(clients, connected, heapAfter - heapBefore);
+        clients.forEach(SimulatedClient::disconnect);
+        stompClient.stop();
+    }
+
+    /**
+     * Émetteur cadencé : une opération toutes les 1/rate secondes, sur un client tiré au hasard
+     */
+    private void drive(List<SimulatedClient> clients, int seconds) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            SimulatedClient client = clients.get(ThreadLocalRandom.current().nextInt(clients.size()));
+            try {
+                if (ThreadLocalRandom.current().nextDouble() < typingRatio) {
+                    client.sendTyping();
+                    typingSent.incrementAndGet();
+                } else {
+                    client.sendMessage(intended);
+                    sent.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private List<SimulatedClient> connectClients(WebSocketStompClient stompClient, List<UUID> tickets,
+                                                 UUID clientId, UUID agentId) throws Exception {
+        String wsUrl = baseUrl.replaceFirst("^http", "ws") + "/ws/websocket";
+        List<SimulatedClient> clients = new ArrayList<>(clientCount);
+        for (int from = 0; from < clientCount; from += CONNECT_BATCH) {
+            List<CompletableFuture<SimulatedClient>> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(clientCount, from + CONNECT_BATCH); i++) {
+                // Un client sur dix joue le rôle de l'agent de démonstration
+                SimulatedClient client = new SimulatedClient(i, tickets.get(i % tickets.size()), i % 10 == 0 ? agentId : clientId);
+                StompHeaders connectHeaders = new StompHeaders();
+                connectHeaders.add("userId", client.userId.toString());
+                batch.add(stompClient.connectAsync(wsUrl, new WebSocketHttpHeaders(), connectHeaders, client)
+                        .thenApply(session -> client.start(session)));
+            }
+            for (CompletableFuture<SimulatedClient> future : batch) {
+                clients.add(future.get(1, TimeUnit.MINUTES));
+            }
+            System.out.printf("Sessions connectées : %d/%d%n", clients.size(), clientCount);
+        }
+        return clients;
+    }
+
+    private void report(List<SimulatedClient> clients, long sessions, long heapDelta) throws IOException {
+        Histogram total = new Histogram(MAX_LATENCY_NS, 3);
+        List<Histogram> perSubscriber = new ArrayList<>(clients.size());
+        for (SimulatedClient client : clients) {
+            Histogram histogram = client.latencies.getIntervalHistogram();
+            perSubscriber.add(histogram);
+            total.add(histogram);
+        }
+        long[] subscriberP99 = perSubscriber.stream()
+                .filter(h -> h.getTotalCount() > 0)
+                .mapToLong(h -> h.getValueAtPercentile(99))
+                .sorted()
+                .toArray();
+
+        System.out.println();
+        System.out.printf("Clients : %d sur %d tickets, %d msg/s demandés pendant %d s%n", clients.size(), ticketCount, rate, durationSeconds);
+        System.out.printf("Envoyés : %d messages, %d indicateurs de saisie, %d erreurs%n", sent.get(), typingSent.get(), errors.get());
+        System.out.printf("Remises : %d (%.0f/s)%n", total.getTotalCount(), total.getTotalCount() / (double) durationSeconds);
+        System.out.printf("Latence envoi -> réception : p50=%.2f ms p99=%.2f ms p999=%.2f ms max=%.2f ms%n",
+                ms(total.getValueAtPercentile(50)), ms(total.getValueAtPercentile(99)),
+                ms(total.getValueAtPercentile(99.9)), ms(total.getMaxValue()));
+        if (subscriberP99.length > 0) {
+            System.out.printf("p99 par abonné : min=%.2f ms médiane=%.2f ms max=%.2f ms%n",
+                    ms(subscriberP99[0]), ms(subscriberP99[subscriberP99.length / 2]), ms(subscriberP99[subscriberP99.length - 1]));
+        }
+        System.out.printf("Mémoire serveur : +%d Mo de tas pour %d sessions, soit ~%d Ko/session (sans GC forcé, indicatif)%n",
+                heapDelta / (1024 * 1024), sessions, heapDelta / sessions / 1024);
+
+        Path csv = Path.of("target", "load-report",
+                "subscribers-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv");
+        Files.createDirectories(csv.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            out.println("subscriber,ticket,deliveries,p50_ms,p99_ms,p999_ms,max_ms");
+            for (int i = 0; i < clients.size(); i++) {
+                Histogram h = perSubscriber.get(i);
+                out.printf("%d,%s,%d,%.3f,%.3f,%.3f,%.3f%n", i, clients.get(i).ticketId, h.getTotalCount(),
+                        ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(99)),
+                        ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+            }
+        }
+        System.out.println("Histogrammes par abonné : " + csv);
+    }
+
+    private Map<String, UUID> fetchUsers() throws Exception {
+        JsonNode users = mapper.readTree(get("/api/mock/users"));
+        Map<String, UUID> byRole = new HashMap<>();
+        users.forEach(user -> byRole.putIfAbsent(user.path("role").asText(), UUID.fromString(user.path("id").asText())));
+        return byRole;
+    }
+
+    private List<UUID> createTickets(UUID clientId) throws Exception {
+        List<UUID> tickets = new ArrayList<>(ticketCount);
+        for (int i = 0; i < ticketCount; i++) {
+            String body = mapper.writeValueAsString(Map.of(
+                    "userId", clientId, "subject", "Charge " + i, "description", "Ticket du générateur de charge"));
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/tickets"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Création de ticket refusée : HTTP " + response.statusCode());
+            }
+            tickets.add(UUID.fromString(mapper.readTree(response.body()).path("id").asText()));
+        }
+        return tickets;
+    }
+
+    /**
+     * Valeur d'une métrique du serveur (0 si l'endpoint metrics n'est pas exposé)
+     */
+    private long serverMetric(String name, String tag) {
+        try {
+            String body = get("/actuator/metrics/" + name + (tag != null ? "?tag=" + tag : ""));
+            return mapper.readTree(body).path("measurements").path(0).path("value").asLong();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private String get(String path) throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + path + " : HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Client simulé : une session STOMP abonnée aux messages et à la saisie de son ticket
+     */
+    private final class SimulatedClient extends StompSessionHandlerAdapter {
+
+        private final int index;
+        private final UUID ticketId;
+        private final UUID userId;
+        private final Recorder latencies = new Recorder(MAX_LATENCY_NS, 3);
+        private StompSession session;
+
+        SimulatedClient(int index, UUID ticketId, UUID userId) {
+            this.index = index;
+            this.ticketId = ticketId;
+            this.userId = userId;
+        }
+
+        SimulatedClient start(StompSession session) {
+            this.session = session;
+            StompHeaders subscribeHeaders = new StompHeaders();
+            subscribeHeaders.setDestination("/topic/messages/" + ticketId);
+            subscribeHeaders.add("userId", userId.toString());
+            session.subscribe(subscribeHeaders, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    onMessages((byte[]) payload);
+                }
+            });
+            session.subscribe("/topic/typing/" + ticketId, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    // Les indicateurs de saisie ne portent pas d'horodatage : seul le trafic compte
+                }
+            });
+            send("/app/chat.join", "{\"ticketId\":\"" + ticketId + "\"}");
+            return this;
+        }
+
+        void sendMessage(long intendedNanos) {
+            send("/app/chat.send", "{\"ticketId\":\"" + ticketId + "\",\"senderId\":\"" + userId
+                    + "\",\"content\":\"" + intendedNanos + "\"}");
+        }
+
+        void sendTyping() {
+            send("/app/chat.typing", "{\"ticketId\":\"" + ticketId + "\",\"userId\":\"" + userId + "\",\"typing\":true}");
+        }
+
+        void resetLatencies() {
+            latencies.getIntervalHistogram();
+        }
+
+        void disconnect() {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+
+        /**
+         * Une trame contient un message ou un tableau de messages regroupés
+         */
+        private void onMessages(byte[] payload) {
+            long now = System.nanoTime();
+            try {
+                JsonNode node = mapper.readTree(payload);
+                for (JsonNode message : node.isArray() ? node : List.of(node)) {
+                    String content = message.path("content").asText();
+                    if (!content.isEmpty() && Character.isDigit(content.charAt(0))) {
+                        latencies.recordValue(Math.min(MAX_LATENCY_NS, Math.max(0, now - Long.parseLong(content))));
+                    }
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private void send(String destination, String body) {
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            session.send(headers, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            errors.incrementAndGet();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            errors.incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "client-" + index;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.cpierres.p13.poc.backend.BackendApplication;
+import com.cpierres.p13.poc.backend.TestTickets;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparaison de charge : threads de plateforme contre threads virtuels (spring.threads.virtual.enabled)
+ * Démarre successivement le backend dans chaque mode (profil "embedded" : H2 en mémoire, sans Redis),
+ * ouvre N sessions STOMP réparties sur T tickets, puis chaque ticket reçoit des messages via /app/chat.send.
+ * Mesure le débit, la latence envoi -> réception (p50/p99/p999) et la mémoire utilisée.
+ * Le mode virtuel n'est effectif que sur un JRE 21+ ; sur un JRE antérieur, les deux passes sont identiques.
+ *
+ * Lancement (ulimit -n >= 2 x sessions) :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.ThreadModeLoadComparison \
+ *       -Dexec.args="10000 500 20"
+ */
+public class ThreadModeLoadComparison {
+
+    /** Client de démonstration (MockAuthService) : expéditeur accepté par la validation des messages */
+    private static final UUID SENDER_ID = TestTickets.CLIENT;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int tickets = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int messagesPerTicket = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<String> report = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            report.add(run(virtual, sessions, tickets, messagesPerTicket));
+        }
+        System.out.println();
+        report.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtual, int sessionCount, int ticketCount, int messagesPerTicket) throws Exception {
+        String mode = virtual ? "virtual" : "platform";
+        ConfigurableApplicationContext context = start(mode, virtual);
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new SimpleMessageConverter());
+        try {
+            String url = "ws://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/ws/websocket";
+            List<UUID> tickets = createTickets(context.getBean(SupportTicketService.class), ticketCount);
+
+            int sessionsPerTicket = Math.max(1, sessionCount / ticketCount);
+            long expected = (long) ticketCount * sessionsPerTicket * messagesPerTicket;
+            CountDownLatch received = new CountDownLatch((int) expected);
+            ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+            System.gc();
+            long heapBefore = usedHeap();
+            List<StompSession> sessions = connect(client, url, tickets, sessionsPerTicket, received, latencies);
+            Thread.sleep(1000); // Laisser les SUBSCRIBE atteindre le broker
+            System.gc();
+            long bytesPerSession = (usedHeap() - heapBefore) / Math.max(1, sessions.size());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < messagesPerTicket; i++) {
+                for (int t = 0; t < tickets.size(); t++) {
+                    send(sessions.get(t * sessionsPerTicket), tickets.get(t));
+                }
+            }
+            boolean complete = received.await(5, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            sessions.forEach(StompSession::disconnect);
+            return String.format("%-8s sessions=%d messages=%d remises=%d%s débit=%.0f remises/s p50=%.2fms p99=%.2fms p999=%.2fms mémoire/session=%d o",
+                    mode, sessions.size(), ticketCount * messagesPerTicket, sorted.length, complete ? "" : " (incomplet)",
+                    sorted.length / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    bytesPerSession);
+        } finally {
+            client.stop();
+            context.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String name, boolean virtual) {
+        return new SpringApplicationBuilder(BackendApplication.class).profiles("embedded").run(
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--server.tomcat.max-connections=" + Integer.MAX_VALUE,
+                "--logging.level.root=WARN");
+    }
+
+    private static List<UUID> createTickets(SupportTicketService ticketService, int count) {
+        List<UUID> tickets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tickets.add(TestTickets.createTicket(ticketService, SENDER_ID, "Charge " + i).getId());
+        }
+        return tickets;
+    }
+
+    private static List<StompSession> connect(WebSocketStompClient client, String url, List<UUID> tickets,
+                                              int sessionsPerTicket, CountDownLatch received,
+                                              ConcurrentLinkedQueue<Long> latencies) throws Exception {
+        List<CompletableFuture<StompSession>> pending = new ArrayList<>();
+        for (int i = 0; i < tickets.size() * sessionsPerTicket; i++) {
+            pending.add(client.connectAsync(url, new StompSessionHandlerAdapter() {}));
+        }
+        List<StompSession> sessions = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            StompSession session = pending.get(i).get(1, TimeUnit.MINUTES);
+            session.subscribe("/topic/messages/" + tickets.get(i / sessionsPerTicket), new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    long now = System.nanoTime();
+                    for (long sentAt : sentTimestamps((byte[]) payload)) {
+                        latencies.add(now - sentAt);
+                        received.countDown();
+                    }
+                }
+            });
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private static void send(StompSession session, UUID ticketId) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/chat.send");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        String body = "{\"ticketId\":\"" + ticketId + "\",\"senderId\":\"" + SENDER_ID + "\",\"content\":\"" + System.nanoTime() + "\"}";
+        session.send(headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Horodatages d'envoi portés par le contenu ; une trame peut regrouper plusieurs messages
+     */
+    private static long[] sentTimestamps(byte[] payload) {
+        try {
+            JsonNode node = MAPPER.readTree(payload);
+            List<JsonNode> messages = new ArrayList<>();
+            if (node.isArray()) {
+                node.forEach(messages::add);
+            } else {
+                messages.add(node);
+            }
+            return messages.stream().mapToLong(m -> Long.parseLong(m.get("content").asText())).toArray();
+        } catch (Exception e) {
+            return new long[0];
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.cpierres.p13.poc.backend.entity.TimeOrderedUuidGenerator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark d'insertion : clés primaires UUID aléatoires (v4) contre UUID ordonnés dans le temps (v7)
+ * Mesure le débit d'insertion par lots JDBC et la taille finale de l'index de clé primaire.
+ *
+ * Lancement (PostgreSQL du docker-compose) :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.UuidInsertBenchmark -Dexec.args="10000000"
+ */
+public class UuidInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        String url = "jdbc:postgresql://" + env("POSTGRES_HOST", "localhost") + ":" + env("POSTGRES_PORT", "5432") + "/support_db";
+
+        try (Connection connection = DriverManager.getConnection(url, env("POSTGRES_USER", "postgres"), env("POSTGRES_PASSWORD", "password"))) {
+            connection.setAutoCommit(false);
+            run(connection, "bench_uuid_random", rows, UUID::randomUUID);
+            run(connection, "bench_uuid_v7", rows, TimeOrderedUuidGenerator::next);
+        }
+    }
+
+    private static void run(Connection connection, String table, long rows, Supplier<UUID> ids) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, ticket_id uuid NOT NULL, content varchar(1000) NOT NULL)");
+        }
+        connection.commit();
+
+        UUID ticketId = UUID.randomUUID();
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (id, ticket_id, content) VALUES (?, ?, ?)")) {
+            for (long i = 1; i <= rows; i++) {
+                insert.setObject(1, ids.get());
+                insert.setObject(2, ticketId);
+                insert.setString(3, "Message de test " + i);
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0 || i == rows) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_size_pretty(pg_relation_size('" + table + "_pkey'))")) {
+            rs.next();
+            System.out.printf("%-18s %,d lignes en %.1f s : %,.0f lignes/s, index PK %s%n",
+                    table, rows, seconds, rows / seconds, rs.getString(1));
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
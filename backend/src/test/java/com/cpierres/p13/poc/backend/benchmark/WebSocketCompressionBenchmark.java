@@ -0,0 +1,121 @@
+package com.cpierres.p13.poc.backend.benchmark;
+
+import com.cpierres.p13.poc.backend.config.CompactPayloadNegotiator;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Coût CPU de la compression permessage-deflate contre octets économisés, par transport
+ * Les trames STOMP MESSAGE de /topic/messages/{ticketId} sont construites comme sur le fil :
+ * WebSocket natif (/ws-native) en JSON ou en CBOR, et transport websocket de SockJS (a["..."] échappé).
+ * Chaque trame est compressée comme le fait Tomcat : un compresseur par session, vidé à chaque message,
+ * avec contexte conservé entre messages (défaut) ou réinitialisé (server_no_context_takeover).
+ *
+ * Lancement :
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.cpierres.p13.poc.backend.benchmark.WebSocketCompressionBenchmark -Dexec.args="200000"
+ */
+public class WebSocketCompressionBenchmark {
+
+    private static final byte[] SYNC_FLUSH_TRAILER = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+    private static final String[] WORDS = ("bonjour merci commande livraison colis retard remboursement facture compte "
+            + "mot de passe connexion adresse numéro réservation véhicule agence client dossier suivi hier demain "
+            + "semaine vérifier envoyer recevoir annuler modifier confirmer problème erreur paiement carte bancaire "
+            + "délai possible urgent message réponse service équipe disponible informations je vous nous le la les "
+            + "un une des est pas bien avec pour dans sur votre notre").split(" ");
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        ObjectMapper json = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper cbor = CompactPayloadNegotiator.cborMapper(json);
+        List<ChatMessage> messages = PayloadFormatComparison.messages(1000);
+        // Textes variés : les trames ne se répètent pas d'un message à l'autre
+        Random random = new Random(7);
+        for (ChatMessage message : messages) {
+            StringBuilder content = new StringBuilder();
+            for (int word = 1 + random.nextInt(random.nextBoolean() ? 8 : 40); word > 0; word--) {
+                content.append(WORDS[random.nextInt(WORDS.length)]).append(word > 1 ? " " : ".");
+            }
+            message.setContent(content.toString());
+        }
+
+        List<byte[]> nativeJson = new ArrayList<>();
+        List<byte[]> nativeCbor = new ArrayList<>();
+        List<byte[]> sockJs = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            byte[] jsonPayload = json.writeValueAsBytes(message);
+            nativeJson.add(stompFrame(message, i, "application/json", jsonPayload));
+            nativeCbor.add(stompFrame(message, i, CompactPayloadNegotiator.CBOR_FRAME.toString(), cbor.writeValueAsBytes(message)));
+            // SockJS : la trame STOMP est une chaîne JSON dans un tableau préfixé par "a"
+            String frame = new String(stompFrame(message, i, "application/json", jsonPayload), StandardCharsets.UTF_8);
+            sockJs.add(("a" + json.writeValueAsString(List.of(frame))).getBytes(StandardCharsets.UTF_8));
+        }
+
+        System.out.printf("%-22s %-22s %10s %8s %12s%n", "transport", "compression", "octets", "gain", "µs/trame");
+        for (Object[] transport : new Object[][]{{"natif JSON", nativeJson}, {"natif CBOR", nativeCbor}, {"SockJS websocket", sockJs}}) {
+            @SuppressWarnings("unchecked")
+            List<byte[]> frames = (List<byte[]>) transport[1];
+            double raw = frames.stream().mapToInt(frame -> frame.length).average().orElse(0);
+            System.out.printf("%-22s %-22s %10.1f %8s %12s%n", transport[0], "aucune", raw, "-", "-");
+            run((String) transport[0], "deflate (contexte)", frames, raw, iterations, true);
+            run((String) transport[0], "deflate (sans contexte)", frames, raw, iterations, false);
+        }
+    }
+
+    private static void run(String transport, String label, List<byte[]> frames, double raw, int iterations,
+                            boolean contextTakeover) {
+        byte[] buffer = new byte[64 * 1024];
+        // Préchauffage puis mesure
+        for (int pass = 0; pass < 2; pass++) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                if (!contextTakeover) {
+                    deflater.reset();
+                }
+                bytes += compress(deflater, frames.get(i % frames.size()), buffer);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / iterations;
+            deflater.end();
+            if (pass == 1) {
+                double average = (double) bytes / iterations;
+                System.out.printf("%-22s %-22s %10.1f %7.0f%% %12.2f%n", transport, label, average,
+                        100 * (1 - average / raw), micros);
+            }
+        }
+    }
+
+    /**
+     * Taille de la trame compressée telle qu'émise : vidage SYNC_FLUSH, suffixe 00 00 ff ff retiré (RFC 7692)
+     */
+    private static int compress(Deflater deflater, byte[] frame, byte[] buffer) {
+        deflater.setInput(frame);
+        int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        boolean trailer = length >= 4 && Arrays.equals(buffer, length - 4, length, SYNC_FLUSH_TRAILER, 0, 4);
+        return trailer ? length - 4 : length;
+    }
+
+    private static byte[] stompFrame(ChatMessage message, int index, String contentType, byte[] payload) {
+        String headers = "MESSAGE\n"
+                + "destination:/topic/messages/" + message.getTicketId() + "\n"
+                + "content-type:" + contentType + "\n"
+                + "subscription:sub-0\n"
+                + "message-id:4f1c2a7e-" + index + "\n"
+                + "content-length:" + payload.length + "\n\n";
+        byte[] head = headers.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = Arrays.copyOf(head, head.length + payload.length + 1);
+        System.arraycopy(payload, 0, frame, head.length, payload.length);
+        return frame;
+    }
+}
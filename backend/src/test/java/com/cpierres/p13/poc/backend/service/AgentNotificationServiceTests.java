@@ -0,0 +1,112 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.dto.AgentNotificationDigest;
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.dto.TicketActivity;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Notifications des agents : une trame récapitulative par agent et par fenêtre, messages de l'agent exclus
+ */
+class AgentNotificationServiceTests {
+
+    private static final UUID CLIENT = UUID.randomUUID();
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 15, 10, 0);
+
+    private final MockUserInfo marie = new MockUserInfo(UUID.randomUUID(), "marie.agent@example.com", "Marie", "Agent", "AGENT");
+    private final MockUserInfo paul = new MockUserInfo(UUID.randomUUID(), "paul.agent@example.com", "Paul", "Agent", "AGENT");
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final AgentNotificationService notifications;
+
+    AgentNotificationServiceTests() {
+        UserDirectory userDirectory = mock(UserDirectory.class);
+        when(userDirectory.findByFullName(anyString())).thenReturn(Optional.empty());
+        when(userDirectory.findByFullName(marie.getFullName())).thenReturn(Optional.of(marie));
+        when(userDirectory.findByFullName(paul.getFullName())).thenReturn(Optional.of(paul));
+        notifications = new AgentNotificationService(messagingTemplate, userDirectory, 1000, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void messagesOfAWindowAreSentAsOneDigestPerAgent() {
+        SupportTicket invoice = ticket("Facture erronée", marie);
+        SupportTicket delivery = ticket("Livraison en retard", marie);
+        SupportTicket refund = ticket("Remboursement", paul);
+        notifications.recordMessage(invoice, message(CLIENT, NOW.plusSeconds(2)));
+        notifications.recordMessage(invoice, message(CLIENT, NOW.plusSeconds(1)));
+        notifications.recordMessage(delivery, message(CLIENT, NOW.plusSeconds(3)));
+        notifications.recordMessage(refund, message(CLIENT, NOW));
+
+        notifications.flush();
+
+        AgentNotificationDigest digest = digestSentTo(marie);
+        assertEquals(3, digest.getTotalMessages());
+        List<TicketActivity> activities = digest.getTickets().stream()
+                .sorted(Comparator.comparing(TicketActivity::getSubject)).toList();
+        assertEquals(List.of("Facture erronée", "Livraison en retard"), activities.stream().map(TicketActivity::getSubject).toList());
+        assertEquals(2, activities.get(0).getNewMessages());
+        assertEquals(NOW.plusSeconds(2), activities.get(0).getLastMessageAt());
+        assertEquals(1, digestSentTo(paul).getTotalMessages());
+
+        // Fenêtre suivante sans activité : aucune trame
+        notifications.flush();
+        verify(messagingTemplate, times(2)).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void ownMessagesAndUnresolvedAgentsAreNotNotified() {
+        notifications.recordMessage(ticket("Facture erronée", marie), message(marie.getId(), NOW));
+        notifications.recordMessage(ticket("Sans agent", null), message(CLIENT, NOW));
+        SupportTicket unknownAgent = ticket("Agent parti", null);
+        unknownAgent.setAssignedAgent("Agent Inconnu");
+        notifications.recordMessage(unknownAgent, message(CLIENT, NOW));
+
+        notifications.flush();
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    private AgentNotificationDigest digestSentTo(MockUserInfo agent) {
+        ArgumentCaptor<AgentNotificationDigest> digest = ArgumentCaptor.forClass(AgentNotificationDigest.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(agent.getId().toString()),
+                eq(AgentNotificationService.NOTIFICATIONS_QUEUE), digest.capture());
+        return digest.getValue();
+    }
+
+    private static SupportTicket ticket(String subject, MockUserInfo agent) {
+        SupportTicket ticket = new SupportTicket();
+        ticket.setId(UUID.randomUUID());
+        ticket.setSubject(subject);
+        ticket.setAssignedAgent(agent != null ? agent.getFullName() : null);
+        return ticket;
+    }
+
+    private static ChatMessage message(UUID senderId, LocalDateTime timestamp) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSenderId(senderId);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+}
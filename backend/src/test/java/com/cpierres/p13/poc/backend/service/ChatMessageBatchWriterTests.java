@@ -0,0 +1,169 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.cpierres.p13.poc.backend.TestTickets.CLIENT;
+import static com.cpierres.p13.poc.backend.TestTickets.createTicket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Écriture différée : acquittement après commit, insertion message par message d'un lot refusé,
+ * envois simultanés plus nombreux que les connexions du pool, délai d'acquittement dépassé pendant l'écriture d'un lot
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:write-behind;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "chat.persistence.write-behind.enabled=true",
+        "chat.persistence.write-behind.flush-window-ms=20"
+})
+@ActiveProfiles("embedded")
+class ChatMessageBatchWriterTests {
+
+    @Autowired
+    private ChatMessageService messageService;
+
+    @Autowired
+    private SupportTicketService ticketService;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Autowired
+    private ChatMessageBatchWriter batchWriter;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void acknowledgementCarriesTheCommittedMessage() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+
+        ChatMessage acknowledged = batchWriter.submit(message(ticketId, "bonjour", null)).get(5, TimeUnit.SECONDS);
+
+        assertNotNull(acknowledged.getId());
+        assertEquals(1L, acknowledged.getSequence());
+        assertEquals("bonjour", messageRepository.findById(acknowledged.getId()).orElseThrow().getContent());
+        assertEquals(1L, ticketService.reloadTicket(ticketId).getMessageCount());
+    }
+
+    @Test
+    void batchRejectedByAConstraintIsRetriedMessageByMessage() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        batchWriter.submit(message(ticketId, "premier envoi", "client-1")).get(5, TimeUnit.SECONDS);
+
+        // Même lot : la clé client déjà enregistrée fait échouer l'insertion groupée
+        CompletableFuture<ChatMessage> before = batchWriter.submit(message(ticketId, "avant", null));
+        CompletableFuture<ChatMessage> duplicate = batchWriter.submit(message(ticketId, "renvoi", "client-1"));
+        CompletableFuture<ChatMessage> after = batchWriter.submit(message(ticketId, "après", null));
+
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, rejected.getCause());
+        assertEquals(2L, before.get(5, TimeUnit.SECONDS).getSequence());
+        assertEquals(3L, after.get(5, TimeUnit.SECONDS).getSequence());
+        assertEquals(3, messageRepository.countByTicketId(ticketId));
+        assertEquals(3L, ticketService.reloadTicket(ticketId).getMessageCount());
+    }
+
+    @Test
+    void messageTakenInABatchWaitsForItsCommitBeyondTheAcknowledgementTimeout() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        long ackTimeoutMs = 200;
+        Object defaultTimeout = ReflectionTestUtils.getField(batchWriter, "ackTimeoutMs");
+        ReflectionTestUtils.setField(batchWriter, "ackTimeoutMs", ackTimeoutMs);
+        CountDownLatch locked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Ligne du ticket verrouillée : le lot attend la réservation des numéros au-delà du délai
+            Future<?> lock = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM support_tickets WHERE id = ? FOR UPDATE", ticketId);
+                locked.countDown();
+                try {
+                    Thread.sleep(ackTimeoutMs * 4);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            ChatMessage sent = messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "bonjour"));
+            lock.get(5, TimeUnit.SECONDS);
+
+            assertEquals(1L, sent.getSequence());
+            assertEquals(List.of(sent.getId()), recentMessageCache.findLatest(ticketId, 1).orElseThrow()
+                    .stream().map(ChatMessage::getId).toList());
+            assertEquals(1, messageRepository.countByTicketId(ticketId));
+        } finally {
+            ReflectionTestUtils.setField(batchWriter, "ackTimeoutMs", defaultTimeout);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentSendersBeyondPoolSizeAreAllAcknowledged() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        int senders = 24;
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        try {
+            List<Future<ChatMessage>> sends = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                String content = "message " + i;
+                sends.add(executor.submit(() -> messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, content))));
+            }
+            List<ChatMessage> saved = new ArrayList<>();
+            for (Future<ChatMessage> send : sends) {
+                saved.add(send.get(10, TimeUnit.SECONDS));
+            }
+
+            Set<Long> sequences = saved.stream().map(ChatMessage::getSequence).collect(Collectors.toSet());
+            assertEquals(senders, sequences.size());
+            assertEquals(senders, messageRepository.countByTicketId(ticketId));
+            assertEquals(senders, ticketService.reloadTicket(ticketId).getMessageCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ChatMessage message(UUID ticketId, String content, String clientMessageId) {
+        ChatMessage message = new ChatMessage();
+        message.setTicketId(ticketId);
+        message.setSenderId(CLIENT);
+        message.setContent(content);
+        message.setClientMessageId(clientMessageId);
+        return message;
+    }
+}
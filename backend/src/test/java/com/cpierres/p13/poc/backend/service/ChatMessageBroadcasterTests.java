@@ -0,0 +1,116 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Diffusion des messages : trame immédiate sans fenêtre, regroupement par ticket, découpage des trames trop longues
+ */
+class ChatMessageBroadcasterTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private ChatMessageBroadcaster broadcaster;
+
+    @AfterEach
+    void stopBroadcaster() {
+        broadcaster.stop();
+    }
+
+    @Test
+    void withoutWindowEachMessageIsSentAsAnObject() throws Exception {
+        broadcaster = broadcaster(0, 50);
+        UUID ticketId = UUID.randomUUID();
+
+        broadcaster.broadcast(message(ticketId, "bonjour"));
+
+        List<JsonNode> frames = framesSentTo(ticketId, 1);
+        assertTrue(frames.get(0).isObject());
+        assertEquals("bonjour", frames.get(0).get("content").asText());
+    }
+
+    @Test
+    void messagesOfATicketWithinTheWindowShareOneFrame() throws Exception {
+        broadcaster = broadcaster(100, 50);
+        UUID busy = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+
+        broadcaster.broadcast(message(busy, "un"));
+        broadcaster.broadcast(message(quiet, "seul"));
+        broadcaster.broadcast(message(busy, "deux"));
+        broadcaster.broadcast(message(busy, "trois"));
+
+        JsonNode frame = framesSentTo(busy, 1).get(0);
+        assertTrue(frame.isArray());
+        assertEquals(List.of("un", "deux", "trois"), contents(frame));
+        assertTrue(framesSentTo(quiet, 1).get(0).isObject());
+    }
+
+    @Test
+    void longWindowIsSplitIntoFramesOfBoundedSize() throws Exception {
+        broadcaster = broadcaster(100, 2);
+        UUID ticketId = UUID.randomUUID();
+
+        for (int i = 1; i <= 5; i++) {
+            broadcaster.broadcast(message(ticketId, "message " + i));
+        }
+
+        List<JsonNode> frames = framesSentTo(ticketId, 3);
+        assertEquals(List.of("message 1", "message 2"), contents(frames.get(0)));
+        assertEquals(List.of("message 3", "message 4"), contents(frames.get(1)));
+        assertEquals("message 5", frames.get(2).get("content").asText());
+    }
+
+    private ChatMessageBroadcaster broadcaster(long coalesceMs, int maxMessagesPerFrame) {
+        ChatMessageBroadcaster created = new ChatMessageBroadcaster(messagingTemplate, objectMapper, coalesceMs,
+                maxMessagesPerFrame, new SimpleMeterRegistry());
+        created.start();
+        return created;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<JsonNode> framesSentTo(UUID ticketId, int count) throws Exception {
+        ArgumentCaptor<Message<byte[]>> frames = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, timeout(2000).times(count))
+                .send(eq(ChatMessageBroadcaster.MESSAGES_TOPIC_PREFIX + ticketId), frames.capture());
+        List<JsonNode> payloads = new ArrayList<>();
+        for (Message<byte[]> frame : frames.getAllValues()) {
+            payloads.add(objectMapper.readTree(frame.getPayload()));
+        }
+        return payloads;
+    }
+
+    private static List<String> contents(JsonNode frame) {
+        List<String> contents = new ArrayList<>();
+        frame.forEach(message -> contents.add(message.get("content").asText()));
+        return contents;
+    }
+
+    private static ChatMessage message(UUID ticketId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setTicketId(ticketId);
+        message.setContent(content);
+        message.setTimestamp(LocalDateTime.now());
+        return message;
+    }
+}
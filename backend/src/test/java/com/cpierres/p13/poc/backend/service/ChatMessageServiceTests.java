@@ -0,0 +1,213 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.controller.ChatRestController;
+import com.cpierres.p13.poc.backend.dto.MessagePage;
+import com.cpierres.p13.poc.backend.dto.MessageResumePage;
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.cpierres.p13.poc.backend.TestTickets.CLIENT;
+import static com.cpierres.p13.poc.backend.TestTickets.createTicket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Envoi et lecture des messages d'un ticket (insertion directe)
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:chat-messages;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("embedded")
+class ChatMessageServiceTests {
+
+    @Autowired
+    private ChatMessageService messageService;
+
+    @Autowired
+    private SupportTicketService ticketService;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatRestController restController;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private TicketCache ticketCache;
+
+    @Test
+    void concurrentSendsGetContiguousSequences() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        int senders = 12;
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        try {
+            List<Future<ChatMessage>> sends = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                String content = "message " + i;
+                sends.add(executor.submit(() -> messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, content))));
+            }
+            Set<Long> sequences = new HashSet<>();
+            for (Future<ChatMessage> send : sends) {
+                sequences.add(send.get(10, TimeUnit.SECONDS).getSequence());
+            }
+            assertEquals(LongStream.rangeClosed(1, senders).boxed().collect(Collectors.toSet()), sequences);
+            assertEquals(senders, ticketService.reloadTicket(ticketId).getLastSequence());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void resumeReturnsTheMessagesAfterASequenceFromCacheOrDatabase() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<UUID> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sent.add(messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "message " + i)).getId());
+        }
+
+        for (boolean cached : new boolean[]{true, false}) {
+            if (!cached) {
+                recentMessageCache.invalidate(ticketId);
+            }
+            MessageResumePage first = messageService.resumeTicketHistory(ticketId, 1, 2);
+            assertEquals(sent.subList(1, 3), first.getMessages().stream().map(ChatMessage::getId).toList());
+            assertEquals(3, first.getLastSequence());
+            assertTrue(first.isHasMore());
+
+            MessageResumePage rest = messageService.resumeTicketHistory(ticketId, first.getLastSequence(), 10);
+            assertEquals(sent.subList(3, 5), rest.getMessages().stream().map(ChatMessage::getId).toList());
+            assertFalse(rest.isHasMore());
+
+            MessageResumePage upToDate = messageService.resumeTicketHistory(ticketId, 5, 10);
+            assertTrue(upToDate.getMessages().isEmpty());
+            assertEquals(5, upToDate.getLastSequence());
+        }
+    }
+
+    @Test
+    void messagesOfATicketPredatingSequencesAreNumberedOnFirstResume() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<UUID> sent = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sent.add(messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "avant " + i)).getId());
+        }
+        // Ticket antérieur à la numérotation
+        jdbcTemplate.update("UPDATE chat_messages SET sequence_number = NULL WHERE ticket_id = ?", ticketId);
+        jdbcTemplate.update("UPDATE support_tickets SET last_sequence = NULL WHERE id = ?", ticketId);
+        ticketCache.invalidate(ticketId);
+        recentMessageCache.invalidate(ticketId);
+
+        MessageResumePage resumed = messageService.resumeTicketHistory(ticketId, 0, 10);
+
+        assertEquals(sent, resumed.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(List.of(1L, 2L, 3L), resumed.getMessages().stream().map(ChatMessage::getSequence).toList());
+        assertEquals(4L, messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "après")).getSequence());
+        assertThrows(IllegalArgumentException.class, () -> messageService.resumeTicketHistory(ticketId, -1, 10));
+    }
+
+    @Test
+    void previousCursorIsNullOnceThePageReachesTheStartOfTheConversation() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<UUID> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sent.add(messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "message " + i)).getId());
+        }
+
+        MessagePage latest = messageService.getTicketHistoryPage(ticketId, null, null, 3);
+        assertEquals(sent.subList(2, 5), latest.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(sent.get(2), latest.getPreviousCursor());
+        assertTrue(latest.isHasMore());
+
+        MessagePage oldest = messageService.getTicketHistoryPage(ticketId, latest.getPreviousCursor(), null, 3);
+        assertEquals(sent.subList(0, 2), oldest.getMessages().stream().map(ChatMessage::getId).toList());
+        assertNull(oldest.getPreviousCursor());
+        assertFalse(oldest.isHasMore());
+
+        // Lecture vers le présent : les messages plus anciens restent accessibles
+        MessagePage newer = messageService.getTicketHistoryPage(ticketId, null, sent.get(3), 3);
+        assertEquals(List.of(sent.get(4)), newer.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(sent.get(4), newer.getPreviousCursor());
+        MessagePage empty = messageService.getTicketHistoryPage(ticketId, null, sent.get(4), 3);
+        assertEquals(sent.get(4), empty.getPreviousCursor());
+    }
+
+    @Test
+    void historyPageOfUnknownTicketIsNotFound() {
+        assertEquals(HttpStatus.NOT_FOUND, restController.getMessagePageByTicketId(UUID.randomUUID(), null, null, 10).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restController.getMessagePageByTicketId(
+                createTicket(ticketService).getId(), null, null, 0).getStatusCode());
+    }
+
+    @Test
+    void sendToATicketClosedAfterItWasCachedIsRefused() {
+        UUID ticketId = createTicket(ticketService).getId();
+        // Ticket mis en cache par l'envoi
+        messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "bonjour"));
+
+        ticketService.resolveTicket(ticketId, "Commande retrouvée");
+        ticketService.closeTicket(ticketId);
+
+        assertThrows(IllegalStateException.class,
+                () -> messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "encore là ?")));
+        assertEquals(TicketStatus.CLOSED, ticketService.getTicketById(ticketId).getStatus());
+    }
+
+    @Test
+    void legacyStatsInitializedWhileMessagesAreSentCountEveryMessageOnce() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        for (int i = 0; i < 5; i++) {
+            messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "avant " + i));
+        }
+        // Ticket antérieur aux compteurs
+        jdbcTemplate.update("UPDATE support_tickets SET message_count = NULL, user_message_count = NULL, " +
+                "system_message_count = NULL, first_message_at = NULL, last_message_at = NULL WHERE id = ?", ticketId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String content = "pendant " + i;
+                calls.add(executor.submit(() -> messageService.getTicketMessageStats(ticketId)));
+                calls.add(executor.submit(() -> messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, content))));
+            }
+            for (Future<?> call : calls) {
+                call.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ChatMessageService.MessageStats stats = messageService.getTicketMessageStats(ticketId);
+        assertEquals(21, messageRepository.countByTicketId(ticketId));
+        assertEquals(21, stats.getTotalMessages());
+        assertEquals(21, stats.getUserMessages());
+        assertEquals(0, stats.getSystemMessages());
+    }
+}
@@ -0,0 +1,165 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache des messages récents : lectures servies seulement si la plage est couverte, éviction LRU des tickets
+ */
+class RecentMessageCacheTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 15, 10, 0);
+
+    private final UUID ticketId = UUID.randomUUID();
+
+    @Test
+    void seededHistoryIsCompleteUntilTheBufferOverflows() {
+        RecentMessageCache cache = cache(3, 100, 1000);
+        List<ChatMessage> history = messages(ticketId, 1, 2);
+        cache.seed(ticketId, history);
+
+        assertEquals(ids(history), ids(cache.findAll(ticketId).orElseThrow()));
+        // Historique complet : une page plus grande que le tampon est couverte
+        assertEquals(ids(history), ids(cache.findLatest(ticketId, 10).orElseThrow()));
+
+        List<ChatMessage> newer = messages(ticketId, 3, 2);
+        newer.forEach(cache::append);
+
+        assertTrue(cache.findAll(ticketId).isEmpty());
+        assertEquals(List.of(newer.get(0).getId(), newer.get(1).getId()), ids(cache.findLatest(ticketId, 2).orElseThrow()));
+        assertTrue(cache.findLatest(ticketId, 4).isEmpty());
+    }
+
+    @Test
+    void historyLargerThanTheBufferIsNotSeeded() {
+        RecentMessageCache cache = cache(3, 100, 1000);
+        cache.seed(ticketId, messages(ticketId, 1, 4));
+
+        assertTrue(cache.findAll(ticketId).isEmpty());
+        assertEquals(0, cache.ticketCount());
+    }
+
+    @Test
+    void readSinceIsServedOnlyIfAnOlderMessageIsStillBuffered() {
+        RecentMessageCache cache = cache(10, 100, 1000);
+        List<ChatMessage> appended = messages(ticketId, 1, 3);
+        appended.forEach(cache::append);
+
+        // Tampon alimenté par les seules écritures : rien ne garantit l'absence de messages antérieurs
+        assertTrue(cache.findSince(ticketId, NOW).isEmpty());
+        assertEquals(ids(appended.subList(1, 3)), ids(cache.findSince(ticketId, NOW.plusSeconds(2)).orElseThrow()));
+    }
+
+    @Test
+    void resumeAfterSequenceRequiresContiguousNumbers() {
+        RecentMessageCache cache = cache(10, 100, 1000);
+        List<ChatMessage> appended = messages(ticketId, 5, 3);
+        appended.forEach(cache::append);
+
+        assertEquals(ids(appended.subList(1, 3)), ids(cache.findAfterSequence(ticketId, 5).orElseThrow()));
+        assertTrue(cache.findAfterSequence(ticketId, 7).orElseThrow().isEmpty());
+        // Numéros 1 à 4 absents du tampon
+        assertTrue(cache.findAfterSequence(ticketId, 3).isEmpty());
+
+        ChatMessage afterGap = messages(ticketId, 10, 1).get(0);
+        cache.append(afterGap);
+        assertTrue(cache.findAfterSequence(ticketId, 5).isEmpty());
+    }
+
+    @Test
+    void bufferMissingACommittedMessageIsNotServed() {
+        RecentMessageCache cache = cache(10, 100, 1000);
+        cache.seed(ticketId, messages(ticketId, 1, 3));
+        // Numéro 4 validé sans passer par le cache
+        List<ChatMessage> afterGap = messages(ticketId, 5, 2);
+        afterGap.forEach(cache::append);
+
+        assertTrue(cache.findAll(ticketId).isEmpty());
+        assertTrue(cache.findSince(ticketId, NOW).isEmpty());
+        assertTrue(cache.findLatest(ticketId, 3).isEmpty());
+        // Suffixe contigu toujours servi
+        assertEquals(ids(afterGap), ids(cache.findLatest(ticketId, 2).orElseThrow()));
+    }
+
+    @Test
+    void historyNotNumberedFromTheFirstMessageIsNotSeeded() {
+        RecentMessageCache cache = cache(10, 100, 1000);
+        cache.seed(ticketId, messages(ticketId, 2, 3));
+        List<ChatMessage> unnumbered = messages(ticketId, 1, 2);
+        unnumbered.get(1).setSequence(null);
+        UUID legacy = UUID.randomUUID();
+        cache.seed(legacy, unnumbered);
+
+        assertTrue(cache.findAll(ticketId).isEmpty());
+        assertTrue(cache.findAll(legacy).isEmpty());
+        assertEquals(0, cache.ticketCount());
+    }
+
+    @Test
+    void leastRecentlyUsedTicketsAreEvictedBeyondTheGlobalLimits() {
+        RecentMessageCache cache = cache(10, 2, 1000);
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        cache.seed(ticketId, messages(ticketId, 1, 1));
+        cache.seed(second, messages(second, 1, 1));
+        cache.findAll(ticketId);
+
+        cache.seed(third, messages(third, 1, 1));
+
+        assertEquals(2, cache.ticketCount());
+        assertTrue(cache.findAll(ticketId).isPresent());
+        assertTrue(cache.findAll(second).isEmpty());
+
+        RecentMessageCache bounded = cache(10, 100, 3);
+        bounded.seed(ticketId, messages(ticketId, 1, 2));
+        bounded.seed(second, messages(second, 1, 2));
+        assertTrue(bounded.findAll(ticketId).isEmpty());
+        assertTrue(bounded.findAll(second).isPresent());
+    }
+
+    @Test
+    void invalidatedTicketIsNoLongerServed() {
+        RecentMessageCache cache = cache(10, 100, 1000);
+        cache.seed(ticketId, messages(ticketId, 1, 2));
+
+        cache.invalidate(ticketId);
+
+        assertTrue(cache.findAll(ticketId).isEmpty());
+        assertEquals(0, cache.ticketCount());
+    }
+
+    private static RecentMessageCache cache(int perTicketCapacity, int maxTickets, int maxMessages) {
+        return new RecentMessageCache(true, perTicketCapacity, maxTickets, maxMessages, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Messages numérotés à partir de firstSequence, horodatés à NOW + numéro (en secondes)
+     */
+    private static List<ChatMessage> messages(UUID ticketId, long firstSequence, int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long sequence = firstSequence + i;
+            ChatMessage message = new ChatMessage();
+            message.setId(UUID.randomUUID());
+            message.setTicketId(ticketId);
+            message.setContent("message " + sequence);
+            message.setTimestamp(NOW.plusSeconds(sequence));
+            message.setSequence(sequence);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<UUID> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+}
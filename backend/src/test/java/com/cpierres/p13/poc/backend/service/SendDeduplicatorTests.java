@@ -0,0 +1,175 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.controller.ChatWebSocketController;
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.cpierres.p13.poc.backend.TestTickets.CLIENT;
+import static com.cpierres.p13.poc.backend.TestTickets.createTicket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Renvois d'un même message par le client (fenêtre mémoire de 2 clés, plus petite que les envois en cours)
+ * et acquittement RECEIPT des envois
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:deduplication;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "chat.idempotency.window-size=2"
+})
+@ActiveProfiles("embedded")
+class SendDeduplicatorTests {
+
+    @Autowired
+    private ChatMessageService messageService;
+
+    @Autowired
+    private SupportTicketService ticketService;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Autowired
+    private ChatWebSocketController webSocketController;
+
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    @Test
+    void retryOfAKeyThatLeftTheWindowReturnsTheStoredMessage() {
+        UUID ticketId = createTicket(ticketService).getId();
+        ChatMessage first = messageService.sendMessage(request(ticketId, "client-a", "bonjour"));
+        // Fenêtre de 2 clés : client-a en est évincée
+        messageService.sendMessage(request(ticketId, "client-b", "toujours là ?"));
+        messageService.sendMessage(request(ticketId, "client-c", "merci"));
+
+        ChatMessage retried = messageService.sendMessage(request(ticketId, "client-a", "bonjour"));
+        ChatMessage recent = messageService.sendMessage(request(ticketId, "client-c", "merci"));
+
+        assertEquals(first.getId(), retried.getId());
+        assertEquals(first.getSequence(), retried.getSequence());
+        assertEquals("client-c", recent.getClientMessageId());
+        assertEquals(3, messageRepository.countByTicketId(ticketId));
+    }
+
+    @Test
+    void receiptOfASendCarriesTheStoredMessageToTheSendingSession() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<Message<?>> receipts = new CopyOnWriteArrayList<>();
+        ChannelInterceptor capture = new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (StompCommand.RECEIPT.equals(StompHeaderAccessor.wrap(message).getCommand())) {
+                    receipts.add(message);
+                }
+                return message;
+            }
+        };
+        AbstractSubscribableChannel outbound = (AbstractSubscribableChannel) clientOutboundChannel;
+        outbound.addInterceptor(capture);
+        try {
+            webSocketController.sendMessage(frame(ticketId, "client-receipt"), sendHeaders("session-1", "receipt-1"));
+            // Renvoi sans demande d'acquittement : aucune trame
+            webSocketController.sendMessage(frame(ticketId, "client-receipt"), sendHeaders("session-1", null));
+            webSocketController.sendMessage(frame(ticketId, "client-receipt"), sendHeaders("session-1", "receipt-2"));
+        } finally {
+            outbound.removeInterceptor(capture);
+        }
+
+        ChatMessage stored = messageRepository.findByTicketIdOrderByTimestampAsc(ticketId).get(0);
+        assertEquals(2, receipts.size());
+        for (int i = 0; i < receipts.size(); i++) {
+            StompHeaderAccessor receipt = StompHeaderAccessor.wrap(receipts.get(i));
+            assertEquals("receipt-" + (i + 1), receipt.getReceiptId());
+            assertEquals("session-1", receipt.getSessionId());
+            assertEquals(stored.getId().toString(), receipt.getFirstNativeHeader("message-id"));
+            assertEquals(stored.getSequence().toString(), receipt.getFirstNativeHeader("sequence"));
+            assertEquals("client-receipt", receipt.getFirstNativeHeader("client-message-id"));
+        }
+        assertEquals(1, messageRepository.countByTicketId(ticketId));
+    }
+
+    @Test
+    void concurrentDuplicateSendsAreStoredOnceAndAllReturnTheStoredMessage() throws Exception {
+        UUID ticketId = createTicket(ticketService).getId();
+        int keys = 8;
+        int copies = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            Map<String, List<Future<ChatMessage>>> sends = new LinkedHashMap<>();
+            for (int copy = 0; copy < copies; copy++) {
+                for (int i = 0; i < keys; i++) {
+                    String clientMessageId = "client-" + i;
+                    SendMessageRequest request = new SendMessageRequest(ticketId, CLIENT, "message " + i);
+                    request.setClientMessageId(clientMessageId);
+                    sends.computeIfAbsent(clientMessageId, k -> new ArrayList<>())
+                            .add(executor.submit(() -> messageService.sendMessage(request)));
+                }
+            }
+            for (List<Future<ChatMessage>> copiesOfKey : sends.values()) {
+                Set<UUID> ids = new HashSet<>();
+                for (Future<ChatMessage> send : copiesOfKey) {
+                    ids.add(send.get(10, TimeUnit.SECONDS).getId());
+                }
+                assertEquals(1, ids.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<ChatMessage> stored = messageRepository.findByTicketIdOrderByTimestampAsc(ticketId);
+        assertEquals(keys, stored.size());
+        assertEquals(keys, stored.stream().map(ChatMessage::getClientMessageId).collect(Collectors.toSet()).size());
+    }
+
+    private static SendMessageRequest request(UUID ticketId, String clientMessageId, String content) {
+        SendMessageRequest request = new SendMessageRequest(ticketId, CLIENT, content);
+        request.setClientMessageId(clientMessageId);
+        return request;
+    }
+
+    private static ChatMessage frame(UUID ticketId, String clientMessageId) {
+        ChatMessage message = new ChatMessage();
+        message.setTicketId(ticketId);
+        message.setSenderId(CLIENT);
+        message.setContent("bonjour");
+        message.setClientMessageId(clientMessageId);
+        return message;
+    }
+
+    private static SimpMessageHeaderAccessor sendHeaders(String sessionId, String receiptId) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+        headers.setSessionId(sessionId);
+        if (receiptId != null) {
+            headers.addNativeHeader(StompHeaderAccessor.STOMP_RECEIPT_HEADER, receiptId);
+        }
+        return headers;
+    }
+}
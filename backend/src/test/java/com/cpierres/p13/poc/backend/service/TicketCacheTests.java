@@ -0,0 +1,88 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+/**
+ * Cache des tickets : copies détachées, invalidation immédiate et après commit, chargement concurrent d'une invalidation
+ */
+class TicketCacheTests {
+
+    private final TicketCache cache = new TicketCache(true, 100, 60, new SimpleMeterRegistry());
+    private final UUID ticketId = UUID.randomUUID();
+    private final AtomicReference<TicketStatus> storedStatus = new AtomicReference<>(TicketStatus.OPEN);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void callersReceiveTheirOwnCopy() {
+        SupportTicket first = cache.get(ticketId, this::load);
+        first.setStatus(TicketStatus.CLOSED);
+
+        SupportTicket second = cache.get(ticketId, this::load);
+
+        assertNotSame(first, second);
+        assertEquals(TicketStatus.OPEN, second.getStatus());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidatedTicketIsReloaded() {
+        cache.get(ticketId, this::load);
+        storedStatus.set(TicketStatus.IN_PROGRESS);
+
+        cache.invalidate(ticketId);
+
+        assertEquals(TicketStatus.IN_PROGRESS, cache.get(ticketId, this::load).getStatus());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void loadConcurrentWithAnInvalidationIsNotCached() {
+        cache.get(ticketId, id -> {
+            SupportTicket stale = load(id);
+            // Modification validée pendant la lecture
+            storedStatus.set(TicketStatus.RESOLVED);
+            cache.invalidate(id);
+            return stale;
+        });
+
+        assertEquals(TicketStatus.RESOLVED, cache.get(ticketId, this::load).getStatus());
+    }
+
+    @Test
+    void ticketCachedBeforeTheCommitIsEvictedAgainAfterIt() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(ticketId);
+            // Lecture concurrente de l'état antérieur au commit
+            cache.get(ticketId, this::load);
+            storedStatus.set(TicketStatus.CLOSED);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(TicketStatus.CLOSED, cache.get(ticketId, this::load).getStatus());
+    }
+
+    private SupportTicket load(UUID id) {
+        loads.incrementAndGet();
+        SupportTicket ticket = new SupportTicket();
+        ticket.setId(id);
+        ticket.setSubject("Commande introuvable");
+        ticket.setStatus(storedStatus.get());
+        return ticket;
+    }
+}
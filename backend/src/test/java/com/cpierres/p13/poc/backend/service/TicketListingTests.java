@@ -0,0 +1,78 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.controller.ChatRestController;
+import com.cpierres.p13.poc.backend.dto.TicketListPage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.cpierres.p13.poc.backend.TestTickets.AGENT;
+import static com.cpierres.p13.poc.backend.TestTickets.createTicket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listes paginées de 2 tickets au plus : troncature des listes historiques signalée par en-tête,
+ * comptage borné à 4 résultats au-delà de la page, pages au-delà de 4 résultats refusées
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ticket-listing;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "chat.listing.max-page-size=2",
+        "chat.listing.count-cap=4",
+        "chat.listing.max-offset=4"
+})
+@ActiveProfiles("embedded")
+class TicketListingTests {
+
+    @Autowired
+    private SupportTicketService ticketService;
+
+    @Autowired
+    private ChatRestController restController;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void legacyListSignalsTicketsBeyondTheFirstPage() {
+        UUID userId = createTicket(ticketService).getUserId();
+        createTicket(ticketService);
+
+        ResponseEntity<List<SupportTicket>> complete = restController.getTicketsByUserId(userId);
+        assertEquals(2, complete.getBody().size());
+        assertEquals("false", complete.getHeaders().getFirst(ChatRestController.TRUNCATED_HEADER));
+
+        createTicket(ticketService);
+        ResponseEntity<List<SupportTicket>> truncated = restController.getTicketsByUserId(userId);
+        assertEquals(2, truncated.getBody().size());
+        assertEquals("true", truncated.getHeaders().getFirst(ChatRestController.TRUNCATED_HEADER));
+    }
+
+    @Test
+    void totalIsCountedUpToTheCapAndDeepPagesAreRefused() {
+        // Utilisateur distinct du client des listes historiques
+        UUID userId = AGENT;
+        for (int i = 0; i < 5; i++) {
+            createTicket(ticketService, userId, "Commande " + i);
+        }
+
+        TicketListPage first = ticketService.searchTickets(null, null, userId, null, 0, 2, null);
+        assertTrue(first.isHasNext());
+        assertEquals(4, first.getTotalEstimate());
+        assertFalse(first.isTotalExact());
+
+        TicketListPage second = ticketService.searchTickets(null, null, userId, null, 1, 2, null);
+        assertEquals(5, second.getTotalEstimate());
+        assertTrue(second.isTotalExact());
+
+        assertEquals(1, ticketService.searchTickets(null, null, userId, null, 2, 2, null).getTickets().size());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restController.getTickets(null, null, userId, null, 3, 2, null).getStatusCode());
+    }
+}
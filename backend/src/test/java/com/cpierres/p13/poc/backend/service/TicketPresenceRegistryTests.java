@@ -0,0 +1,78 @@
+package com.cpierres.p13.poc.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Présence par ticket : abonnements multiples, départs, trames reçues après la déconnexion
+ */
+class TicketPresenceRegistryTests {
+
+    private static final UUID CLIENT = UUID.randomUUID();
+
+    private final TicketPresenceRegistry registry = new TicketPresenceRegistry(new SimpleMeterRegistry());
+    private final UUID ticketId = UUID.randomUUID();
+
+    @Test
+    void presenceLastsUntilTheUserLeavesWithAllItsSubscriptions() {
+        registry.onConnect(new SessionConnectEvent(this, frame(StompCommand.CONNECT, "s1", null, null, CLIENT)));
+        registry.onConnect(new SessionConnectEvent(this, frame(StompCommand.CONNECT, "s2", null, null, CLIENT)));
+        registry.onSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1", "sub-1", ticketId, null)));
+        registry.onSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s2", "sub-1", ticketId, null)));
+
+        assertEquals(Set.of(CLIENT), registry.getOnlineUsers(ticketId));
+        assertEquals(Set.of(ticketId), registry.getViewedTickets(CLIENT));
+
+        registry.onUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s1", "sub-1", null, null)));
+        assertTrue(registry.isOnline(ticketId, CLIENT));
+
+        registry.onDisconnect(disconnect("s2"));
+        assertTrue(registry.getOnlineUsers(ticketId).isEmpty());
+        assertTrue(registry.getViewedTickets(CLIENT).isEmpty());
+    }
+
+    @Test
+    void subscribeProcessedAfterDisconnectIsIgnored() {
+        registry.onConnect(new SessionConnectEvent(this, frame(StompCommand.CONNECT, "s1", null, null, CLIENT)));
+        registry.onDisconnect(disconnect("s1"));
+
+        registry.onSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1", "sub-1", ticketId, CLIENT)));
+
+        assertTrue(registry.getOnlineUsers(ticketId).isEmpty());
+        assertEquals(0, registry.getSessionCount());
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId,
+                                         UUID ticketId, UUID userId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        if (ticketId != null) {
+            accessor.setDestination("/topic/messages/" + ticketId);
+        }
+        if (userId != null) {
+            accessor.setNativeHeader(TicketPresenceRegistry.USER_ID_HEADER, userId.toString());
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private SessionDisconnectEvent disconnect(String sessionId) {
+        return new SessionDisconnectEvent(this, frame(StompCommand.DISCONNECT, sessionId, null, null, null),
+                sessionId, CloseStatus.NORMAL);
+    }
+}
@@ -0,0 +1,112 @@
+package com.cpierres.p13.poc.backend.service;
+
+import com.cpierres.p13.poc.backend.dto.TypingEvent;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.verification.VerificationMode;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Indicateur de saisie : un seul début par rafale de frappes, une seule fin après le TTL,
+ * changement retenu par l'intervalle diffusé par le balayage
+ */
+class TypingIndicatorServiceTests {
+
+    private static final UUID CLIENT = UUID.randomUUID();
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final UUID ticketId = UUID.randomUUID();
+    private TypingIndicatorService typing;
+
+    @AfterEach
+    void stopSweeper() {
+        typing.stop();
+    }
+
+    @Test
+    void burstOfKeystrokesAnnouncesTypingOnce() throws Exception {
+        typing = service(200, 10_000);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> keystrokes = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                keystrokes.add(executor.submit(() -> {
+                    start.await();
+                    typing.onTyping(ticketId, CLIENT);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> keystroke : keystrokes) {
+                keystroke.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(true), eventsSent(after(500).times(1)));
+    }
+
+    @Test
+    void expiredTypingIsAnnouncedStoppedOnceThenRestartsOnTheNextKeystroke() {
+        typing = service(100, 300);
+        typing.onTyping(ticketId, CLIENT);
+
+        assertEquals(List.of(true, false), eventsSent(timeout(2000).times(2)));
+        // État retiré après la fin : plus aucun événement
+        assertEquals(List.of(true, false), eventsSent(after(500).times(2)));
+
+        typing.onTyping(ticketId, CLIENT);
+        assertEquals(List.of(true, false, true), eventsSent(timeout(2000).times(3)));
+    }
+
+    @Test
+    void stopHeldBackByTheIntervalIsReleasedByTheSweeper() {
+        typing = service(300, 10_000);
+        typing.onTyping(ticketId, CLIENT);
+        typing.onStoppedTyping(ticketId, CLIENT);
+
+        // Fin retenue : l'intervalle depuis le début n'est pas écoulé
+        assertEquals(List.of(true), eventsSent(times(1)));
+        assertEquals(List.of(true, false), eventsSent(timeout(2000).times(2)));
+    }
+
+    private TypingIndicatorService service(long intervalMs, long ttlMs) {
+        TypingIndicatorService created = new TypingIndicatorService(messagingTemplate, mock(UserDirectory.class), intervalMs, ttlMs);
+        created.start();
+        return created;
+    }
+
+    /**
+     * Événements diffusés, une fois le nombre d'envois vérifié (capture séparée : timeout et after capturent à chaque essai)
+     */
+    private List<Boolean> eventsSent(VerificationMode mode) {
+        verify(messagingTemplate, mode).convertAndSend(eq("/topic/typing/" + ticketId), any(TypingEvent.class));
+        List<TypingEvent> events = mockingDetails(messagingTemplate).getInvocations().stream()
+                .map(invocation -> invocation.getArgument(1, TypingEvent.class))
+                .toList();
+        events.forEach(event -> assertEquals(CLIENT, event.getUserId()));
+        return events.stream().map(TypingEvent::isTyping).toList();
+    }
+}
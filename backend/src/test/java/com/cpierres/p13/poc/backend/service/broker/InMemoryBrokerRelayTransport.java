@@ -0,0 +1,33 @@
+package com.cpierres.p13.poc.backend.service.broker;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Substitut local de Redis pub/sub : bus partagé par tous les contextes Spring de la JVM de test
+ */
+public class InMemoryBrokerRelayTransport implements BrokerRelayTransport {
+
+    private static final List<Consumer<byte[]>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private Consumer<byte[]> listener;
+
+    @Override
+    public void publish(byte[] envelope) {
+        LISTENERS.forEach(l -> l.accept(envelope));
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> listener) {
+        this.listener = listener;
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Détacher le nœud du bus à l'arrêt de son contexte
+     */
+    public void close() {
+        LISTENERS.remove(listener);
+    }
+}
@@ -0,0 +1,141 @@
+package com.cpierres.p13.poc.backend.service.broker;
+
+import com.cpierres.p13.poc.backend.BackendApplication;
+import com.cpierres.p13.poc.backend.config.StompUserInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Deux contextes applicatifs complets reliés par le substitut local de Redis pub/sub
+ */
+class MultiNodeBrokerRelayTests {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = startNode("node-a");
+        nodeB = startNode("node-b");
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new StringMessageConverter());
+    }
+
+    @AfterEach
+    void stopNodes() {
+        stompClient.stop();
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeA, nodeB}) {
+            node.getBean(InMemoryBrokerRelayTransport.class).close();
+            node.close();
+        }
+    }
+
+    @Test
+    void messageBroadcastOnOneNodeReachesSubscribersOfBothNodesOnce() throws Exception {
+        String destination = "/topic/messages/" + UUID.randomUUID();
+        BlockingQueue<String> receivedOnA = subscribe(nodeA, destination);
+        BlockingQueue<String> receivedOnB = subscribe(nodeB, destination);
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSend(destination, "bonjour");
+
+        assertEquals("bonjour", receivedOnA.poll(5, TimeUnit.SECONDS));
+        assertEquals("bonjour", receivedOnB.poll(5, TimeUnit.SECONDS));
+        // Livraison locale unique : pas de doublon renvoyé par le relais
+        assertNull(receivedOnA.poll(500, TimeUnit.MILLISECONDS));
+        assertNull(receivedOnB.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void nonRelayedTopicStaysOnItsNode() throws Exception {
+        BlockingQueue<String> receivedOnB = subscribe(nodeB, "/topic/notifications");
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSend("/topic/notifications", "local");
+
+        assertNull(receivedOnB.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void userDestinationReachesTheSessionsOfTheUserOnAnotherNode() throws Exception {
+        String agentId = UUID.randomUUID().toString();
+        BlockingQueue<String> receivedOnB = subscribe(nodeB, "/user/queue/notifications", agentId);
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSendToUser(agentId, "/queue/notifications", "nouveau ticket");
+
+        assertEquals("nouveau ticket", receivedOnB.poll(5, TimeUnit.SECONDS));
+        assertNull(receivedOnB.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    private BlockingQueue<String> subscribe(ConfigurableApplicationContext node, String destination) throws Exception {
+        return subscribe(node, destination, null);
+    }
+
+    private BlockingQueue<String> subscribe(ConfigurableApplicationContext node, String destination, String userId) throws Exception {
+        String port = node.getEnvironment().getProperty("local.server.port");
+        StompHeaders connectHeaders = new StompHeaders();
+        if (userId != null) {
+            connectHeaders.add(StompUserInterceptor.USER_ID_HEADER, userId);
+        }
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws/websocket", (WebSocketHttpHeaders) null, connectHeaders,
+                        new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) payload);
+            }
+        });
+        // Laisser le SUBSCRIBE atteindre le broker avant de publier
+        Thread.sleep(300);
+        return received;
+    }
+
+    private static ConfigurableApplicationContext startNode(String name) {
+        return new SpringApplicationBuilder(BackendApplication.class, RelayTestConfiguration.class)
+                .profiles("embedded")
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                        "--chat.broker.mode=redis-relay",
+                        "--chat.broker.transport=in-memory",
+                        "--logging.level.com.cpierres.p13.poc=INFO",
+                        "--logging.level.org.springframework.web.socket=INFO");
+    }
+
+    @Configuration
+    static class RelayTestConfiguration {
+        @Bean
+        InMemoryBrokerRelayTransport inMemoryBrokerRelayTransport() {
+            return new InMemoryBrokerRelayTransport();
+        }
+    }
+}
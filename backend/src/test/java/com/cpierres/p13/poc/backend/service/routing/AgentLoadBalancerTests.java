@@ -0,0 +1,132 @@
+package com.cpierres.p13.poc.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Choix de l'agent d'un nouveau ticket : charge, poids, présence, attributions simultanées
+ */
+class AgentLoadBalancerTests {
+
+    private final UUID marie = UUID.randomUUID();
+    private final UUID paul = UUID.randomUUID();
+
+    @Test
+    void leastLoadedAgentCountingUnreadMessagesIsChosen() {
+        AgentLoadBalancer balancer = online(AgentLoadBalancer.Strategy.LEAST_LOAD, marie, paul);
+        UUID ticketId = UUID.randomUUID();
+        balancer.ticketAssigned(marie);
+        for (int i = 0; i < 5; i++) {
+            balancer.messageReceived(paul, ticketId);
+        }
+
+        // Marie : 1 ticket (10), Paul : 5 non lus
+        assertEquals(Optional.of(paul), balancer.assign(false));
+        // Paul : 1 ticket et 5 non lus (15)
+        assertEquals(Optional.of(marie), balancer.assign(false));
+
+        balancer.messagesRead(paul, ticketId);
+        assertEquals(0, balancer.getLoad(paul).orElseThrow().unreadMessages());
+        assertEquals(Optional.of(paul), balancer.assign(false));
+    }
+
+    @Test
+    void releasedTicketForgetsItsUnreadMessages() {
+        AgentLoadBalancer balancer = online(AgentLoadBalancer.Strategy.LEAST_LOAD, marie);
+        UUID ticketId = UUID.randomUUID();
+        balancer.ticketAssigned(marie);
+        balancer.messageReceived(marie, ticketId);
+        balancer.messageReceived(marie, UUID.randomUUID());
+
+        balancer.ticketReleased(marie, ticketId);
+
+        AgentLoadBalancer.AgentLoad load = balancer.getLoad(marie).orElseThrow();
+        assertEquals(0, load.activeTickets());
+        assertEquals(1, load.unreadMessages());
+    }
+
+    @Test
+    void weightedRoundRobinServesAgentsInProportionToTheirWeight() {
+        AgentLoadBalancer balancer = online(AgentLoadBalancer.Strategy.WEIGHTED_ROUND_ROBIN, paul);
+        balancer.register(marie, 2);
+        balancer.sessionOpened(marie);
+
+        Map<UUID, Integer> served = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            served.merge(balancer.assign(false).orElseThrow(), 1, Integer::sum);
+        }
+
+        assertEquals(20, served.get(marie));
+        assertEquals(10, served.get(paul));
+    }
+
+    @Test
+    void onlineAgentsComeFirstAndOfflineOnesOnlyAsAFallback() {
+        AgentLoadBalancer balancer = online(AgentLoadBalancer.Strategy.LEAST_LOAD, marie);
+        balancer.register(paul, 1);
+        balancer.ticketAssigned(marie);
+        balancer.ticketAssigned(marie);
+
+        assertEquals(Optional.of(marie), balancer.assign(false));
+
+        balancer.sessionClosed(marie);
+        assertTrue(balancer.assign(false).isEmpty());
+        assertEquals(Optional.of(paul), balancer.assign(true));
+
+        balancer.unregister(paul);
+        assertEquals(Optional.of(marie), balancer.assign(true));
+    }
+
+    @Test
+    void simultaneousAssignmentsChooseDifferentAgents() throws Exception {
+        List<UUID> agents = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            agents.add(UUID.randomUUID());
+        }
+        AgentLoadBalancer balancer = online(AgentLoadBalancer.Strategy.LEAST_LOAD, agents.toArray(UUID[]::new));
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(agents.size());
+        try {
+            List<Future<Optional<UUID>>> assignments = new ArrayList<>();
+            for (int i = 0; i < agents.size(); i++) {
+                assignments.add(executor.submit(() -> {
+                    start.await();
+                    return balancer.assign(false);
+                }));
+            }
+            start.countDown();
+            Set<UUID> chosen = new HashSet<>();
+            for (Future<Optional<UUID>> assignment : assignments) {
+                chosen.add(assignment.get(10, TimeUnit.SECONDS).orElseThrow());
+            }
+            assertEquals(Set.copyOf(agents), chosen);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AgentLoadBalancer online(AgentLoadBalancer.Strategy strategy, UUID... agentIds) {
+        AgentLoadBalancer balancer = new AgentLoadBalancer(strategy);
+        for (UUID agentId : agentIds) {
+            balancer.register(agentId, 1);
+            balancer.sessionOpened(agentId);
+        }
+        return balancer;
+    }
+}
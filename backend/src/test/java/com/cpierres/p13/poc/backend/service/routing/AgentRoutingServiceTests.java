@@ -0,0 +1,119 @@
+package com.cpierres.p13.poc.backend.service.routing;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import com.cpierres.p13.poc.backend.entity.TicketStatus;
+import com.cpierres.p13.poc.backend.repository.SupportTicketRepository;
+import com.cpierres.p13.poc.backend.service.user.UserDirectory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routage des nouveaux tickets : agents et tickets actifs réconciliés, annulation de l'attribution, messages non lus
+ */
+class AgentRoutingServiceTests {
+
+    private final MockUserInfo marie = new MockUserInfo(UUID.randomUUID(), "marie.agent@example.com", "Marie", "Agent", "AGENT");
+    private final MockUserInfo paul = new MockUserInfo(UUID.randomUUID(), "paul.agent@example.com", "Paul", "Agent", "AGENT");
+    private final UserDirectory userDirectory = mock(UserDirectory.class);
+    private final SupportTicketRepository ticketRepository = mock(SupportTicketRepository.class);
+    private final AgentRoutingService routing;
+
+    AgentRoutingServiceTests() {
+        when(userDirectory.findByRole(AgentRoutingService.AGENT_ROLE)).thenReturn(List.of(marie, paul));
+        when(userDirectory.findById(any(UUID.class))).thenReturn(Optional.empty());
+        when(userDirectory.findByFullName(anyString())).thenReturn(Optional.empty());
+        for (MockUserInfo agent : List.of(marie, paul)) {
+            when(userDirectory.findById(agent.getId())).thenReturn(Optional.of(agent));
+            when(userDirectory.findByFullName(agent.getFullName())).thenReturn(Optional.of(agent));
+        }
+        // Marie : 3 tickets actifs en base, Paul : 1
+        when(ticketRepository.countTicketsByAgent(any())).thenReturn(List.of(count(marie, 3), count(paul, 1)));
+        routing = new AgentRoutingService(userDirectory, ticketRepository, AgentLoadBalancer.Strategy.LEAST_LOAD,
+                List.of("paul.agent@example.com=2"), true, 0, new SimpleMeterRegistry());
+        routing.reconcile();
+    }
+
+    @Test
+    void newTicketsGoToTheLeastLoadedAgentAccordingToTheDatabase() {
+        assertEquals(2, routing.getLoad(paul.getId()).orElseThrow().weight());
+        // Paul : 1 ticket pour un poids de 2 ; Marie : 3 tickets
+        assertEquals(Optional.of(paul.getFullName()), routing.assignAgent());
+        assertEquals(Optional.of(paul.getFullName()), routing.assignAgent());
+        assertEquals(3, routing.getLoad(paul.getId()).orElseThrow().activeTickets());
+
+        routing.ticketChanged(UUID.randomUUID(), marie.getFullName(), TicketStatus.IN_PROGRESS,
+                marie.getFullName(), TicketStatus.RESOLVED);
+        assertEquals(2, routing.getLoad(marie.getId()).orElseThrow().activeTickets());
+    }
+
+    @Test
+    void assignmentOfARolledBackTicketCreationIsReleased() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            routing.assignAgent();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, routing.getLoad(paul.getId()).orElseThrow().activeTickets());
+    }
+
+    @Test
+    void agentRemovedFromTheDirectoryIsSkipped() {
+        when(userDirectory.findById(paul.getId())).thenReturn(Optional.empty());
+
+        assertEquals(Optional.of(marie.getFullName()), routing.assignAgent());
+        assertEquals(Optional.empty(), routing.getLoad(paul.getId()));
+    }
+
+    @Test
+    void clientMessagesAreUnreadUntilTheAgentAnswers() {
+        SupportTicket ticket = new SupportTicket();
+        ticket.setId(UUID.randomUUID());
+        ticket.setAssignedAgent(marie.getFullName());
+
+        routing.recordMessage(ticket, message(UUID.randomUUID()));
+        routing.recordMessage(ticket, message(UUID.randomUUID()));
+        assertEquals(2, routing.getLoad(marie.getId()).orElseThrow().unreadMessages());
+
+        routing.recordMessage(ticket, message(marie.getId()));
+        assertEquals(0, routing.getLoad(marie.getId()).orElseThrow().unreadMessages());
+    }
+
+    private static ChatMessage message(UUID senderId) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSenderId(senderId);
+        return message;
+    }
+
+    private static SupportTicketRepository.AgentTicketCount count(MockUserInfo agent, long tickets) {
+        return new SupportTicketRepository.AgentTicketCount() {
+            @Override
+            public String getAgent() {
+                return agent.getFullName();
+            }
+
+            @Override
+            public long getTickets() {
+                return tickets;
+            }
+        };
+    }
+}
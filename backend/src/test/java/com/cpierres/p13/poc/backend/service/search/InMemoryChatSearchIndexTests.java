@@ -0,0 +1,77 @@
+package com.cpierres.p13.poc.backend.service.search;
+
+import com.cpierres.p13.poc.backend.dto.SearchHit;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.SupportTicket;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index inversé en mémoire : termes requis, normalisation, pertinence, filtres et réindexation
+ */
+class InMemoryChatSearchIndexTests {
+
+    private static final UUID CLIENT = UUID.randomUUID();
+    private static final UUID AGENT = UUID.randomUUID();
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 15, 10, 0);
+
+    private final InMemoryChatSearchIndex index = new InMemoryChatSearchIndex(null, null);
+    private final UUID ticketId = UUID.randomUUID();
+
+    @Test
+    void allTermsAreRequiredAndAccentsAreIgnored() {
+        index.indexMessage(message(CLIENT, "Ma facture de décembre est erronée", NOW));
+        index.indexMessage(message(AGENT, "Je vérifie la facture", NOW.plusMinutes(1)));
+
+        List<SearchHit> hits = search("FACTURE decembre", null, null);
+
+        assertEquals(1, hits.size());
+        assertEquals("Ma facture de décembre est erronée", hits.get(0).getText());
+    }
+
+    @Test
+    void rarerAndRepeatedTermsRankFirst() {
+        index.indexMessage(message(CLIENT, "livraison", NOW));
+        index.indexMessage(message(CLIENT, "livraison livraison retard", NOW));
+        index.indexMessage(message(CLIENT, "retard", NOW));
+
+        List<SearchHit> hits = search("livraison", null, null);
+
+        assertEquals(2, hits.size());
+        assertEquals("livraison livraison retard", hits.get(0).getText());
+    }
+
+    @Test
+    void ticketsAreSearchedBySubjectAndDescriptionAndFiltersApply() {
+        SupportTicket ticket = new SupportTicket();
+        ticket.setId(ticketId);
+        ticket.setUserId(CLIENT);
+        ticket.setSubject("Problème de connexion");
+        ticket.setDescription("Mot de passe refusé");
+        ticket.setCreatedAt(NOW);
+        index.indexTicket(ticket);
+        index.indexMessage(message(AGENT, "Réinitialisez votre mot de passe", NOW.plusHours(1)));
+
+        assertEquals(2, search("mot de passe", null, null).size());
+        assertEquals(SearchHit.Type.TICKET, search("mot de passe", CLIENT, null).get(0).getType());
+        assertEquals(SearchHit.Type.MESSAGE, search("mot de passe", null, NOW.plusMinutes(30)).get(0).getType());
+
+        ticket.setDescription("Compte bloqué");
+        index.indexTicket(ticket);
+        assertTrue(search("mot de passe", CLIENT, null).isEmpty());
+    }
+
+    private List<SearchHit> search(String text, UUID senderId, LocalDateTime from) {
+        return index.search(new SearchQuery(text, null, senderId, from, null, 0, 10));
+    }
+
+    private ChatMessage message(UUID senderId, String content, LocalDateTime timestamp) {
+        return new ChatMessage(UUID.randomUUID(), ticketId, senderId, content, timestamp, null, null);
+    }
+}
@@ -0,0 +1,251 @@
+package com.cpierres.p13.poc.backend.service.storage;
+
+import com.cpierres.p13.poc.backend.dto.MessagePage;
+import com.cpierres.p13.poc.backend.dto.SendMessageRequest;
+import com.cpierres.p13.poc.backend.entity.ChatMessage;
+import com.cpierres.p13.poc.backend.entity.ChatMessageArchiveSegment;
+import com.cpierres.p13.poc.backend.repository.ChatMessageArchiveSegmentRepository;
+import com.cpierres.p13.poc.backend.repository.ChatMessageRepository;
+import com.cpierres.p13.poc.backend.service.ChatMessageService;
+import com.cpierres.p13.poc.backend.service.SupportTicketService;
+import com.cpierres.p13.poc.backend.service.TicketCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.cpierres.p13.poc.backend.TestTickets.CLIENT;
+import static com.cpierres.p13.poc.backend.TestTickets.createTicket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archivage des tickets fermés : segments de 3 messages, lectures à cheval sur plusieurs segments,
+ * numéros des segments antérieurs à la numérotation, suppression limitée aux messages lus
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "chat.storage.archive.segment-size=3",
+        "chat.storage.archive.cached-segments=2"
+})
+@ActiveProfiles("embedded")
+class ChatMessageArchiveTests {
+
+
+    @Autowired
+    private ChatMessageArchive archive;
+
+    @Autowired
+    private ChatMessageService messageService;
+
+    @Autowired
+    private SupportTicketService ticketService;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Autowired
+    private ChatMessageArchiveSegmentRepository segmentRepository;
+
+    @Autowired
+    private TicketCache ticketCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void closedTicketIsMovedToSegmentsAndReadBackIdentically() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<ChatMessage> sent = send(ticketId, 7);
+        ticketService.closeTicket(ticketId);
+
+        assertEquals(7, archive.archiveTicket(ticketId));
+
+        assertEquals(List.of(3, 3, 1), segmentRepository.findSegments(ticketId).stream()
+                .map(ChatMessageArchiveSegmentRepository.SegmentInfo::getMessageCount).toList());
+        assertEquals(0, messageRepository.countByTicketId(ticketId));
+        assertNotNull(ticketService.reloadTicket(ticketId).getArchivedAt());
+        List<ChatMessage> archived = archive.findAll(ticketId);
+        assertEquals(ids(sent), ids(archived));
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(sent.get(i).getContent(), archived.get(i).getContent());
+            assertEquals(sent.get(i).getTimestamp(), archived.get(i).getTimestamp());
+            assertEquals(sent.get(i).getSequence(), archived.get(i).getSequence());
+        }
+        assertEquals(7L, messageService.countMessagesByTicket(ticketId));
+    }
+
+    @Test
+    void cursorAndSequenceReadsCrossSegmentBoundaries() {
+        UUID ticketId = createTicket(ticketService).getId();
+        List<ChatMessage> sent = send(ticketId, 7);
+        ticketService.closeTicket(ticketId);
+        archive.archiveTicket(ticketId);
+
+        // Du plus récent au plus ancien, depuis le milieu du deuxième segment
+        assertEquals(ids(sent.get(3), sent.get(2), sent.get(1), sent.get(0)), ids(archive.findBefore(ticketId, sent.get(4), 10)));
+        assertEquals(ids(sent.get(6), sent.get(5)), ids(archive.findBefore(ticketId, null, 2)));
+        // Du plus ancien au plus récent, depuis la fin du premier segment
+        assertEquals(ids(sent.get(3), sent.get(4), sent.get(5), sent.get(6)), ids(archive.findAfter(ticketId, sent.get(2), 10)));
+        assertEquals(ids(sent.get(2), sent.get(3)), ids(archive.findAfter(ticketId, sent.get(1), 2)));
+        assertEquals(List.of(3L, 4L, 5L), sequences(archive.findAfterSequence(ticketId, 2, 3)));
+        assertEquals(List.of(6L, 7L), sequences(archive.findAfterSequence(ticketId, 5, 10)));
+        assertTrue(archive.findAfterSequence(ticketId, 7, 10).isEmpty());
+        assertEquals(sent.get(4).getContent(), archive.findMessage(ticketId, sent.get(4).getId()).orElseThrow().getContent());
+
+        // Pages de l'historique servies par l'archive
+        MessagePage latest = messageService.getTicketHistoryPage(ticketId, null, null, 4);
+        assertEquals(ids(sent.subList(3, 7)), ids(latest.getMessages()));
+        assertTrue(latest.isHasMore());
+        MessagePage older = messageService.getTicketHistoryPage(ticketId, latest.getPreviousCursor(), null, 4);
+        assertEquals(ids(sent.subList(0, 3)), ids(older.getMessages()));
+        assertFalse(older.isHasMore());
+        assertEquals(List.of(5L, 6L, 7L), sequences(messageService.resumeTicketHistory(ticketId, 4, 10).getMessages()));
+    }
+
+    @Test
+    void segmentsWithoutSequencesAreNumberedByPositionAndLiveMessagesFollow() throws IOException {
+        UUID ticketId = createTicket(ticketService).getId();
+        LocalDateTime start = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MICROS);
+        List<ChatMessage> legacy = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            legacy.add(new ChatMessage(UUID.randomUUID(), ticketId, CLIENT, "ancien " + i, start.plusMinutes(i), null, null));
+        }
+        saveLegacySegment(ticketId, 0, legacy.subList(0, 3));
+        saveLegacySegment(ticketId, 1, legacy.subList(3, 5));
+        // Messages en base antérieurs à la numérotation, postérieurs à l'archive
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("INSERT INTO chat_messages (id, ticket_id, sender_id, content, timestamp) VALUES (?, ?, ?, ?, ?)",
+                    UUID.randomUUID(), ticketId, CLIENT, "récent " + i, start.plusHours(1).plusMinutes(i));
+        }
+        jdbcTemplate.update("UPDATE support_tickets SET last_sequence = NULL, archived_at = ? WHERE id = ?", start, ticketId);
+        ticketCache.invalidate(ticketId);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), sequences(archive.findAll(ticketId)));
+        assertEquals(List.of(4L, 5L), sequences(archive.findAfterSequence(ticketId, 3, 10)));
+        // Première reprise : les messages en base sont numérotés à la suite de l'archive
+        List<ChatMessage> resumed = messageService.resumeTicketHistory(ticketId, 3, 10).getMessages();
+        assertEquals(List.of(4L, 5L, 6L, 7L), sequences(resumed));
+        assertEquals(List.of("ancien 3", "ancien 4", "récent 0", "récent 1"), resumed.stream().map(ChatMessage::getContent).toList());
+        assertEquals(7L, ticketService.reloadTicket(ticketId).getLastSequence());
+    }
+
+    @Test
+    void onlyMessagesReadByTheArchiveAreDeleted() {
+        UUID ticketId = createTicket(ticketService).getId();
+        send(ticketId, 4);
+        ticketService.closeTicket(ticketId);
+        // Message écrit par une autre transaction une fois la lecture de l'archivage commencée
+        AtomicBoolean inserted = new AtomicBoolean();
+        StreamHook.afterStreamOpened = () -> {
+            Thread writer = new Thread(() -> messageRepository.save(
+                    new ChatMessage(null, ticketId, CLIENT, "tardif", null, null, null)));
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inserted.set(true);
+        };
+        try {
+            assertEquals(4, archive.archiveTicket(ticketId));
+        } finally {
+            StreamHook.afterStreamOpened = null;
+        }
+
+        assertTrue(inserted.get());
+        assertEquals(4, archive.findAll(ticketId).size());
+        List<ChatMessage> remaining = messageRepository.findByTicketIdOrderByTimestampAsc(ticketId);
+        assertEquals(List.of("tardif"), remaining.stream().map(ChatMessage::getContent).toList());
+    }
+
+    private List<ChatMessage> send(UUID ticketId, int count) {
+        List<ChatMessage> sent = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sent.add(messageService.sendMessage(new SendMessageRequest(ticketId, CLIENT, "message " + i)));
+        }
+        assertEquals(LongStream.rangeClosed(1, count).boxed().toList(), sequences(sent));
+        return sent;
+    }
+
+    private void saveLegacySegment(UUID ticketId, int number, List<ChatMessage> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            for (ChatMessage message : messages) {
+                gzip.write(objectMapper.writeValueAsBytes(message));
+                gzip.write('\n');
+            }
+        }
+        ChatMessage first = messages.get(0);
+        ChatMessage last = messages.get(messages.size() - 1);
+        segmentRepository.save(new ChatMessageArchiveSegment(null, ticketId, number, messages.size(), first.getTimestamp(),
+                first.getId(), last.getTimestamp(), last.getId(), LocalDateTime.now(), bytes.toByteArray()));
+    }
+
+    private static List<UUID> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    private static List<UUID> ids(ChatMessage... messages) {
+        return ids(List.of(messages));
+    }
+
+    private static List<Long> sequences(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getSequence).toList();
+    }
+
+    /**
+     * Point d'arrêt après l'ouverture du flux de lecture des messages d'un ticket
+     */
+    @TestConfiguration
+    static class StreamHook {
+        static volatile Runnable afterStreamOpened;
+
+        @Bean
+        static BeanPostProcessor streamHookPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof ChatMessageRepository)) {
+                        return bean;
+                    }
+                    ProxyFactory proxy = new ProxyFactory(bean);
+                    proxy.addAdvice((MethodInterceptor) invocation -> {
+                        Object result = invocation.proceed();
+                        Runnable hook = afterStreamOpened;
+                        if (hook != null && invocation.getMethod().getName().equals("streamByTicketId")) {
+                            afterStreamOpened = null;
+                            hook.run();
+                        }
+                        return result;
+                    });
+                    return proxy.getProxy();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.cpierres.p13.poc.backend.service.user;
+
+import com.cpierres.p13.poc.backend.dto.MockUserInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Annuaire local : utilisateurs ajoutés à la demande, absences mises en cache pour une durée limitée
+ */
+class CachedUserDirectoryTests {
+
+    private final CountingClient client = new CountingClient();
+
+    @Test
+    void unknownUserIsNotFetchedAgainBeforeItsAbsenceExpires() {
+        CachedUserDirectory directory = new CachedUserDirectory(client, 0, 60);
+        directory.refresh();
+        UUID unknown = UUID.randomUUID();
+
+        assertTrue(directory.findById(unknown).isEmpty());
+        assertTrue(directory.findById(unknown).isEmpty());
+        assertEquals(1, client.fetches.get());
+
+        // Le rafraîchissement de l'annuaire vide le cache négatif
+        directory.refresh();
+        assertTrue(directory.findById(unknown).isEmpty());
+        assertEquals(2, client.fetches.get());
+    }
+
+    @Test
+    void userAddedToTheSourceIsFoundWithoutNegativeCache() {
+        CachedUserDirectory directory = new CachedUserDirectory(client, 0, 0);
+        directory.refresh();
+        UUID userId = UUID.randomUUID();
+
+        assertTrue(directory.findById(userId).isEmpty());
+        client.users.put(userId, new MockUserInfo(userId, "nouvel.agent@example.com", "Nouvel", "Agent", "AGENT"));
+
+        assertEquals("Nouvel", directory.findById(userId).orElseThrow().getFirstName());
+        assertEquals("Nouvel", directory.findById(userId).orElseThrow().getFirstName());
+        assertEquals(2, client.fetches.get());
+    }
+
+    private static final class CountingClient implements UserServiceClient {
+        private final Map<UUID, MockUserInfo> users = new ConcurrentHashMap<>();
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        @Override
+        public List<MockUserInfo> fetchAllUsers() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<MockUserInfo> fetchUser(UUID userId) {
+            fetches.incrementAndGet();
+            return Optional.ofNullable(users.get(userId));
+        }
+    }
+}
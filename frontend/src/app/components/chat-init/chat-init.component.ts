@@ -345,7 +345,8 @@ export class ChatInitComponent implements OnInit {
     this.isLoadingTickets.set(true);
 
     this.ticketService.getTicketsByUserId(userId).subscribe({
-      next: (tickets) => {
+      next: (page) => {
+        const tickets = page.tickets;
         // Convertir les dates string en Date objects
         const processedTickets = tickets.map(ticket => ({
           ...ticket,
@@ -358,7 +359,7 @@ export class ChatInitComponent implements OnInit {
 
         this.existingTickets.set(processedTickets);
         this.isLoadingTickets.set(false);
-        console.log('🎫 Tickets chargés:', tickets.length);
+        console.log('🎫 Tickets chargés:', tickets.length, page.hasNext ? '(tickets plus anciens non affichés)' : '');
       },
       error: (error) => {
         console.error('❌ Erreur chargement tickets:', error);
@@ -4,4 +4,21 @@ export interface ChatMessage {
   senderId: string;
   content: string;
   timestamp: Date;
+  // Numéro d'ordre du message dans le ticket (reprise après reconnexion : /app/chat.resume)
+  sequence?: number;
+  // Clé d'idempotence générée à l'envoi : un renvoi avec la même clé n'est enregistré qu'une fois
+  clientMessageId?: string;
+}
+
+export interface TicketActivity {
+  ticketId: string;
+  subject: string;
+  newMessages: number;
+  lastMessageAt: string;
+}
+
+export interface AgentNotificationDigest {
+  generatedAt: string;
+  totalMessages: number;
+  tickets: TicketActivity[];
 }
@@ -15,3 +15,13 @@ export interface SupportTicket {
   createdAt: Date;
   updatedAt?: Date;
 }
+
+// Page de la liste des tickets (GET /api/tickets) ; totalEstimate est exact si totalExact
+export interface TicketListPage {
+  tickets: SupportTicket[];
+  page: number;
+  size: number;
+  hasNext: boolean;
+  totalEstimate: number;
+  totalExact: boolean;
+}
@@ -44,12 +44,13 @@ export class ChatService {
       console.log('🔗 Connexion au ticket:', ticket.subject);
 
       // Connecter WebSocket
-      await this.websocketService.connect();
+      const currentUser = await firstValueFrom(this.mockAuthService.getCurrentUser());
+      await this.websocketService.connect(currentUser?.id);
 
       this.currentTicket$.next(ticket);
 
       // S'abonner aux messages du ticket
-      this.websocketService.subscribeToTicket(ticket.id).subscribe({
+      this.websocketService.subscribeToTicket(ticket.id, currentUser?.id).subscribe({
         next: (message) => {
           const currentMessages = this.messages$.value;
           // Éviter les doublons
@@ -102,7 +103,8 @@ export class ChatService {
         ticketId: currentTicket.id,
         senderId: currentUser.id,
         content,
-        timestamp: new Date()
+        timestamp: new Date(),
+        clientMessageId: crypto.randomUUID()
       };
 
       this.websocketService.sendMessage(message);
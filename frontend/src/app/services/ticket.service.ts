@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { SupportTicket } from '../models/ticket.model';
+import { SupportTicket, TicketListPage } from '../models/ticket.model';
 
 @Injectable({
   providedIn: 'root'
@@ -25,12 +25,15 @@ export class TicketService {
     return this.http.get<SupportTicket>(`${this.apiUrl}/tickets/${ticketId}`);
   }
 
-  getTicketsByUserId(userId: string): Observable<SupportTicket[]> {
-    return this.http.get<SupportTicket[]>(`${this.apiUrl}/tickets/user/${userId}`);
+  // Tickets d'un utilisateur, les plus récents d'abord (GET /api/tickets paginé)
+  getTicketsByUserId(userId: string, page = 0, size = 50): Observable<TicketListPage> {
+    return this.http.get<TicketListPage>(`${this.apiUrl}/tickets`, {
+      params: { userId, page, size, sort: 'createdAt,desc' }
+    });
   }
 
-  getAllTickets(): Observable<SupportTicket[]> {
-    return this.http.get<SupportTicket[]>(`${this.apiUrl}/tickets`);
+  getTickets(page = 0, size = 50): Observable<TicketListPage> {
+    return this.http.get<TicketListPage>(`${this.apiUrl}/tickets`, { params: { page, size } });
   }
 
   getMessagesByTicket(ticketId: string): Observable<any[]> {
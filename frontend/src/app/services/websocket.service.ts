@@ -2,7 +2,7 @@ import { Injectable } from '@angular/core';
 import { Client, StompConfig } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { BehaviorSubject, Observable } from 'rxjs';
-import { ChatMessage } from '../models/message.model';
+import { AgentNotificationDigest, ChatMessage } from '../models/message.model';
 
 @Injectable({
   providedIn: 'root'
@@ -40,13 +40,16 @@ export class WebSocketService {
     this.client = new Client(config);
   }
 
-  connect(): Promise<void> {
+  connect(userId?: string): Promise<void> {
     return new Promise((resolve, reject) => {
       if (this.connected$.value) {
         resolve();
         return;
       }
 
+      // Identifie l'utilisateur de la session pour ses files personnelles (/user/queue/...)
+      this.client.connectHeaders = userId ? { userId } : {};
+
       this.client.onConnect = () => {
         this.connected$.next(true);
         resolve();
@@ -66,7 +69,7 @@ export class WebSocketService {
     }
   }
 
-  subscribeToTicket(ticketId: string): Observable<ChatMessage> {
+  subscribeToTicket(ticketId: string, userId?: string): Observable<ChatMessage> {
     return new Observable(observer => {
       if (!this.connected$.value) {
         observer.error('WebSocket non connecté');
@@ -77,27 +80,63 @@ export class WebSocketService {
         `/topic/messages/${ticketId}`,
         (message) => {
           try {
-            const chatMessage = JSON.parse(message.body) as ChatMessage;
-            chatMessage.timestamp = new Date(chatMessage.timestamp);
-            observer.next(chatMessage);
+            // Une trame contient un message, ou un tableau de messages regroupés par le backend
+            const body = JSON.parse(message.body) as ChatMessage | ChatMessage[];
+            const chatMessages = Array.isArray(body) ? body : [body];
+            chatMessages.forEach(chatMessage => {
+              chatMessage.timestamp = new Date(chatMessage.timestamp);
+              observer.next(chatMessage);
+            });
           } catch (error) {
             console.error('Erreur parsing message WebSocket:', error);
           }
-        }
+        },
+        // Identifie l'utilisateur pour le registre de présence du backend
+        userId ? { userId } : {}
       );
 
       return () => subscription.unsubscribe();
     });
   }
 
+  subscribeToAgentNotifications(): Observable<AgentNotificationDigest> {
+    return new Observable(observer => {
+      if (!this.connected$.value) {
+        observer.error('WebSocket non connecté');
+        return;
+      }
+
+      // Récapitulatifs regroupés des tickets assignés à l'agent connecté
+      const subscription = this.client.subscribe('/user/queue/notifications', (message) => {
+        try {
+          observer.next(JSON.parse(message.body) as AgentNotificationDigest);
+        } catch (error) {
+          console.error('Erreur parsing notification WebSocket:', error);
+        }
+      });
+
+      return () => subscription.unsubscribe();
+    });
+  }
+
   sendMessage(message: ChatMessage) {
     if (!this.connected$.value) {
       throw new Error('WebSocket non connecté');
     }
 
+    // Acquittement (trame RECEIPT) dès que le message est enregistré, sans attendre l'écho de la diffusion
+    const headers: { [key: string]: string } = {};
+    if (message.clientMessageId) {
+      headers['receipt'] = `send-${message.clientMessageId}`;
+      this.client.watchForReceipt(headers['receipt'], frame => {
+        console.log('Message enregistré:', frame.headers['message-id'], 'séquence', frame.headers['sequence']);
+      });
+    }
+
     this.client.publish({
       destination: '/app/chat.send',
-      body: JSON.stringify(message)
+      body: JSON.stringify(message),
+      headers
     });
   }
 